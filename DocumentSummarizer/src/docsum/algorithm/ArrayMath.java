@@ -0,0 +1,126 @@
+package docsum.algorithm;
+
+/**
+ * Loops over primitive arrays shared by the scoring and ranking
+ * algorithms. Sums are kept as a single running total in index
+ * order, as the loops they replace did, so scores and rankings
+ * are the same to the last bit.
+ */
+public class ArrayMath {
+	
+	/**
+	 * Static methods only.
+	 */
+	private ArrayMath() {
+		
+	}
+	
+	/**
+	 * Computes the sum of the squares of the first n elements.
+	 * 
+	 * @param 	a	Array of values.
+	 * @param 	n	Number of elements to use.
+	 * @return	Sum of squares.
+	 */
+	public static double sumOfSquares(double[] a, int n) {
+		double sum = 0.0;
+		
+		for (int i=0; i<n; i++) {
+			sum += a[i] * a[i];
+		}
+		
+		return sum;
+	}
+	
+	/**
+	 * Divides the first n elements of an array by its Euclidean norm.
+	 * 
+	 * @param 	a	Array of values, normalized in place.
+	 * @param 	n	Number of elements to use.
+	 */
+	public static void normalize(double[] a, int n) {
+		double norm = Math.sqrt(sumOfSquares(a, n));
+		
+		for (int i=0; i<n; i++) {
+			a[i] = a[i] / norm;
+		}
+	}
+	
+	/**
+	 * Computes the average of two arrays element by element.
+	 * 
+	 * @param 	out		Output array.
+	 * @param 	a		First array.
+	 * @param 	b		Second array.
+	 * @param 	n		Number of elements to use.
+	 */
+	public static void average(double[] out, double[] a, double[] b, int n) {
+		for (int i=0; i<n; i++) {
+			out[i] = (a[i] + b[i]) / 2;
+		}
+	}
+	
+	/**
+	 * Computes the weighted sum of several columns element by
+	 * element, in one pass over the elements.
+	 * 
+	 * @param 	out			Output array.
+	 * @param 	columns		Arrays to combine.
+	 * @param 	weights		Weight of each array.
+	 * @param 	numColumns	Number of arrays to use.
+	 * @param 	n			Number of elements to use.
+	 */
+	public static void combine(double[] out, double[][] columns, double[] weights,
+			int numColumns, int n) {
+		for (int i=0; i<n; i++) {
+			double sum = 0.0;
+			for (int c=0; c<numColumns; c++) {
+				sum += weights[c] * columns[c][i];
+			}
+			out[i] = sum;
+		}
+	}
+	
+	/**
+	 * Gathers values by index and sums them for each row of a
+	 * compressed sparse row adjacency structure.
+	 * 
+	 * @param 	out			Output array with one sum per row.
+	 * @param 	offsets		Start of each row in edges; length is rows + 1.
+	 * @param 	edges		Column index of each edge.
+	 * @param 	values		Values to gather.
+	 * @param 	rows		Number of rows.
+	 */
+	public static void gatherSum(double[] out, int[] offsets, int[] edges,
+			double[] values, int rows) {
+		for (int i=0; i<rows; i++) {
+			double sum = 0.0;
+			for (int j=offsets[i]; j<offsets[i+1]; j++) {
+				sum += values[edges[j]];
+			}
+			out[i] = sum;
+		}
+	}
+	
+	/**
+	 * Gathers values by index, multiplies them by edge weights and
+	 * sums them for each row of a compressed sparse row structure.
+	 * 
+	 * @param 	out			Output array with one sum per row.
+	 * @param 	offsets		Start of each row in edges; length is rows + 1.
+	 * @param 	edges		Column index of each edge.
+	 * @param 	weights		Weight of each edge.
+	 * @param 	values		Values to gather.
+	 * @param 	rows		Number of rows.
+	 */
+	public static void weightedGatherSum(double[] out, int[] offsets, int[] edges,
+			double[] weights, double[] values, int rows) {
+		for (int i=0; i<rows; i++) {
+			double sum = 0.0;
+			for (int j=offsets[i]; j<offsets[i+1]; j++) {
+				sum += weights[j] * values[edges[j]];
+			}
+			out[i] = sum;
+		}
+	}
+}
@@ -0,0 +1,233 @@
+package docsum.algorithm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Ranks sentences and words together with HITS on the bipartite
+ * graph between them, following the joint model in the paper:
+ * "Graph-Based Keyword Extraction for Single-Document Summarization"
+ * http://www.aclweb.org/anthology-new/W/W08/W08-1404.pdf
+ * <p>
+ * Sentences are hubs and words are authorities, with an edge from
+ * each sentence to each word it contains, weighted by the number of
+ * occurrences. A sentence is important if it contains important
+ * words, and a word is important if it occurs in important sentences.
+ * <p>
+ * One graph build and one iteration loop produce both rankings, which
+ * rank returns together. getSelection and getKeywords each rank the
+ * sentences anew.
+ */
+public class BipartiteHITSAlgorithm implements SummarizationAlgorithm, KeywordAlgorithm {
+	
+	int maxIterations;
+	double tolerance;
+	
+	/**
+	 * Default constructor. Runs at most 50 iterations.
+	 */
+	public BipartiteHITSAlgorithm() {
+		this(50, 1e-9);
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param 	maxIterations	Maximum number of HITS iterations.
+	 * @param 	tolerance		Largest score change at which HITS has converged.
+	 */
+	public BipartiteHITSAlgorithm(int maxIterations, double tolerance) {
+		this.maxIterations = maxIterations;
+		this.tolerance = tolerance;
+	}
+	
+	// Gets the top scoring sentences in document order.
+	public List<Integer> getSelection(List<List<String>> sentences, int percentage) {
+		return rank(sentences, percentage).getSelection();
+	}
+	
+	// Gets the words ordered by authority score.
+	public List<String> getKeywords(List<List<String>> sentences) {
+		return rank(sentences, 100).getKeywords();
+	}
+	
+	/**
+	 * Ranks sentences and words together.
+	 * 
+	 * @param 	sentences	List of tokenized sentences.
+	 * @param 	percentage	Percentage of sentences to select.
+	 * @return	Selected sentences in document order, and
+	 * 			keywords ordered by authority score.
+	 */
+	public JointRanking rank(List<List<String>> sentences, int percentage) {
+		
+		List<String> words = makeWordList(sentences);
+		double[] wordScores = new double[words.size()];
+		double[] sentenceScores = score(sentences, words, wordScores);
+		
+		int summaryLength = (int) (sentences.size() * percentage / 100.0);
+		if (summaryLength < 1)
+			summaryLength = 1;
+		
+		List<Integer> indices = new ArrayList<Integer>();
+		List<Integer> ordered = makeRanking(sentenceScores);
+		for (int i=0; i<summaryLength && i<ordered.size(); i++) {
+			indices.add(ordered.get(i));
+		}
+		
+		Collections.sort(indices);
+		
+		List<String> keywords = new ArrayList<String>();
+		for (Integer index : makeRanking(wordScores)) {
+			keywords.add(words.get(index));
+		}
+		
+		return new JointRanking(indices, keywords);
+	}
+	
+	/**
+	 * Makes the alphabetical list of distinct words.
+	 * 
+	 * @param 	sentences	List of tokenized sentences.
+	 * @return	Sorted list of words.
+	 */
+	private List<String> makeWordList(List<List<String>> sentences) {
+		Set<String> distinct = new HashSet<String>();
+		for (List<String> sentence : sentences) {
+			distinct.addAll(sentence);
+		}
+		
+		List<String> words = new ArrayList<String>(distinct);
+		Collections.sort(words);
+		
+		return words;
+	}
+	
+	/**
+	 * Builds the bipartite graph and runs HITS.
+	 * 
+	 * @param 	sentences		List of tokenized sentences.
+	 * @param 	words			Sorted list of the distinct words.
+	 * @param 	authorities		Filled with the authority score of each word.
+	 * @return	Hub score of each sentence.
+	 */
+	private double[] score(List<List<String>> sentences, List<String> words,
+			double[] authorities) {
+		
+		Map<String, Integer> wordIndex = new HashMap<String, Integer>();
+		for (int i=0; i<words.size(); i++) {
+			wordIndex.put(words.get(i), i);
+		}
+		
+		int numSentences = sentences.size();
+		int numWords = words.size();
+		
+		// Sentence rows: the words each sentence points to.
+		int[] sentenceOffsets = new int[numSentences + 1];
+		List<SparseVector> vectors = new ArrayList<SparseVector>(numSentences);
+		for (int i=0; i<numSentences; i++) {
+			SparseVector vector = new SparseVector(sentences.get(i), wordIndex);
+			vectors.add(vector);
+			sentenceOffsets[i+1] = sentenceOffsets[i] + vector.indices.length;
+		}
+		
+		int numEdges = sentenceOffsets[numSentences];
+		int[] sentenceEdges = new int[numEdges];
+		double[] sentenceWeights = new double[numEdges];
+		int[] wordOffsets = new int[numWords + 1];
+		for (int i=0; i<numSentences; i++) {
+			SparseVector vector = vectors.get(i);
+			System.arraycopy(vector.indices, 0, sentenceEdges, sentenceOffsets[i], vector.indices.length);
+			System.arraycopy(vector.values, 0, sentenceWeights, sentenceOffsets[i], vector.values.length);
+			for (int index : vector.indices) {
+				wordOffsets[index + 1]++;
+			}
+		}
+		
+		// Word rows: the sentences that point to each word.
+		for (int i=0; i<numWords; i++) {
+			wordOffsets[i+1] += wordOffsets[i];
+		}
+		int[] wordEdges = new int[numEdges];
+		double[] wordWeights = new double[numEdges];
+		int[] wordPos = Arrays.copyOf(wordOffsets, numWords);
+		for (int i=0; i<numSentences; i++) {
+			for (int j=sentenceOffsets[i]; j<sentenceOffsets[i+1]; j++) {
+				int pos = wordPos[sentenceEdges[j]]++;
+				wordEdges[pos] = i;
+				wordWeights[pos] = sentenceWeights[j];
+			}
+		}
+		
+		double[] hubs = new double[numSentences];
+		double[] previousHubs = new double[numSentences];
+		Arrays.fill(hubs, 1.0);
+		
+		for (int i=0; i<maxIterations; i++) {
+			System.arraycopy(hubs, 0, previousHubs, 0, numSentences);
+			
+			// Word authority: weighted sum of sentence hub scores.
+			ArrayMath.weightedGatherSum(authorities, wordOffsets, wordEdges,
+					wordWeights, hubs, numWords);
+			normalize(authorities);
+			
+			// Sentence hub: weighted sum of word authority scores.
+			ArrayMath.weightedGatherSum(hubs, sentenceOffsets, sentenceEdges,
+					sentenceWeights, authorities, numSentences);
+			normalize(hubs);
+			
+			double change = 0.0;
+			for (int j=0; j<numSentences; j++) {
+				change = Math.max(change, Math.abs(hubs[j] - previousHubs[j]));
+			}
+			if (change < tolerance)
+				break;
+		}
+		
+		return hubs;
+	}
+	
+	/**
+	 * Normalizes scores to unit length, leaving
+	 * them unchanged if they are all zero.
+	 * 
+	 * @param 	scores	Array of scores.
+	 */
+	private void normalize(double[] scores) {
+		if (ArrayMath.sumOfSquares(scores, scores.length) > 0.0)
+			ArrayMath.normalize(scores, scores.length);
+	}
+	
+	/**
+	 * Sorts indices by score.
+	 * 
+	 * @param 	scores	Score of each index.
+	 * @return	List of indices sorted from highest to lowest score.
+	 */
+	private List<Integer> makeRanking(double[] scores) {
+		List<IndexValuePair> pairs = new ArrayList<IndexValuePair>();
+		
+		for (int i=0; i<scores.length; i++) {
+			IndexValuePair pair = new IndexValuePair();
+			pair.index = i;
+			pair.value = scores[i];
+			pairs.add(pair);
+		}
+		
+		Collections.sort(pairs);
+		Collections.reverse(pairs);
+		
+		List<Integer> sorted = new ArrayList<Integer>();
+		for (IndexValuePair pair : pairs) {
+			sorted.add(pair.index);
+		}
+		
+		return sorted;
+	}
+}
@@ -0,0 +1,13 @@
+package docsum.algorithm;
+
+/**
+ * Centroid value of each sentence: the sum of the centroid
+ * values of the centroid document words it contains.
+ */
+public class CentroidFeature implements SentenceFeature {
+	
+	// Copies the centroid values computed by the document model.
+	public void fill(FeatureContext context, double[] column) {
+		System.arraycopy(context.docCentroidValues, 0, column, 0, column.length);
+	}
+}
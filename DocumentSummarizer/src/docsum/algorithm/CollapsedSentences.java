@@ -0,0 +1,71 @@
+package docsum.algorithm;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Representative sentences of a document with near-duplicates
+ * collapsed by SimHashDeduplicator, together with the original
+ * index of each representative.
+ */
+public class CollapsedSentences {
+	
+	List<List<String>> sentences;
+	List<Integer> indices;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param 	sentences	List of representative sentences in document order.
+	 * @param 	indices		Original index of each representative, or null
+	 * 						if the sentences are the original ones.
+	 */
+	CollapsedSentences(List<List<String>> sentences, List<Integer> indices) {
+		this.sentences = sentences;
+		this.indices = indices;
+	}
+	
+	/**
+	 * Gets the representative sentences.
+	 * 
+	 * @return	List of representative sentences in document order.
+	 */
+	public List<List<String>> getSentences() {
+		return sentences;
+	}
+	
+	/**
+	 * Gets the original sentence index of each representative.
+	 * 
+	 * @return	List of sentence indices, one per representative.
+	 */
+	public List<Integer> getIndices() {
+		if (indices != null)
+			return indices;
+		
+		List<Integer> identity = new ArrayList<Integer>(sentences.size());
+		for (int i=0; i<sentences.size(); i++) {
+			identity.add(i);
+		}
+		
+		return identity;
+	}
+	
+	/**
+	 * Maps a selection of representatives back to original sentence indices.
+	 * 
+	 * @param 	selection	List of indices of selected representatives.
+	 * @return	List of indices of original sentences.
+	 */
+	public List<Integer> expand(List<Integer> selection) {
+		if (indices == null)
+			return selection;
+		
+		List<Integer> expanded = new ArrayList<Integer>(selection.size());
+		for (Integer index : selection) {
+			expanded.add(indices.get(index));
+		}
+		
+		return expanded;
+	}
+}
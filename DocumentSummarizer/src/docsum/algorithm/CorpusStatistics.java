@@ -0,0 +1,479 @@
+package docsum.algorithm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Document frequencies of terms over the whole stream of documents
+ * processed, kept in fixed memory so that MEAD can weight centroid
+ * terms by corpus-wide rather than per-document rarity.
+ * <p>
+ * Document frequencies are estimated with a Count-Min Sketch using
+ * conservative update, so an estimate is never below the true count
+ * and is usually close to it. The most frequent terms are tracked
+ * exactly by name in a small table of heavy hitters.
+ * <p>
+ * A document is counted once, however often it is summarized: the
+ * fingerprints of the most recently counted documents are kept, and
+ * a document matching one of them is not counted again. Until enough
+ * documents have been counted for the frequencies to mean anything,
+ * MEAD keeps using per-document IDF.
+ * <p>
+ * Count-Min Sketch based on the paper:
+ * "An Improved Data Stream Summary: The Count-Min Sketch and its Applications"
+ * http://dimacs.rutgers.edu/~graham/pubs/papers/cm-full.pdf
+ */
+public class CorpusStatistics {
+	
+	static final int MAGIC = 0x44534353;
+	static final int VERSION = 1;
+	static final int DEFAULT_WIDTH = 1 << 16;
+	static final int DEFAULT_DEPTH = 4;
+	static final int DEFAULT_HEAVY_HITTERS = 100;
+	static final int DEFAULT_MIN_DOCUMENTS = 10;
+	static final int RECENT_DOCUMENTS = 1024;
+	
+	int width;
+	int depth;
+	int[] counts;
+	long numDocuments;
+	int maxHeavyHitters;
+	Map<String, Long> heavyHitters;
+	long minHeavyHitter;
+	int minDocuments;
+	Map<Long, Boolean> recentDocuments;
+	File snapshotFile;
+	int snapshotInterval;
+	Object snapshotLock;
+	long savedDocuments;
+	
+	/**
+	 * Default constructor. The sketch takes 1 MB.
+	 */
+	public CorpusStatistics() {
+		this(DEFAULT_WIDTH, DEFAULT_DEPTH, DEFAULT_HEAVY_HITTERS);
+	}
+	
+	/**
+	 * Constructor. With probability 1 - e^-depth, an estimate exceeds
+	 * the true document frequency by at most e * T / width, where T is
+	 * the total number of distinct terms counted over all documents.
+	 * 
+	 * @param 	width			Counters per row, rounded up to a power of two.
+	 * @param 	depth			Number of rows, each with its own hash.
+	 * @param 	heavyHitters	Number of most frequent terms to track.
+	 */
+	public CorpusStatistics(int width, int depth, int heavyHitters) {
+		this.width = Integer.highestOneBit(Math.max(width - 1, 1)) << 1;
+		this.depth = depth;
+		this.counts = new int[this.width * depth];
+		this.maxHeavyHitters = heavyHitters;
+		this.heavyHitters = new HashMap<String, Long>();
+		this.minDocuments = DEFAULT_MIN_DOCUMENTS;
+		this.snapshotLock = new Object();
+		this.recentDocuments = new LinkedHashMap<Long, Boolean>() {
+			private static final long serialVersionUID = 2803744319405618311L;
+			
+			protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+				return size() > RECENT_DOCUMENTS;
+			}
+		};
+	}
+	
+	/**
+	 * Sets the number of documents that must be counted
+	 * before the corpus frequencies are used for IDF.
+	 * 
+	 * @param 	minDocuments	Minimum number of documents.
+	 */
+	public synchronized void setMinDocuments(int minDocuments) {
+		this.minDocuments = minDocuments;
+	}
+	
+	/**
+	 * Checks whether enough documents have been counted for
+	 * corpus IDF. With fewer, every term occurs in most of the
+	 * documents and its IDF is near zero.
+	 * 
+	 * @return	True if the corpus IDF should be used.
+	 */
+	public synchronized boolean hasMinDocuments() {
+		return numDocuments >= minDocuments;
+	}
+	
+	/**
+	 * Writes a snapshot to a file after every so many documents.
+	 * 
+	 * @param 	file		Snapshot file, replaced atomically.
+	 * @param 	interval	Number of documents between snapshots.
+	 */
+	public synchronized void setSnapshot(File file, int interval) {
+		this.snapshotFile = file;
+		this.snapshotInterval = interval;
+	}
+	
+	/**
+	 * Counts each distinct term of a document once, unless
+	 * the same document was among those counted recently.
+	 * 
+	 * @param 	sentences	List of tokenized sentences of the document.
+	 * @return	True if the document was counted.
+	 */
+	public boolean addDocument(List<List<String>> sentences) {
+		Set<String> distinct = new HashSet<String>();
+		long fingerprint = 0xcbf29ce484222325L;
+		for (List<String> sentence : sentences) {
+			distinct.addAll(sentence);
+			for (String term : sentence) {
+				fingerprint = (fingerprint ^ term.hashCode()) * 0x100000001b3L;
+			}
+			fingerprint = (fingerprint ^ 0xff) * 0x100000001b3L;
+		}
+		
+		CorpusStatistics snapshot = null;
+		File file = null;
+		synchronized (this) {
+			if (recentDocuments.put(fingerprint, Boolean.TRUE) != null)
+				return false;
+			
+			numDocuments++;
+			for (String term : distinct) {
+				updateHeavyHitters(term, increment(term));
+			}
+			
+			// Copy the sketch under the lock, but write it
+			// outside, so other documents are not held up.
+			if (snapshotFile != null && snapshotInterval > 0
+					&& numDocuments % snapshotInterval == 0) {
+				snapshot = copy();
+				file = snapshotFile;
+			}
+		}
+		
+		if (snapshot != null)
+			saveSnapshot(snapshot, file);
+		
+		return true;
+	}
+	
+	/**
+	 * Writes a snapshot taken by addDocument, unless a snapshot
+	 * of more documents has already been written, since threads
+	 * can finish writing their snapshots out of order.
+	 * 
+	 * @param 	snapshot	Copy of the statistics.
+	 * @param 	file		Snapshot file.
+	 */
+	private void saveSnapshot(CorpusStatistics snapshot, File file) {
+		synchronized (snapshotLock) {
+			if (snapshot.numDocuments <= savedDocuments)
+				return;
+			
+			try {
+				snapshot.save(file);
+				savedDocuments = snapshot.numDocuments;
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+	
+	/**
+	 * Copies the sketch, document count and heavy hitters,
+	 * which are what write stores.
+	 * 
+	 * @return	Corpus statistics.
+	 */
+	private synchronized CorpusStatistics copy() {
+		CorpusStatistics statistics = new CorpusStatistics(width, depth, maxHeavyHitters);
+		statistics.numDocuments = numDocuments;
+		System.arraycopy(counts, 0, statistics.counts, 0, counts.length);
+		statistics.heavyHitters.putAll(heavyHitters);
+		
+		return statistics;
+	}
+	
+	/**
+	 * Gets the number of documents counted.
+	 * 
+	 * @return	Number of documents.
+	 */
+	public synchronized long getNumDocuments() {
+		return numDocuments;
+	}
+	
+	/**
+	 * Estimates the number of documents a term occurs in.
+	 * 
+	 * @param 	term	Term string.
+	 * @return	Estimated document frequency, never below the true one.
+	 */
+	public synchronized long getDocumentFrequency(String term) {
+		int h1 = hash(term.hashCode());
+		int h2 = hash(h1) | 1;
+		
+		long min = Long.MAX_VALUE;
+		for (int i=0; i<depth; i++) {
+			min = Math.min(min, counts[slot(h1, h2, i)]);
+		}
+		
+		return min;
+	}
+	
+	/**
+	 * Gets the inverse document frequency of a term over the corpus.
+	 * Terms not yet seen are treated as occurring in one document.
+	 * 
+	 * @param 	term	Term string.
+	 * @return	Base 10 logarithm of documents over document frequency.
+	 */
+	public synchronized double getInverseDocumentFrequency(String term) {
+		long df = Math.max(getDocumentFrequency(term), 1);
+		long n = Math.max(numDocuments, df);
+		
+		return Math.log10(n / (double) df);
+	}
+	
+	/**
+	 * Gets the tracked most frequent terms.
+	 * 
+	 * @return	List of terms sorted by descending document frequency.
+	 */
+	public synchronized List<String> getHeavyHitters() {
+		List<IndexValuePair> pairs = new ArrayList<IndexValuePair>();
+		List<String> names = new ArrayList<String>(heavyHitters.keySet());
+		Collections.sort(names);
+		
+		for (int i=0; i<names.size(); i++) {
+			IndexValuePair pair = new IndexValuePair();
+			pair.index = i;
+			pair.value = heavyHitters.get(names.get(i));
+			pairs.add(pair);
+		}
+		
+		Collections.sort(pairs);
+		Collections.reverse(pairs);
+		
+		List<String> sorted = new ArrayList<String>();
+		for (IndexValuePair pair : pairs) {
+			sorted.add(names.get(pair.index));
+		}
+		
+		return sorted;
+	}
+	
+	/**
+	 * Increments the counters of a term. Only the counters
+	 * holding the current minimum are raised, which keeps
+	 * the overestimate from collisions smaller.
+	 * 
+	 * @param 	term	Term string.
+	 * @return	New estimated document frequency.
+	 */
+	private long increment(String term) {
+		int h1 = hash(term.hashCode());
+		int h2 = hash(h1) | 1;
+		
+		int min = Integer.MAX_VALUE;
+		for (int i=0; i<depth; i++) {
+			min = Math.min(min, counts[slot(h1, h2, i)]);
+		}
+		
+		int updated = min + 1;
+		for (int i=0; i<depth; i++) {
+			int slot = slot(h1, h2, i);
+			if (counts[slot] < updated)
+				counts[slot] = updated;
+		}
+		
+		return updated;
+	}
+	
+	/**
+	 * Records a term among the heavy hitters if its estimate
+	 * beats the least frequent one tracked.
+	 * 
+	 * @param 	term		Term string.
+	 * @param 	estimate	Estimated document frequency of the term.
+	 */
+	private void updateHeavyHitters(String term, long estimate) {
+		if (heavyHitters.containsKey(term) || heavyHitters.size() < maxHeavyHitters) {
+			heavyHitters.put(term, estimate);
+			return;
+		}
+		
+		if (maxHeavyHitters == 0 || estimate <= minHeavyHitter)
+			return;
+		
+		// Find the least frequent term, which may have
+		// risen since the last time it was looked up.
+		String minTerm = null;
+		long min = Long.MAX_VALUE;
+		for (Map.Entry<String, Long> entry : heavyHitters.entrySet()) {
+			if (entry.getValue() < min) {
+				min = entry.getValue();
+				minTerm = entry.getKey();
+			}
+		}
+		
+		if (estimate > min) {
+			heavyHitters.remove(minTerm);
+			heavyHitters.put(term, estimate);
+		} else {
+			minHeavyHitter = min;
+		}
+	}
+	
+	/**
+	 * Gets the counter of a term in a row, combining two
+	 * hashes so that each row hashes differently.
+	 * 
+	 * @param 	h1		First hash of the term.
+	 * @param 	h2		Second hash of the term.
+	 * @param 	row		Row number.
+	 * @return	Index into the counter array.
+	 */
+	private int slot(int h1, int h2, int row) {
+		return row * width + ((h1 + row * h2) & (width - 1));
+	}
+	
+	/**
+	 * Mixes the bits of a hash code.
+	 * 
+	 * @param 	h	Hash code.
+	 * @return	Mixed hash.
+	 */
+	private static int hash(int h) {
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+	
+	/**
+	 * Writes the statistics in binary form.
+	 * 
+	 * @param 	outputStream	Stream to write to.
+	 * @throws 	IOException
+	 */
+	public synchronized void write(OutputStream outputStream) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream));
+		
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+		out.writeInt(width);
+		out.writeInt(depth);
+		out.writeLong(numDocuments);
+		for (int count : counts) {
+			out.writeInt(count);
+		}
+		
+		out.writeInt(maxHeavyHitters);
+		out.writeInt(heavyHitters.size());
+		for (Map.Entry<String, Long> entry : heavyHitters.entrySet()) {
+			out.writeUTF(entry.getKey());
+			out.writeLong(entry.getValue());
+		}
+		
+		out.flush();
+	}
+	
+	/**
+	 * Reads statistics written by write.
+	 * 
+	 * @param 	inputStream		Stream to read from.
+	 * @return	Corpus statistics.
+	 * @throws 	IOException		If the stream is not a statistics snapshot.
+	 */
+	public static CorpusStatistics read(InputStream inputStream) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream));
+		
+		if (in.readInt() != MAGIC)
+			throw new IOException("Not a corpus statistics snapshot");
+		int version = in.readUnsignedByte();
+		if (version != VERSION)
+			throw new IOException("Unsupported corpus statistics version " + version);
+		
+		int width = in.readInt();
+		int depth = in.readInt();
+		if (Integer.bitCount(width) != 1 || depth < 1)
+			throw new IOException("Invalid sketch dimensions " + width + "x" + depth);
+		
+		CorpusStatistics statistics = new CorpusStatistics(width, depth, 0);
+		statistics.numDocuments = in.readLong();
+		for (int i=0; i<statistics.counts.length; i++) {
+			statistics.counts[i] = in.readInt();
+		}
+		
+		statistics.maxHeavyHitters = in.readInt();
+		int numHeavyHitters = in.readInt();
+		for (int i=0; i<numHeavyHitters; i++) {
+			String term = in.readUTF();
+			statistics.heavyHitters.put(term, in.readLong());
+		}
+		
+		return statistics;
+	}
+	
+	/**
+	 * Writes the statistics to a file by writing a temporary
+	 * file in the same directory and renaming it over the target,
+	 * so a crash never leaves a partial snapshot behind.
+	 * 
+	 * @param 	file	File to write.
+	 * @throws 	IOException
+	 */
+	public synchronized void save(File file) throws IOException {
+		Path target = file.getAbsoluteFile().toPath();
+		Path temp = Files.createTempFile(target.getParent(), ".corpus", ".tmp");
+		
+		try {
+			OutputStream outputStream = Files.newOutputStream(temp);
+			try {
+				write(outputStream);
+			} finally {
+				outputStream.close();
+			}
+			Files.move(temp, target,
+					StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+	
+	/**
+	 * Reads statistics from a file.
+	 * 
+	 * @param 	file	File to read.
+	 * @return	Corpus statistics.
+	 * @throws 	IOException
+	 */
+	public static CorpusStatistics load(File file) throws IOException {
+		InputStream inputStream = Files.newInputStream(file.toPath());
+		try {
+			return read(inputStream);
+		} finally {
+			inputStream.close();
+		}
+	}
+}
@@ -0,0 +1,49 @@
+package docsum.algorithm;
+
+/**
+ * Point in time by which a request must finish. Algorithms
+ * check it between stages and degrade their output to finish
+ * in time, rather than running to completion.
+ */
+public class Deadline {
+	
+	long start;
+	long end;
+	
+	/**
+	 * Constructor for a deadline starting now.
+	 * 
+	 * @param 	budgetMillis	Time budget in milliseconds.
+	 */
+	public Deadline(long budgetMillis) {
+		start = System.nanoTime();
+		end = start + budgetMillis * 1000000L;
+	}
+	
+	/**
+	 * Gets the time left before the deadline.
+	 * 
+	 * @return	Remaining time in nanoseconds, negative once expired.
+	 */
+	public long getRemainingNanos() {
+		return end - System.nanoTime();
+	}
+	
+	/**
+	 * Gets the time since the deadline was set.
+	 * 
+	 * @return	Elapsed time in milliseconds.
+	 */
+	public long getElapsedMillis() {
+		return (System.nanoTime() - start) / 1000000L;
+	}
+	
+	/**
+	 * Checks whether the deadline has passed.
+	 * 
+	 * @return	True if no time is left.
+	 */
+	public boolean isExpired() {
+		return getRemainingNanos() <= 0;
+	}
+}
@@ -0,0 +1,46 @@
+package docsum.algorithm;
+
+/**
+ * Deadline as seen by one call of an algorithm. Passed down through
+ * the stages of the call, it remembers whether any stage found the
+ * deadline passed and cut its work short, so the call can report
+ * its result as approximate.
+ */
+class DeadlineCheck {
+	
+	Deadline deadline;
+	boolean degraded;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param 	deadline	Deadline of the request.
+	 * @param 	degraded	Whether the call starts out degraded.
+	 */
+	DeadlineCheck(Deadline deadline, boolean degraded) {
+		this.deadline = deadline;
+		this.degraded = degraded;
+	}
+	
+	/**
+	 * Checks the deadline. Once it has passed, or the call
+	 * started out degraded, every later check reports it.
+	 * 
+	 * @return	True if the calling stage should cut its work short.
+	 */
+	boolean check() {
+		if (!degraded && deadline.isExpired())
+			degraded = true;
+		
+		return degraded;
+	}
+	
+	/**
+	 * Checks whether any stage cut its work short.
+	 * 
+	 * @return	True if the result of the call is approximate.
+	 */
+	boolean isDegraded() {
+		return degraded;
+	}
+}
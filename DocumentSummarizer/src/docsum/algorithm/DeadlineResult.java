@@ -0,0 +1,43 @@
+package docsum.algorithm;
+
+/**
+ * Result of an algorithm run within a time budget, flagged
+ * as approximate if the algorithm had to degrade it.
+ * 
+ * @param 	<T>		Type of the result.
+ */
+public class DeadlineResult<T> {
+	
+	T value;
+	boolean approximate;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param 	value			Result of the algorithm.
+	 * @param 	approximate		Whether the result was degraded to meet the deadline.
+	 */
+	DeadlineResult(T value, boolean approximate) {
+		this.value = value;
+		this.approximate = approximate;
+	}
+	
+	/**
+	 * Gets the result.
+	 * 
+	 * @return	Result of the algorithm.
+	 */
+	public T getValue() {
+		return value;
+	}
+	
+	/**
+	 * Checks whether the result is approximate, because steps
+	 * of the algorithm were skipped or cut short.
+	 * 
+	 * @return	True if the result is approximate.
+	 */
+	public boolean isApproximate() {
+		return approximate;
+	}
+}
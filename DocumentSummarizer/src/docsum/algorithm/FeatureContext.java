@@ -0,0 +1,112 @@
+package docsum.algorithm;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sentences and document model passed to each SentenceFeature.
+ * Features in other packages read it through its getters.
+ */
+public class FeatureContext {
+	
+	List<List<String>> sentences;
+	List<SparseVector> sentenceVectors;
+	Map<String, Integer> termIndex;
+	boolean[] centroidTerms;
+	double[] docCentroidValues;
+	double maxCentroidValue;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param 	sentences			List of tokenized sentences.
+	 * @param 	sentenceVectors		Sparse term vectors for all sentences.
+	 * @param 	termIndex			Map from each term to its index.
+	 * @param 	centroidTerms		Whether each term is in the centroid document.
+	 * @param 	docCentroidValues	Centroid value of each sentence.
+	 */
+	public FeatureContext(List<List<String>> sentences, List<SparseVector> sentenceVectors,
+			Map<String, Integer> termIndex, boolean[] centroidTerms,
+			double[] docCentroidValues) {
+		this.sentences = sentences;
+		this.sentenceVectors = sentenceVectors;
+		this.termIndex = termIndex;
+		this.centroidTerms = centroidTerms;
+		this.docCentroidValues = docCentroidValues;
+		
+		maxCentroidValue = Double.NEGATIVE_INFINITY;
+		for (double value : docCentroidValues) {
+			if (value > maxCentroidValue)
+				maxCentroidValue = value;
+		}
+	}
+	
+	/**
+	 * Gets the number of sentences.
+	 * 
+	 * @return	Number of sentences.
+	 */
+	public int getNumSentences() {
+		return sentences.size();
+	}
+	
+	/**
+	 * Gets the tokenized sentences.
+	 * 
+	 * @return	List of tokenized sentences.
+	 */
+	public List<List<String>> getSentences() {
+		return sentences;
+	}
+	
+	/**
+	 * Gets the sparse term count vector of each sentence,
+	 * indexed by the term indices of getTermIndex.
+	 * 
+	 * @return	List of sentence vectors.
+	 */
+	public List<SparseVector> getSentenceVectors() {
+		return sentenceVectors;
+	}
+	
+	/**
+	 * Gets the index of a term in the sentence vectors.
+	 * 
+	 * @param 	word	Word string.
+	 * @return	Term index, or -1 if the word is not in the document.
+	 */
+	public int getTermIndex(String word) {
+		Integer index = termIndex.get(word);
+		return (index == null) ? -1 : index;
+	}
+	
+	/**
+	 * Gets the centroid value of each sentence.
+	 * 
+	 * @return	Array of sentence centroid values.
+	 */
+	public double[] getDocCentroidValues() {
+		return docCentroidValues;
+	}
+	
+	/**
+	 * Gets the highest sentence centroid value. Features use it
+	 * to scale their values to the range of the centroid feature.
+	 * 
+	 * @return	Max centroid value of all sentences.
+	 */
+	public double getMaxCentroidValue() {
+		return maxCentroidValue;
+	}
+	
+	/**
+	 * Checks whether a word is in the centroid document.
+	 * 
+	 * @param 	word	Word string.
+	 * @return	True if the word is a centroid term.
+	 */
+	public boolean isCentroidTerm(String word) {
+		Integer index = termIndex.get(word);
+		return index != null && centroidTerms[index];
+	}
+}
@@ -0,0 +1,17 @@
+package docsum.algorithm;
+
+/**
+ * Overlap of each sentence with the first sentence:
+ * the dot product of their word occurrence vectors.
+ */
+public class FirstSentenceOverlapFeature implements SentenceFeature {
+	
+	// Computes dot products with the first sentence vector.
+	public void fill(FeatureContext context, double[] column) {
+		SparseVector firstSentence = context.sentenceVectors.get(0);
+		
+		for (int i=0; i<column.length; i++) {
+			column[i] = context.sentenceVectors.get(i).dot(firstSentence);
+		}
+	}
+}
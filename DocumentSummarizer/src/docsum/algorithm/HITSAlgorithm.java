@@ -19,25 +19,385 @@ import java.util.Map;
  */
 public class HITSAlgorithm implements KeywordAlgorithm {
 
+	int windowSize;
+	boolean useScratchArenas;
 	
 	/**
-	 * Default no-argument constructor.
+	 * Default no-argument constructor. Uses an unweighted graph
+	 * with an edge from each word to the word that follows it.
 	 */
 	public HITSAlgorithm() {
-		
+		this(0);
+	}
+	
+	/**
+	 * Constructor for a weighted cooccurrence graph. There is an edge
+	 * from each word to each of the next windowSize words in the same
+	 * sentence, weighted by the number of times the pair cooccurs.
+	 * <p>
+	 * HITSNode.getOutgoing returns the incoming edges, so the hub
+	 * update of the unweighted graph sums over the nodes pointing to
+	 * a node. The unweighted graph keeps that, so its rankings stay
+	 * as they always were. The weighted graph has no earlier rankings
+	 * to keep and sums over the nodes a node points to, as HITS
+	 * defines the hub score, so the two graphs can rank the same
+	 * text differently even apart from the weights and window.
+	 * 
+	 * @param 	windowSize	Number of following words linked to each word,
+	 * 						or 0 for the unweighted graph.
+	 */
+	public HITSAlgorithm(int windowSize) {
+		this.windowSize = windowSize;
+	}
+	
+	/**
+	 * Enables reuse of per-thread scratch arenas for the unweighted
+	 * graph. Each call then builds the graph as primitive arrays in
+	 * the arena of the calling thread rather than as HITSNode objects
+	 * and boxed lists. The weighted graph is already built from
+	 * primitive arrays and is unaffected. Rankings are the same
+	 * either way.
+	 * 
+	 * @param 	useScratchArenas	Whether to use scratch arenas.
+	 */
+	public void setScratchArenas(boolean useScratchArenas) {
+		this.useScratchArenas = useScratchArenas;
 	}
 	
 	// Generates ordered list of keywords.
 	public List<String> getKeywords(List<List<String>> sentences) {
+		return getKeywords(sentences, useScratchArenas, null);
+	}
+	
+	/**
+	 * Gets the HITS score of every word with the reference graph
+	 * code, for callers that compare rankings up to near-ties.
+	 * 
+	 * @param 	sentences	List of sentences, each of which is a list.
+	 * @return	Map from each word to its score.
+	 */
+	public Map<String, Double> getKeywordScores(List<List<String>> sentences) {
+		List<String> wordList = makeWordList(sentences);
+		double[] scores;
+		
+		if (windowSize > 0) {
+			Map<String, Integer> wordIndex = new HashMap<String, Integer>();
+			for (int i=0; i<wordList.size(); i++) {
+				wordIndex.put(wordList.get(i), i);
+			}
+			scores = runWeightedHITS(makeWeightedGraph(sentences, wordIndex),
+					wordList.size(), 10, null);
+		}
+		else {
+			scores = runHITS(makeGraph(sentences, wordList), 10, null);
+		}
+		
+		Map<String, Double> wordScores = new HashMap<String, Double>();
+		for (int i=0; i<wordList.size(); i++) {
+			wordScores.put(wordList.get(i), scores[i]);
+		}
+		
+		return wordScores;
+	}
+	
+	/**
+	 * Generates ordered list of keywords within a time budget. The
+	 * unweighted graph is built in a scratch arena, which is fastest,
+	 * and HITS stops iterating once the deadline has passed, after at
+	 * least one iteration.
+	 * 
+	 * @param 	sentences	List of sentences, each of which is a list.
+	 * @param 	deadline	Deadline of the request.
+	 * @return	List of words sorted from highest to lowest score,
+	 * 			approximate if HITS stopped early.
+	 */
+	public DeadlineResult<List<String>> getKeywords(List<List<String>> sentences,
+			Deadline deadline) {
+		
+		DeadlineCheck check = new DeadlineCheck(deadline, false);
+		List<String> keywords = getKeywords(sentences, true, check);
+		
+		return new DeadlineResult<List<String>>(keywords, check.isDegraded());
+	}
+	
+	/**
+	 * Generates ordered list of keywords with the chosen graph.
+	 * 
+	 * @param 	sentences	List of sentences, each of which is a list.
+	 * @param 	useArenas	Whether to build the unweighted graph in a scratch arena.
+	 * @param 	check		Deadline of the call, or null to run to completion.
+	 * @return	List of words sorted from highest to lowest score.
+	 */
+	private List<String> getKeywords(List<List<String>> sentences, boolean useArenas,
+			DeadlineCheck check) {
+		
+		if (windowSize > 0) {
+			return getWeightedKeywords(sentences, check);
+		}
+		
+		if (useArenas) {
+			return getKeywordsWithArena(sentences, 10, check);
+		}
 		
 		List<String> wordList = makeWordList(sentences);
 		Map<Integer, HITSNode> graph = makeGraph(sentences, wordList);
-		List<Integer> orderedNodes = runHITS(graph, 10);
+		List<Integer> orderedNodes = makeRanking(runHITS(graph, 10, check), graph.size());
 		List<String> keywords = makeKeywordList(orderedNodes, wordList);
 
 		return keywords;
 	}
 	
+	/**
+	 * Checks whether HITS should stop before an iteration because
+	 * the deadline of the call has passed. The first iteration
+	 * always runs so that scores reflect the graph.
+	 * 
+	 * @param 	iteration	Number of iterations run so far.
+	 * @param 	check		Deadline of the call, or null to run to completion.
+	 * @return	True if HITS should stop.
+	 */
+	private static boolean stopIterating(int iteration, DeadlineCheck check) {
+		return iteration > 0 && check != null && check.check();
+	}
+	
+	/**
+	 * Generates ordered list of keywords from the weighted cooccurrence graph.
+	 * 
+	 * @param 	sentences	List of sentences, each of which is a list.
+	 * @param 	check		Deadline of the call, or null to run to completion.
+	 * @return	List of words sorted from highest to lowest score.
+	 */
+	private List<String> getWeightedKeywords(List<List<String>> sentences,
+			DeadlineCheck check) {
+		
+		// Alphabetical word list and index, as in makeWordList.
+		Map<String, Integer> wordIndex = new HashMap<String, Integer>();
+		for (List<String> sentence : sentences) {
+			for (String word : sentence) {
+				if (!wordIndex.containsKey(word))
+					wordIndex.put(word, 0);
+			}
+		}
+		List<String> wordList = new ArrayList<String>(wordIndex.keySet());
+		Collections.sort(wordList);
+		for (int i=0; i<wordList.size(); i++) {
+			wordIndex.put(wordList.get(i), i);
+		}
+		
+		LongIntHashMap edges = makeWeightedGraph(sentences, wordIndex);
+		List<Integer> orderedNodes = makeRanking(
+				runWeightedHITS(edges, wordList.size(), 10, check), wordList.size());
+		
+		return makeKeywordList(orderedNodes, wordList);
+	}
+	
+	/**
+	 * Builds weighted directed word cooccurrence graph. The weight
+	 * of the edge from word A to word B is the number of times B
+	 * occurs within windowSize words after A in a sentence.
+	 * Edges are keyed by the packed pair of word indices.
+	 * 
+	 * @param 	sentences	List of lists of word strings.
+	 * @param 	wordIndex	Map from each word to its index.
+	 * @return	Map from packed (source, target) pairs to edge weights.
+	 */
+	private LongIntHashMap makeWeightedGraph(List<List<String>> sentences,
+			Map<String, Integer> wordIndex) {
+		
+		LongIntHashMap edges = new LongIntHashMap(wordIndex.size() * windowSize);
+		int[] ids = new int[16];
+		
+		for (List<String> sentence : sentences) {
+			int length = sentence.size();
+			if (length > ids.length)
+				ids = new int[Math.max(length, ids.length * 2)];
+			
+			for (int i=0; i<length; i++) {
+				ids[i] = wordIndex.get(sentence.get(i));
+			}
+			
+			for (int i=0; i<length; i++) {
+				int end = Math.min(length, i + 1 + windowSize);
+				for (int j=i+1; j<end; j++) {
+					edges.addTo(LongIntHashMap.pack(ids[i], ids[j]), 1);
+				}
+			}
+		}
+		
+		return edges;
+	}
+	
+	/**
+	 * Runs weighted HITS on the word graph. The authority score of
+	 * a node is the weighted sum of the hub scores of the nodes that
+	 * point to it, and the hub score is the weighted sum of the
+	 * authority scores of the nodes it points to. Unlike runHITS,
+	 * the hub update uses the true outgoing edges.
+	 * 
+	 * @param 	edges		Map from packed (source, target) pairs to edge weights.
+	 * @param 	numNodes	Number of words in the graph.
+	 * @param 	k			Number of iterations to run HITS.
+	 * @param 	check		Deadline of the call, or null to run to completion.
+	 * @return	Score of each word index.
+	 */
+	private double[] runWeightedHITS(LongIntHashMap edges, int numNodes, int k,
+			DeadlineCheck check) {
+		
+		// Lay the edges out as compressed sparse rows,
+		// by target for incoming and by source for outgoing.
+		int numEdges = edges.size();
+		int[] inOffsets = new int[numNodes + 1];
+		int[] outOffsets = new int[numNodes + 1];
+		for (int slot=0; slot<edges.capacity(); slot++) {
+			long key = edges.keyAt(slot);
+			if (key != LongIntHashMap.EMPTY) {
+				outOffsets[(int) (key >>> 32) + 1]++;
+				inOffsets[(int) key + 1]++;
+			}
+		}
+		for (int i=0; i<numNodes; i++) {
+			inOffsets[i+1] += inOffsets[i];
+			outOffsets[i+1] += outOffsets[i];
+		}
+		
+		int[] inEdges = new int[numEdges];
+		int[] outEdges = new int[numEdges];
+		double[] inWeights = new double[numEdges];
+		double[] outWeights = new double[numEdges];
+		int[] inPos = Arrays.copyOf(inOffsets, numNodes);
+		int[] outPos = Arrays.copyOf(outOffsets, numNodes);
+		for (int slot=0; slot<edges.capacity(); slot++) {
+			long key = edges.keyAt(slot);
+			if (key != LongIntHashMap.EMPTY) {
+				int source = (int) (key >>> 32);
+				int target = (int) key;
+				double weight = edges.valueAt(slot);
+				
+				inEdges[inPos[target]] = source;
+				inWeights[inPos[target]++] = weight;
+				outEdges[outPos[source]] = target;
+				outWeights[outPos[source]++] = weight;
+			}
+		}
+		
+		double[] authorityScores = new double[numNodes];
+		double[] hubScores = new double[numNodes];
+		Arrays.fill(authorityScores, 1.0);
+		Arrays.fill(hubScores, 1.0);
+		
+		for (int i=0; i<k && !stopIterating(i, check); i++) {
+			ArrayMath.weightedGatherSum(authorityScores, inOffsets, inEdges,
+					inWeights, hubScores, numNodes);
+			ArrayMath.normalize(authorityScores, numNodes);
+			
+			ArrayMath.weightedGatherSum(hubScores, outOffsets, outEdges,
+					outWeights, authorityScores, numNodes);
+			ArrayMath.normalize(hubScores, numNodes);
+		}
+		
+		double[] scores = new double[numNodes];
+		ArrayMath.average(scores, authorityScores, hubScores, numNodes);
+		
+		return scores;
+	}
+	
+	/**
+	 * Runs HITS on the unweighted graph in the scratch arena of the
+	 * calling thread. Words are numbered alphabetically as in
+	 * makeWordList, and each node's edges are kept in the order
+	 * makeGraph adds them, so the ranking is the same as runHITS.
+	 * 
+	 * @param 	sentences	List of sentences, each of which is a list.
+	 * @param 	k			Number of iterations to run HITS.
+	 * @param 	check		Deadline of the call, or null to run to completion.
+	 * @return	List of words sorted from highest to lowest score.
+	 */
+	private List<String> getKeywordsWithArena(List<List<String>> sentences, int k,
+			DeadlineCheck check) {
+		
+		ScratchArena arena = ScratchArena.acquire();
+		try {
+			int numSentences = sentences.size();
+			int numPairs = 0;
+			
+			// Index loops avoid allocating an iterator per sentence.
+			for (int i=0; i<numSentences; i++) {
+				List<String> sentence = sentences.get(i);
+				for (int j=0; j<sentence.size(); j++) {
+					arena.addTerm(sentence.get(j));
+				}
+				numPairs += Math.max(sentence.size() - 1, 0);
+			}
+			arena.sortTerms();
+			int numNodes = arena.getNumTerms();
+			
+			// Record each distinct edge the first time it occurs.
+			LongIntHashMap seen = arena.pairs();
+			int[] sources = arena.ints(0, numPairs);
+			int[] targets = arena.ints(1, numPairs);
+			int numEdges = 0;
+			for (int i=0; i<numSentences; i++) {
+				List<String> sentence = sentences.get(i);
+				for (int j=0; j<sentence.size()-1; j++) {
+					int current = arena.getTermId(sentence.get(j));
+					int next = arena.getTermId(sentence.get(j+1));
+					long key = LongIntHashMap.pack(current, next);
+					
+					if (seen.get(key) == 0) {
+						seen.addTo(key, 1);
+						sources[numEdges] = current;
+						targets[numEdges] = next;
+						numEdges++;
+					}
+				}
+			}
+			
+			// Group the edges by target, keeping their order.
+			int[] inOffsets = arena.ints(2, numNodes + 1);
+			int[] inPos = arena.ints(3, numNodes);
+			int[] inEdges = arena.ints(4, numEdges);
+			Arrays.fill(inOffsets, 0, numNodes + 1, 0);
+			for (int e=0; e<numEdges; e++) {
+				inOffsets[targets[e] + 1]++;
+			}
+			for (int j=0; j<numNodes; j++) {
+				inOffsets[j+1] += inOffsets[j];
+				inPos[j] = inOffsets[j];
+			}
+			for (int e=0; e<numEdges; e++) {
+				inEdges[inPos[targets[e]]++] = sources[e];
+			}
+			
+			double[] authorityScores = arena.doubles(0, numNodes);
+			double[] hubScores = arena.doubles(1, numNodes);
+			Arrays.fill(authorityScores, 0, numNodes, 1.0);
+			Arrays.fill(hubScores, 0, numNodes, 1.0);
+			
+			// HITSNode.getOutgoing returns the incoming edges,
+			// so runHITS uses them for the hub update step too.
+			for (int i=0; i<k && !stopIterating(i, check); i++) {
+				ArrayMath.gatherSum(authorityScores, inOffsets, inEdges, hubScores, numNodes);
+				ArrayMath.normalize(authorityScores, numNodes);
+				
+				ArrayMath.gatherSum(hubScores, inOffsets, inEdges, authorityScores, numNodes);
+				ArrayMath.normalize(hubScores, numNodes);
+			}
+			
+			double[] scores = arena.doubles(2, numNodes);
+			ArrayMath.average(scores, authorityScores, hubScores, numNodes);
+			
+			int[] ranked = arena.rank(scores, numNodes);
+			List<String> keywords = new ArrayList<String>(numNodes);
+			for (int i=0; i<numNodes; i++) {
+				keywords.add(arena.getTerm(ranked[i]));
+			}
+			
+			return keywords;
+		} finally {
+			arena.release();
+		}
+	}
+	
 	/**
 	 * Makes alphabetically ordered list all words in all sentences.
 	 * 
@@ -109,9 +469,10 @@ public class HITSAlgorithm implements KeywordAlgorithm {
 	 * 
 	 * @param 	graph	Word cooccurrence graph.
 	 * @param 	k		Number of iterations to run HITS.
-	 * @return	List of word indices sorted from highest to lowest score.
+	 * @param 	check	Deadline of the call, or null to run to completion.
+	 * @return	Score of each word index.
 	 */
-	private List<Integer> runHITS(Map<Integer, HITSNode> graph, int k) {
+	private double[] runHITS(Map<Integer, HITSNode> graph, int k, DeadlineCheck check) {
 		
 		int numNodes = graph.size();
 		
@@ -123,66 +484,69 @@ public class HITSAlgorithm implements KeywordAlgorithm {
 		Arrays.fill(authorityScores, 1.0);
 		Arrays.fill(hubScores, 1.0);
 		
-		// Run authority update step and hub update step
-		// sequentially for k iterations.
-		for (int i=0; i<k; i++) {
-			
-			// Keep track of a normalization value.
-			double norm = 0.0;
-			
-			// Update authority scores.
-			for (int j=0; j<numNodes; j++) {
-				
-				// Authority update step: the authority score for a node
-				// is the sum of the hub scores of the nodes that point to it.
-				double authScore = 0.0;
-				for (Integer incoming : graph.get(j).getIncoming()) {
-					authScore += hubScores[incoming];
-				}
-				
-				authorityScores[j] = authScore;
-				norm += Math.pow(authScore, 2);
+		// Flatten the edge lists into compressed sparse row
+		// arrays so the update steps run over primitive arrays.
+		int[] inOffsets = new int[numNodes + 1];
+		int[] outOffsets = new int[numNodes + 1];
+		for (int j=0; j<numNodes; j++) {
+			inOffsets[j+1] = inOffsets[j] + graph.get(j).getIncoming().size();
+			outOffsets[j+1] = outOffsets[j] + graph.get(j).getOutgoing().size();
+		}
+		
+		int[] inEdges = new int[inOffsets[numNodes]];
+		int[] outEdges = new int[outOffsets[numNodes]];
+		for (int j=0; j<numNodes; j++) {
+			int pos = inOffsets[j];
+			for (Integer incoming : graph.get(j).getIncoming()) {
+				inEdges[pos++] = incoming;
 			}
 			
-			// Normalize authority scores.
-			norm = Math.sqrt(norm);
-			for (int j=0; j<numNodes; j++) {
-				authorityScores[j] = authorityScores[j] / norm;
+			pos = outOffsets[j];
+			for (Integer outgoing : graph.get(j).getOutgoing()) {
+				outEdges[pos++] = outgoing;
 			}
+		}
+		
+		// Run authority update step and hub update step
+		// sequentially for k iterations.
+		for (int i=0; i<k && !stopIterating(i, check); i++) {
 			
-			// Set normalization value back to zero.
-			norm = 0.0;
-			
-			// Update hub scores.
-			for (int j=0; j<numNodes; j++) {
-				
-				// Hub update step: the hub score for a node is the sum
-				// of the authority scores of the nodes it points to.
-				double hubScore = 0.0;
-				for (Integer outgoing : graph.get(j).getOutgoing()) {
-					hubScore += authorityScores[outgoing];
-				}
-				
-				hubScores[j] = hubScore;
-				norm += Math.pow(hubScore, 2);
-			}
+			// Authority update step: the authority score for a node
+			// is the sum of the hub scores of the nodes that point to it.
+			ArrayMath.gatherSum(authorityScores, inOffsets, inEdges, hubScores, numNodes);
+			ArrayMath.normalize(authorityScores, numNodes);
 			
-			// Normalize hub scores.
-			norm = Math.sqrt(norm);
-			for (int j=0; j<numNodes; j++) {
-				hubScores[j] = hubScores[j] / norm;
-			}
+			// Hub update step: meant to sum the authority scores of
+			// the nodes a node points to, but HITSNode.getOutgoing
+			// returns the incoming edges, and rankings have always
+			// been computed that way. See HITSAlgorithm(int).
+			ArrayMath.gatherSum(hubScores, outOffsets, outEdges, authorityScores, numNodes);
+			ArrayMath.normalize(hubScores, numNodes);
 		}
 		
+		// The score for each node is the average
+		// of the authority and hub scores.
+		double[] scores = new double[numNodes];
+		ArrayMath.average(scores, authorityScores, hubScores, numNodes);
+		
+		return scores;
+	}
+	
+	/**
+	 * Sorts node indices by score.
+	 * 
+	 * @param 	scores		Score of each node.
+	 * @param 	numNodes	Number of nodes.
+	 * @return	List of node indices sorted from highest to lowest score.
+	 */
+	private List<Integer> makeRanking(double[] scores, int numNodes) {
+		
 		// Calculate final scores for nodes.
 		List<IndexValuePair> scorePairs = new ArrayList<IndexValuePair>();
 		for (int i=0; i<numNodes; i++) {
 			IndexValuePair pair = new IndexValuePair();
 			pair.index = i;
-			
-			// The score for the node is the average
-			// of the authority and hub scores.
-			pair.value = (authorityScores[i] + hubScores[i]) / 2;
+			pair.value = scores[i];
 			scorePairs.add(pair);
 		}
 		
@@ -0,0 +1,220 @@
+package docsum.algorithm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Map-reduce summarization for book-length documents.
+ * <p>
+ * The document is split into sections of a bounded number of
+ * sentences, and each section is summarized independently and in
+ * parallel with MEAD. The section summaries are then concatenated
+ * and summarized again, section by section, until what remains fits
+ * in one section, which a final pass reduces to the target length.
+ * No pass ever scores more than one section at a time. Positional
+ * values are computed within each section of the document, so early
+ * sections are not favored over later ones; later passes rank the
+ * section summaries by centroid value alone.
+ */
+public class HierarchicalMeadAlgorithm implements SummarizationAlgorithm {
+	
+	int sectionSize;
+	ExecutorService executor;
+	CorpusStatistics corpusStatistics;
+	double lambda;
+	
+	/**
+	 * Constructor using sections of 1000 sentences
+	 * and the common fork/join pool.
+	 */
+	public HierarchicalMeadAlgorithm() {
+		this(1000, ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param 	sectionSize		Maximum number of sentences in a section.
+	 * @param 	executor		Executor summarizing the sections.
+	 */
+	public HierarchicalMeadAlgorithm(int sectionSize, ExecutorService executor) {
+		if (sectionSize < 2)
+			throw new IllegalArgumentException("Sections must hold at least 2 sentences");
+		
+		this.sectionSize = sectionSize;
+		this.executor = executor;
+		this.lambda = 1.0;
+	}
+	
+	/**
+	 * Sets the redundancy trade-off of every pass.
+	 * 
+	 * @param 	lambda	1.0 ranks by score alone; lower values penalize redundancy.
+	 */
+	public void setLambda(double lambda) {
+		this.lambda = lambda;
+	}
+	
+	/**
+	 * Sets the corpus statistics used as the IDF source of every pass.
+	 * 
+	 * @param 	corpusStatistics	CorpusStatistics instance, or null for per-document IDF.
+	 */
+	public void setCorpusStatistics(CorpusStatistics corpusStatistics) {
+		this.corpusStatistics = corpusStatistics;
+	}
+	
+	// Gets selection of sentences to include in summary.
+	public List<Integer> getSelection(List<List<String>> sentences, int percentage) {
+		
+		int numSentences = sentences.size();
+		if (numSentences <= sectionSize) {
+			return newSectionAlgorithm().getSelection(sentences, percentage);
+		}
+		
+		int summaryLength = (int) (numSentences * percentage / 100.0);
+		if (summaryLength < 1)
+			summaryLength = 1;
+		
+		List<Integer> candidates = new ArrayList<Integer>(numSentences);
+		for (int i=0; i<numSentences; i++) {
+			candidates.add(i);
+		}
+		
+		// Summarize sections of the remaining candidates until they
+		// fit in one section. Each level keeps twice the target share,
+		// leaving the next level room to choose between sections, but
+		// at most half, so every level shrinks the candidates.
+		boolean firstLevel = true;
+		while (candidates.size() > summaryLength && candidates.size() > sectionSize) {
+			int numCandidates = candidates.size();
+			int levelLength = Math.max(summaryLength,
+					Math.min(2 * summaryLength, numCandidates / 2));
+			
+			candidates = summarizeSections(sentences, candidates, levelLength, firstLevel);
+			firstLevel = false;
+			
+			if (candidates.size() >= numCandidates)
+				break;
+		}
+		
+		if (candidates.size() <= summaryLength) {
+			return candidates;
+		}
+		
+		return reduce(sentences, candidates, summaryLength);
+	}
+	
+	/**
+	 * Summarizes sections of the candidates in parallel. Each section
+	 * keeps its share of the level length, and at least one sentence.
+	 * Sections of the document are scored with full MEAD, so that
+	 * positional values are taken within each section; sections of
+	 * earlier section summaries are ranked by centroid value alone.
+	 * 
+	 * @param 	sentences		List of tokenized sentences.
+	 * @param 	candidates		Sorted indices of the candidate sentences.
+	 * @param 	levelLength		Number of candidates to keep in total.
+	 * @param 	firstLevel		Whether the candidates are the whole document.
+	 * @return	Sorted list of indices of sentences in section summaries.
+	 */
+	private List<Integer> summarizeSections(final List<List<String>> sentences,
+			final List<Integer> candidates, final int levelLength, final boolean firstLevel) {
+		
+		// Spread the candidates evenly so the last
+		// section is not much shorter than the others.
+		final int numCandidates = candidates.size();
+		int numSections = (numCandidates + sectionSize - 1) / sectionSize;
+		
+		List<Callable<List<Integer>>> tasks = new ArrayList<Callable<List<Integer>>>();
+		for (int s=0; s<numSections; s++) {
+			final int start = (int) ((long) numCandidates * s / numSections);
+			final int end = (int) ((long) numCandidates * (s + 1) / numSections);
+			
+			tasks.add(new Callable<List<Integer>>() {
+				public List<Integer> call() {
+					List<Integer> section = candidates.subList(start, end);
+					
+					// Rounding at the section boundaries rather than per
+					// section keeps the level length exactly.
+					int keep = Math.max(1, (int) ((long) levelLength * end / numCandidates)
+							- (int) ((long) levelLength * start / numCandidates));
+					
+					List<Integer> selection = firstLevel
+							? newSectionAlgorithm().getSelectionOfLength(
+									sentences.subList(start, end), keep)
+							: reduce(sentences, section, keep);
+					
+					List<Integer> indices = new ArrayList<Integer>();
+					for (Integer index : selection) {
+						indices.add(firstLevel ? start + index : index);
+					}
+					Collections.sort(indices);
+					return indices;
+				}
+			});
+		}
+		
+		List<Integer> selected = new ArrayList<Integer>();
+		try {
+			for (Future<List<Integer>> future : executor.invokeAll(tasks)) {
+				selected.addAll(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while summarizing sections", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Section summarization failed", e.getCause());
+		}
+		
+		return selected;
+	}
+	
+	/**
+	 * Selects candidates by centroid value alone, with the
+	 * centroid built from the candidates themselves.
+	 * 
+	 * @param 	sentences		List of tokenized sentences.
+	 * @param 	candidates		Indices of the candidate sentences.
+	 * @param 	length			Number of candidates to select.
+	 * @return	List of indices of selected sentences.
+	 */
+	private List<Integer> reduce(List<List<String>> sentences, List<Integer> candidates,
+			int length) {
+		
+		List<List<String>> candidateSentences = new ArrayList<List<String>>();
+		for (Integer index : candidates) {
+			candidateSentences.add(sentences.get(index));
+		}
+		
+		MeadAlgorithm reduce = newSectionAlgorithm();
+		reduce.clearFeatures();
+		reduce.addFeature(new CentroidFeature(), 1.0);
+		
+		List<Integer> selection = new ArrayList<Integer>();
+		for (Integer index : reduce.getSelectionOfLength(candidateSentences, length)) {
+			selection.add(candidates.get(index));
+		}
+		
+		return selection;
+	}
+	
+	/**
+	 * Makes a MEAD instance for a single section. Sections are
+	 * already run in parallel, so each one runs sequentially.
+	 * 
+	 * @return	MeadAlgorithm instance.
+	 */
+	private MeadAlgorithm newSectionAlgorithm() {
+		MeadAlgorithm mead = new MeadAlgorithm(lambda);
+		mead.setParallelThreshold(Integer.MAX_VALUE);
+		mead.setCorpusStatistics(corpusStatistics);
+		return mead;
+	}
+}
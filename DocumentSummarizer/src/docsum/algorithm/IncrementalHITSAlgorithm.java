@@ -0,0 +1,382 @@
+package docsum.algorithm;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keyword extraction over a sliding window of recent documents.
+ * <p>
+ * The word cooccurrence graph is kept between calls as growable
+ * lists of incoming and outgoing neighbours per word. Adding a
+ * document appends its new edges, and documents that fall out of
+ * the window have their vanished edges removed again, so updating
+ * the graph touches only the words of the documents entering and
+ * leaving the window. HITS is then restarted from the previous
+ * authority and hub scores and run until the scores stop changing,
+ * which usually takes far fewer iterations than starting from
+ * uniform scores. Each iteration still visits every edge in the
+ * window, because the scores are normalized over the whole graph.
+ * <p>
+ * The window holds its own copy of each document as term ids,
+ * so callers may reuse or change their sentence lists.
+ */
+public class IncrementalHITSAlgorithm implements KeywordAlgorithm {
+	
+	int windowSize;
+	int maxIterations;
+	double tolerance;
+	
+	Deque<int[][]> window;
+	
+	Map<String, Integer> termIds;
+	List<String> termNames;
+	int[] termCounts;
+	Deque<Integer> freeIds;
+	
+	Map<Long, Integer> edgeCounts;
+	int[][] inLists;
+	int[] inDegrees;
+	int[][] outLists;
+	int[] outDegrees;
+	
+	double[] authorityScores;
+	double[] hubScores;
+	double[] authorityBuffer;
+	double[] hubBuffer;
+	
+	/**
+	 * Default constructor. Keeps the 100 most recent documents.
+	 */
+	public IncrementalHITSAlgorithm() {
+		this(100, 50, 1e-6);
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param 	windowSize		Number of recent documents in the window.
+	 * @param 	maxIterations	Maximum number of HITS iterations per update.
+	 * @param 	tolerance		Largest score change at which HITS has converged.
+	 */
+	public IncrementalHITSAlgorithm(int windowSize, int maxIterations, double tolerance) {
+		this.windowSize = windowSize;
+		this.maxIterations = maxIterations;
+		this.tolerance = tolerance;
+		
+		window = new ArrayDeque<int[][]>();
+		termIds = new HashMap<String, Integer>();
+		termNames = new ArrayList<String>();
+		termCounts = new int[16];
+		freeIds = new ArrayDeque<Integer>();
+		edgeCounts = new HashMap<Long, Integer>();
+		inLists = new int[16][];
+		inDegrees = new int[16];
+		outLists = new int[16][];
+		outDegrees = new int[16];
+		authorityScores = new double[16];
+		hubScores = new double[16];
+		authorityBuffer = new double[16];
+		hubBuffer = new double[16];
+	}
+	
+	// Adds a document to the window and ranks the words in the window.
+	public List<String> getKeywords(List<List<String>> sentences) {
+		addDocument(sentences);
+		return getKeywords();
+	}
+	
+	/**
+	 * Adds a document to the window, expiring the
+	 * oldest document if the window is full.
+	 * 
+	 * @param 	sentences	List of tokenized sentences.
+	 */
+	public void addDocument(List<List<String>> sentences) {
+		int[][] document = new int[sentences.size()][];
+		
+		for (int s=0; s<document.length; s++) {
+			List<String> sentence = sentences.get(s);
+			int[] ids = new int[sentence.size()];
+			for (int w=0; w<ids.length; w++) {
+				ids[w] = acquireTerm(sentence.get(w));
+			}
+			document[s] = ids;
+			
+			for (int w=1; w<ids.length; w++) {
+				addEdge(ids[w-1], ids[w]);
+			}
+		}
+		
+		window.addLast(document);
+		
+		while (window.size() > windowSize) {
+			removeDocument(window.removeFirst());
+		}
+	}
+	
+	/**
+	 * Ranks the words in the window, warm-starting
+	 * HITS from the scores of the previous call.
+	 * 
+	 * @return	List of words sorted from highest to lowest score.
+	 */
+	public List<String> getKeywords() {
+		
+		int numIds = termNames.size();
+		runHITS(numIds);
+		
+		// Rank the words that are still in the window.
+		List<IndexValuePair> scorePairs = new ArrayList<IndexValuePair>();
+		for (int i=0; i<numIds; i++) {
+			if (termCounts[i] > 0) {
+				IndexValuePair pair = new IndexValuePair();
+				pair.index = i;
+				pair.value = (authorityScores[i] + hubScores[i]) / 2;
+				scorePairs.add(pair);
+			}
+		}
+		
+		Collections.sort(scorePairs);
+		Collections.reverse(scorePairs);
+		
+		List<String> keywords = new ArrayList<String>();
+		for (IndexValuePair pair : scorePairs) {
+			keywords.add(termNames.get(pair.index));
+		}
+		
+		return keywords;
+	}
+	
+	/**
+	 * Removes the words and edges of a document leaving the window.
+	 * 
+	 * @param 	document	Term ids of the sentences of the document.
+	 */
+	private void removeDocument(int[][] document) {
+		for (int[] ids : document) {
+			for (int w=1; w<ids.length; w++) {
+				removeEdge(ids[w-1], ids[w]);
+			}
+			for (int id : ids) {
+				releaseTerm(id);
+			}
+		}
+	}
+	
+	/**
+	 * Counts an occurrence of an edge, linking
+	 * the words when it occurs for the first time.
+	 * 
+	 * @param 	source	Id of the preceding word.
+	 * @param 	target	Id of the following word.
+	 */
+	private void addEdge(int source, int target) {
+		long key = ((long) source << 32) | target;
+		Integer count = edgeCounts.get(key);
+		
+		if (count == null) {
+			edgeCounts.put(key, 1);
+			outLists[source] = append(outLists[source], outDegrees[source]++, target);
+			inLists[target] = append(inLists[target], inDegrees[target]++, source);
+		}
+		else {
+			edgeCounts.put(key, count + 1);
+		}
+	}
+	
+	/**
+	 * Removes an occurrence of an edge, unlinking
+	 * the words when no occurrence is left.
+	 * 
+	 * @param 	source	Id of the preceding word.
+	 * @param 	target	Id of the following word.
+	 */
+	private void removeEdge(int source, int target) {
+		long key = ((long) source << 32) | target;
+		int count = edgeCounts.get(key);
+		
+		if (count == 1) {
+			edgeCounts.remove(key);
+			outDegrees[source] = remove(outLists[source], outDegrees[source], target);
+			inDegrees[target] = remove(inLists[target], inDegrees[target], source);
+		}
+		else {
+			edgeCounts.put(key, count - 1);
+		}
+	}
+	
+	/**
+	 * Appends a neighbour to an adjacency list, growing it if full.
+	 * 
+	 * @param 	list	Adjacency list, or null.
+	 * @param 	size	Number of neighbours in the list.
+	 * @param 	id		Id of the new neighbour.
+	 * @return	The list, or a larger copy.
+	 */
+	private static int[] append(int[] list, int size, int id) {
+		if (list == null)
+			list = new int[4];
+		else if (size == list.length)
+			list = Arrays.copyOf(list, size * 2);
+		
+		list[size] = id;
+		return list;
+	}
+	
+	/**
+	 * Removes a neighbour from an adjacency list by moving
+	 * the last neighbour into its place.
+	 * 
+	 * @param 	list	Adjacency list.
+	 * @param 	size	Number of neighbours in the list.
+	 * @param 	id		Id of the neighbour to remove.
+	 * @return	New number of neighbours.
+	 */
+	private static int remove(int[] list, int size, int id) {
+		for (int i=0; i<size; i++) {
+			if (list[i] == id) {
+				list[i] = list[size - 1];
+				return size - 1;
+			}
+		}
+		
+		return size;
+	}
+	
+	/**
+	 * Counts an occurrence of a word, assigning an id if it is new.
+	 * 
+	 * @param 	word	Word string.
+	 * @return	Id of the word.
+	 */
+	private int acquireTerm(String word) {
+		Integer id = termIds.get(word);
+		
+		if (id == null) {
+			if (freeIds.isEmpty()) {
+				id = termNames.size();
+				termNames.add(word);
+				ensureCapacity(id + 1);
+			}
+			else {
+				id = freeIds.pop();
+				termNames.set(id, word);
+			}
+			
+			termIds.put(word, id);
+			
+			// New words start at the average score of a unit vector.
+			double initial = 1.0 / Math.sqrt(termIds.size());
+			authorityScores[id] = initial;
+			hubScores[id] = initial;
+		}
+		
+		termCounts[id]++;
+		return id;
+	}
+	
+	/**
+	 * Removes an occurrence of a word, freeing its id
+	 * when it no longer occurs in the window.
+	 * 
+	 * @param 	id	Id of the word.
+	 */
+	private void releaseTerm(int id) {
+		termCounts[id]--;
+		if (termCounts[id] == 0) {
+			termIds.remove(termNames.get(id));
+			termNames.set(id, null);
+			freeIds.push(id);
+			authorityScores[id] = 0.0;
+			hubScores[id] = 0.0;
+		}
+	}
+	
+	/**
+	 * Grows the per-word arrays to hold at least the given number of ids.
+	 * 
+	 * @param 	capacity	Required number of ids.
+	 */
+	private void ensureCapacity(int capacity) {
+		if (capacity > termCounts.length) {
+			int length = Math.max(capacity, termCounts.length * 2);
+			termCounts = Arrays.copyOf(termCounts, length);
+			inLists = Arrays.copyOf(inLists, length);
+			inDegrees = Arrays.copyOf(inDegrees, length);
+			outLists = Arrays.copyOf(outLists, length);
+			outDegrees = Arrays.copyOf(outDegrees, length);
+			authorityScores = Arrays.copyOf(authorityScores, length);
+			hubScores = Arrays.copyOf(hubScores, length);
+			authorityBuffer = new double[length];
+			hubBuffer = new double[length];
+		}
+	}
+	
+	/**
+	 * Runs HITS from the current scores until the largest
+	 * change in any score falls below the tolerance.
+	 * 
+	 * @param 	numIds	Number of word ids in use.
+	 */
+	private void runHITS(int numIds) {
+		double[] authority = authorityBuffer;
+		double[] hub = hubBuffer;
+		
+		for (int i=0; i<maxIterations; i++) {
+			for (int j=0; j<numIds; j++) {
+				authority[j] = sumScores(inLists[j], inDegrees[j], hubScores);
+			}
+			normalize(authority, numIds);
+			for (int j=0; j<numIds; j++) {
+				hub[j] = sumScores(outLists[j], outDegrees[j], authority);
+			}
+			normalize(hub, numIds);
+			
+			double change = 0.0;
+			for (int j=0; j<numIds; j++) {
+				change = Math.max(change, Math.abs(authority[j] - authorityScores[j]));
+				change = Math.max(change, Math.abs(hub[j] - hubScores[j]));
+			}
+			
+			System.arraycopy(authority, 0, authorityScores, 0, numIds);
+			System.arraycopy(hub, 0, hubScores, 0, numIds);
+			
+			if (change < tolerance)
+				break;
+		}
+	}
+	
+	/**
+	 * Sums the scores of the neighbours in an adjacency list.
+	 * 
+	 * @param 	list	Adjacency list, or null.
+	 * @param 	size	Number of neighbours in the list.
+	 * @param 	scores	Scores of all words.
+	 * @return	Sum of the neighbours' scores.
+	 */
+	private static double sumScores(int[] list, int size, double[] scores) {
+		double sum = 0.0;
+		for (int i=0; i<size; i++) {
+			sum += scores[list[i]];
+		}
+		return sum;
+	}
+	
+	/**
+	 * Normalizes scores to unit length, leaving
+	 * them unchanged if they are all zero.
+	 * 
+	 * @param 	scores	Array of scores.
+	 * @param 	n		Number of scores.
+	 */
+	private void normalize(double[] scores, int n) {
+		if (ArrayMath.sumOfSquares(scores, n) > 0.0)
+			ArrayMath.normalize(scores, n);
+	}
+}
@@ -0,0 +1,385 @@
+package docsum.algorithm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * MEAD summarization of a document that only ever grows,
+ * such as a live transcript or a log.
+ * <p>
+ * Term frequencies, sentence frequencies and an inverted index from
+ * each term to the sentences containing it are kept between calls,
+ * and appending sentences updates them from the appended tokens only.
+ * The overlap of each sentence with the first sentence cannot change,
+ * so it is computed once on append. A refresh then recomputes the
+ * centroid from the term counts and sums centroid values over the
+ * postings of the centroid terms, without revisiting the other tokens.
+ * The centroid terms and the summary sentences are taken with bounded
+ * heaps, so a refresh sorts neither the vocabulary nor the sentences.
+ * <p>
+ * A document passed to getSelection is recognized as the known one
+ * grown by a rolling hash over the tokens of its known sentences.
+ * <p>
+ * Selections are the same as those of MeadAlgorithm with its default
+ * features on the whole document.
+ */
+public class IncrementalMeadAlgorithm implements SummarizationAlgorithm {
+	
+	static final long EMPTY_HASH = 0xcbf29ce484222325L;
+	static final long HASH_PRIME = 0x100000001b3L;
+	
+	Map<String, Integer> termIds;
+	List<String> termNames;
+	int[] termCounts;
+	int[] docCounts;
+	int[][] postings;
+	
+	long knownHash;
+	int[] firstSentenceIds;
+	double[] firstSentenceCounts;
+	double[] overlaps;
+	int numSentences;
+	
+	List<Integer> lastSelection;
+	int lastPercentage;
+	int lastNumSentences;
+	
+	/**
+	 * Default no-argument constructor.
+	 */
+	public IncrementalMeadAlgorithm() {
+		reset();
+	}
+	
+	/**
+	 * Discards the document so that a new one can be started.
+	 */
+	public void reset() {
+		termIds = new HashMap<String, Integer>();
+		termNames = new ArrayList<String>();
+		termCounts = new int[16];
+		docCounts = new int[16];
+		postings = new int[16][];
+		knownHash = EMPTY_HASH;
+		overlaps = new double[16];
+		numSentences = 0;
+		lastSelection = null;
+	}
+	
+	// Appends the new sentences of a grown document and selects the summary.
+	// If the sentences do not extend the known document, the model is rebuilt.
+	public List<Integer> getSelection(List<List<String>> sentences, int percentage) {
+		
+		if (!extendsKnownDocument(sentences))
+			reset();
+		
+		addSentences(sentences.subList(numSentences, sentences.size()));
+		
+		return getSelection(percentage);
+	}
+	
+	/**
+	 * Appends sentences to the document.
+	 * 
+	 * @param 	sentences	List of tokenized sentences.
+	 */
+	public void addSentences(List<List<String>> sentences) {
+		for (List<String> sentence : sentences) {
+			addSentence(sentence);
+		}
+	}
+	
+	/**
+	 * Appends a sentence to the document, updating the term
+	 * statistics and inverted index from its tokens.
+	 * 
+	 * @param 	sentence	Tokenized sentence.
+	 */
+	public void addSentence(List<String> sentence) {
+		int index = numSentences;
+		
+		// Sorted term ids and counts of the sentence.
+		int[] ids = new int[sentence.size()];
+		for (int i=0; i<ids.length; i++) {
+			ids[i] = getTermId(sentence.get(i));
+			termCounts[ids[i]]++;
+		}
+		Arrays.sort(ids);
+		
+		int distinct = 0;
+		double[] counts = new double[ids.length];
+		for (int i=0; i<ids.length; i++) {
+			if (i == 0 || ids[i] != ids[i-1]) {
+				ids[distinct] = ids[i];
+				distinct++;
+				addPosting(ids[i], index);
+			}
+			counts[distinct-1] += 1.0;
+		}
+		ids = Arrays.copyOf(ids, distinct);
+		counts = Arrays.copyOf(counts, distinct);
+		
+		if (index == 0) {
+			firstSentenceIds = ids;
+			firstSentenceCounts = counts;
+		}
+		
+		if (index == overlaps.length)
+			overlaps = Arrays.copyOf(overlaps, index * 2);
+		overlaps[index] = dot(ids, counts, firstSentenceIds, firstSentenceCounts);
+		
+		knownHash = hashSentence(knownHash, sentence);
+		numSentences++;
+	}
+	
+	/**
+	 * Gets the number of sentences in the document.
+	 * 
+	 * @return	Number of sentences.
+	 */
+	public int getNumSentences() {
+		return numSentences;
+	}
+	
+	/**
+	 * Selects the summary of the document as it stands. The last
+	 * selection is returned again if nothing has been appended.
+	 * 
+	 * @param 	percentage	Percentage of sentences to include in summary.
+	 * @return	List of indices of sentences included in summary.
+	 */
+	public List<Integer> getSelection(int percentage) {
+		
+		if (numSentences == 0) {
+			return new ArrayList<Integer>();
+		}
+		
+		if (lastSelection != null && lastNumSentences == numSentences
+				&& lastPercentage == percentage) {
+			return new ArrayList<Integer>(lastSelection);
+		}
+		
+		int numTerms = termNames.size();
+		
+		// Centroid values, computed as in MeadAlgorithm.makeCentroidValues.
+		final double[] centroidValues = new double[numTerms];
+		for (int t=0; t<numTerms; t++) {
+			double tf = (double) termCounts[t] / (float) numSentences;
+			centroidValues[t] = tf * Math.log10(numSentences / (double) docCounts[t]);
+		}
+		
+		int topTerms = (int) (numTerms * 0.1);
+		if (topTerms < 1 && numTerms > 0)
+			topTerms = 1;
+		
+		// Rank the terms as the sorted and reversed centroid pairs are
+		// ranked there, where terms are indexed alphabetically.
+		List<Integer> rankedTerms = selectTop(numTerms, topTerms, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				int c = Double.compare(centroidValues[b], centroidValues[a]);
+				return (c != 0) ? c : termNames.get(b).compareTo(termNames.get(a));
+			}
+		});
+		
+		// Sum the centroid values over the postings of the centroid
+		// terms in rank order, the order in which MEAD adds them.
+		double[] docCentroidValues = new double[numSentences];
+		for (int r=0; r<topTerms; r++) {
+			int t = rankedTerms.get(r);
+			int[] posting = postings[t];
+			
+			for (int p=1; p<=posting[0]; p++) {
+				docCentroidValues[posting[p]] += centroidValues[t];
+			}
+		}
+		
+		double maxCentroidValue = Double.NEGATIVE_INFINITY;
+		for (int i=0; i<numSentences; i++) {
+			if (docCentroidValues[i] > maxCentroidValue)
+				maxCentroidValue = docCentroidValues[i];
+		}
+		
+		// Centroid, position and first sentence overlap, added
+		// in the order of the default MEAD features.
+		final double[] sentenceScores = new double[numSentences];
+		for (int i=0; i<numSentences; i++) {
+			sentenceScores[i] = docCentroidValues[i]
+					+ ((numSentences - i) / (double) numSentences) * maxCentroidValue
+					+ overlaps[i];
+		}
+		
+		int summaryLength = (int) (numSentences * percentage / 100.0);
+		if (summaryLength < 1)
+			summaryLength = 1;
+		
+		// Rank the sentences as the stably sorted and reversed
+		// score pairs are ranked in MEAD, later sentences first on ties.
+		List<Integer> indices = selectTop(numSentences, Math.min(summaryLength, numSentences),
+				new Comparator<Integer>() {
+					public int compare(Integer a, Integer b) {
+						int c = Double.compare(sentenceScores[b], sentenceScores[a]);
+						return (c != 0) ? c : b - a;
+					}
+				});
+		Collections.sort(indices);
+		
+		lastSelection = indices;
+		lastNumSentences = numSentences;
+		lastPercentage = percentage;
+		
+		return new ArrayList<Integer>(indices);
+	}
+	
+	/**
+	 * Gets the first k of n items in rank order, keeping the best
+	 * k seen so far in a heap whose head is the worst of them.
+	 * 
+	 * @param 	n			Number of items, numbered from 0.
+	 * @param 	k			Number of items to take.
+	 * @param 	rankOrder	Comparator ordering items from best to worst.
+	 * @return	List of the best k items, best first.
+	 */
+	private static List<Integer> selectTop(int n, int k, Comparator<Integer> rankOrder) {
+		if (k <= 0)
+			return new ArrayList<Integer>();
+		
+		PriorityQueue<Integer> heap = new PriorityQueue<Integer>(k,
+				Collections.reverseOrder(rankOrder));
+		for (int i=0; i<n; i++) {
+			if (heap.size() < k) {
+				heap.add(i);
+			} else if (rankOrder.compare(i, heap.peek()) < 0) {
+				heap.poll();
+				heap.add(i);
+			}
+		}
+		
+		List<Integer> top = new ArrayList<Integer>(heap);
+		Collections.sort(top, rankOrder);
+		
+		return top;
+	}
+	
+	/**
+	 * Checks whether a document starts with the known sentences,
+	 * by comparing the rolling hash of its first sentences with
+	 * that of the known ones.
+	 * 
+	 * @param 	sentences	List of tokenized sentences.
+	 * @return	True if the sentences extend the known document.
+	 */
+	private boolean extendsKnownDocument(List<List<String>> sentences) {
+		if (numSentences == 0)
+			return true;
+		
+		if (sentences.size() < numSentences)
+			return false;
+		
+		long hash = EMPTY_HASH;
+		for (int i=0; i<numSentences; i++) {
+			hash = hashSentence(hash, sentences.get(i));
+		}
+		
+		return hash == knownHash;
+	}
+	
+	/**
+	 * Extends a rolling hash with the tokens of a sentence
+	 * and a marker for the end of the sentence.
+	 * 
+	 * @param 	hash		Hash of the preceding sentences.
+	 * @param 	sentence	Tokenized sentence.
+	 * @return	Hash including the sentence.
+	 */
+	private static long hashSentence(long hash, List<String> sentence) {
+		for (int i=0; i<sentence.size(); i++) {
+			hash = (hash ^ sentence.get(i).hashCode()) * HASH_PRIME;
+		}
+		
+		return (hash ^ 0xff) * HASH_PRIME;
+	}
+	
+	/**
+	 * Gets the id of a term, adding it if it is new.
+	 * 
+	 * @param 	term	Term string.
+	 * @return	Term id.
+	 */
+	private int getTermId(String term) {
+		Integer id = termIds.get(term);
+		if (id != null)
+			return id;
+		
+		id = termNames.size();
+		termIds.put(term, id);
+		termNames.add(term);
+		
+		if (id == termCounts.length) {
+			termCounts = Arrays.copyOf(termCounts, id * 2);
+			docCounts = Arrays.copyOf(docCounts, id * 2);
+			postings = Arrays.copyOf(postings, id * 2);
+		}
+		postings[id] = new int[5];
+		
+		return id;
+	}
+	
+	/**
+	 * Adds a sentence to the posting list of a term. The first
+	 * element of a posting list holds its length.
+	 * 
+	 * @param 	id		Term id.
+	 * @param 	index	Sentence index.
+	 */
+	private void addPosting(int id, int index) {
+		int[] posting = postings[id];
+		int size = posting[0];
+		
+		if (size + 1 == posting.length) {
+			posting = Arrays.copyOf(posting, posting.length * 2);
+			postings[id] = posting;
+		}
+		
+		posting[size + 1] = index;
+		posting[0] = size + 1;
+		docCounts[id]++;
+	}
+	
+	/**
+	 * Computes the dot product of two sparse vectors
+	 * given as sorted term ids and counts.
+	 * 
+	 * @param 	ids			Term ids of the first vector.
+	 * @param 	counts		Counts of the first vector.
+	 * @param 	otherIds	Term ids of the second vector.
+	 * @param 	otherCounts	Counts of the second vector.
+	 * @return	Dot product.
+	 */
+	private static double dot(int[] ids, double[] counts, int[] otherIds, double[] otherCounts) {
+		double total = 0.0;
+		int i = 0;
+		int j = 0;
+		
+		while (i < ids.length && j < otherIds.length) {
+			if (ids[i] == otherIds[j]) {
+				total += counts[i] * otherCounts[j];
+				i++;
+				j++;
+			}
+			else if (ids[i] < otherIds[j]) {
+				i++;
+			}
+			else {
+				j++;
+			}
+		}
+		
+		return total;
+	}
+}
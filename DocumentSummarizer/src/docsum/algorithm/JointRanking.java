@@ -0,0 +1,42 @@
+package docsum.algorithm;
+
+import java.util.List;
+
+/**
+ * Sentence selection and keywords of a document,
+ * ranked together by BipartiteHITSAlgorithm.
+ */
+public class JointRanking {
+	
+	List<Integer> selection;
+	List<String> keywords;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param 	selection	List of indices of selected sentences, in document order.
+	 * @param 	keywords	List of words ordered by authority score.
+	 */
+	JointRanking(List<Integer> selection, List<String> keywords) {
+		this.selection = selection;
+		this.keywords = keywords;
+	}
+	
+	/**
+	 * Gets the selected sentences.
+	 * 
+	 * @return	List of indices of selected sentences, in document order.
+	 */
+	public List<Integer> getSelection() {
+		return selection;
+	}
+	
+	/**
+	 * Gets the keywords.
+	 * 
+	 * @return	List of words ordered by authority score.
+	 */
+	public List<String> getKeywords() {
+		return keywords;
+	}
+}
@@ -0,0 +1,27 @@
+package docsum.algorithm;
+
+import java.util.List;
+
+/**
+ * Share of the words in each sentence that belong to the
+ * centroid document, scaled by the max centroid value.
+ */
+public class KeywordDensityFeature implements SentenceFeature {
+	
+	// Counts centroid words in each sentence.
+	public void fill(FeatureContext context, double[] column) {
+		
+		for (int i=0; i<column.length; i++) {
+			List<String> sentence = context.sentences.get(i);
+			
+			int keywords = 0;
+			for (String word : sentence) {
+				if (context.isCentroidTerm(word))
+					keywords++;
+			}
+			
+			column[i] = sentence.isEmpty() ? 0.0
+					: keywords / (double) sentence.size() * context.maxCentroidValue;
+		}
+	}
+}
@@ -0,0 +1,29 @@
+package docsum.algorithm;
+
+/**
+ * Penalizes sentences with fewer words than a cutoff, after
+ * preprocessing. Short sentences get the negative of the max
+ * centroid value and all others get zero.
+ */
+public class LengthPenaltyFeature implements SentenceFeature {
+	
+	int minLength;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param 	minLength	Number of words below which a sentence is penalized.
+	 */
+	public LengthPenaltyFeature(int minLength) {
+		this.minLength = minLength;
+	}
+	
+	// Assigns the penalty to short sentences.
+	public void fill(FeatureContext context, double[] column) {
+		double penalty = -context.maxCentroidValue;
+		
+		for (int i=0; i<column.length; i++) {
+			column[i] = (context.sentences.get(i).size() < minLength) ? penalty : 0.0;
+		}
+	}
+}
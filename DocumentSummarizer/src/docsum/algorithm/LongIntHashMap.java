@@ -0,0 +1,203 @@
+package docsum.algorithm;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from long keys to int values,
+ * stored in two primitive arrays with linear probing.
+ * Avoids the boxed keys, values and entry objects of a
+ * HashMap when counting large numbers of packed pairs.
+ * <p>
+ * Negative keys are reserved; -1 marks an empty slot.
+ */
+public class LongIntHashMap {
+	
+	static final long EMPTY = -1L;
+	
+	long[] keys;
+	int[] values;
+	int size;
+	int mask;
+	
+	/**
+	 * Default constructor.
+	 */
+	public LongIntHashMap() {
+		this(16);
+	}
+	
+	/**
+	 * Constructor with expected number of entries.
+	 * 
+	 * @param 	expected	Number of entries to size the table for.
+	 */
+	public LongIntHashMap(int expected) {
+		int capacity = 16;
+		while (capacity < expected * 2) {
+			capacity <<= 1;
+		}
+		allocate(capacity);
+	}
+	
+	/**
+	 * Packs two non-negative ints into a single key.
+	 * 
+	 * @param 	high	First int, stored in the upper 32 bits.
+	 * @param 	low		Second int, stored in the lower 32 bits.
+	 * @return	Packed key.
+	 */
+	public static long pack(int high, int low) {
+		return ((long) high << 32) | (low & 0xFFFFFFFFL);
+	}
+	
+	/**
+	 * Adds a value to the value stored for a key,
+	 * inserting the key with value 0 first if necessary.
+	 * 
+	 * @param 	key		Non-negative key.
+	 * @param 	delta	Amount to add.
+	 */
+	public void addTo(long key, int delta) {
+		int slot = findSlot(key);
+		
+		if (keys[slot] == EMPTY) {
+			
+			// Assign rather than add, since a cleared
+			// slot still holds its old value.
+			keys[slot] = key;
+			values[slot] = delta;
+			size++;
+			
+			// Keep the load factor at or below one half.
+			if (size * 2 > keys.length)
+				rehash(keys.length * 2);
+			
+			return;
+		}
+		
+		values[slot] += delta;
+	}
+	
+	/**
+	 * Removes all entries, keeping the table
+	 * so that it can be filled again. Values are
+	 * left in place and overwritten on insert.
+	 */
+	public void clear() {
+		Arrays.fill(keys, EMPTY);
+		size = 0;
+	}
+	
+	/**
+	 * Gets the value stored for a key.
+	 * 
+	 * @param 	key		Non-negative key.
+	 * @return	Stored value, or 0 if the key is absent.
+	 */
+	public int get(long key) {
+		int slot = findSlot(key);
+		return (keys[slot] == EMPTY) ? 0 : values[slot];
+	}
+	
+	/**
+	 * Gets the number of keys in the map.
+	 * 
+	 * @return	Number of keys.
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Gets the number of slots, for iterating with keyAt and valueAt.
+	 * 
+	 * @return	Number of slots.
+	 */
+	public int capacity() {
+		return keys.length;
+	}
+	
+	/**
+	 * Gets the key in a slot.
+	 * 
+	 * @param 	slot	Slot index.
+	 * @return	Key, or -1 if the slot is empty.
+	 */
+	public long keyAt(int slot) {
+		return keys[slot];
+	}
+	
+	/**
+	 * Gets the value in a slot.
+	 * 
+	 * @param 	slot	Slot index.
+	 * @return	Value in the slot, meaningless if the slot is empty.
+	 */
+	public int valueAt(int slot) {
+		return values[slot];
+	}
+	
+	/**
+	 * Finds the slot holding a key, or the empty
+	 * slot where it would be inserted.
+	 * 
+	 * @param 	key		Key to look up.
+	 * @return	Slot index.
+	 */
+	private int findSlot(long key) {
+		int slot = mix(key) & mask;
+		
+		while (keys[slot] != EMPTY && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		
+		return slot;
+	}
+	
+	/**
+	 * Allocates empty arrays of the given power-of-two capacity.
+	 * 
+	 * @param 	capacity	Number of slots.
+	 */
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new int[capacity];
+		Arrays.fill(keys, EMPTY);
+		mask = capacity - 1;
+	}
+	
+	/**
+	 * Moves all entries into a table of a new capacity.
+	 * 
+	 * @param 	capacity	New number of slots.
+	 */
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		allocate(capacity);
+		
+		for (int i=0; i<oldKeys.length; i++) {
+			if (oldKeys[i] != EMPTY) {
+				int slot = findSlot(oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+	
+	/**
+	 * Spreads the bits of a key with the MurmurHash3 finalizer.
+	 * 
+	 * @param 	key		Key to hash.
+	 * @return	Hash code.
+	 */
+	private static int mix(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		
+		return (int) key;
+	}
+}
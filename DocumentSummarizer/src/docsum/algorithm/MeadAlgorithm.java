@@ -1,11 +1,14 @@
 package docsum.algorithm;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Performs extractive summarization of a document
@@ -20,15 +23,153 @@ import java.util.Set;
  */
 public class MeadAlgorithm implements SummarizationAlgorithm {
 	
+	static final int DEFAULT_PARALLEL_THRESHOLD = 2000;
+	static final int CHUNK_SIZE = 256;
+	
+	// Degradation levels under a deadline, from exact to cheapest.
+	static final int FULL = 0;
+	static final int REDUCED = 1;
+	static final int SAMPLED = 2;
+	static final int LEAD = 3;
+	static final int SAMPLE_SIZE = 200;
+	
 	Map<String, List<Integer>> docFrequencies;
 	List<String> terms;
 	Map<String, Double> averageTermFrequencies;
+	Map<String, Integer> termIndex;
+	double lambda;
+	SimHashDeduplicator deduplicator;
+	ForkJoinPool pool;
+	int parallelThreshold;
+	List<SentenceFeature> features;
+	List<Double> featureWeights;
+	CorpusStatistics corpusStatistics;
+	boolean useScratchArenas;
+	double[] nanosPerToken;
 	
 	/**
-	 * No-argument constructor.
+	 * No-argument constructor. Sentences are selected
+	 * purely by score, with no redundancy penalty.
 	 */
 	public MeadAlgorithm() {
+		this(1.0);
+	}
+	
+	/**
+	 * Constructor for redundancy-aware selection using
+	 * maximal marginal relevance. A lambda of 1.0 ranks by
+	 * score alone; lower values increasingly penalize sentences
+	 * that are similar to those already in the summary.
+	 * 
+	 * @param 	lambda	Trade-off between relevance and novelty, 0 to 1.
+	 */
+	public MeadAlgorithm(double lambda) {
+		this.lambda = lambda;
+		this.pool = ForkJoinPool.commonPool();
+		this.parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+		
+		// Initial cost estimates per level, refined as calls complete.
+		this.nanosPerToken = new double[] {2000.0, 1500.0, 200.0, 0.0};
 		
+		// The MEAD score is the sum of the centroid value,
+		// the positional value and the first sentence overlap.
+		features = new ArrayList<SentenceFeature>();
+		featureWeights = new ArrayList<Double>();
+		addFeature(new CentroidFeature(), 1.0);
+		addFeature(new PositionFeature(), 1.0);
+		addFeature(new FirstSentenceOverlapFeature(), 1.0);
+	}
+	
+	/**
+	 * Adds a feature to the sentence score. Each sentence
+	 * score is the weighted sum of its feature values.
+	 * 
+	 * @param 	feature		SentenceFeature instance.
+	 * @param 	weight		Weight of the feature in the score.
+	 */
+	public void addFeature(SentenceFeature feature, double weight) {
+		features.add(feature);
+		featureWeights.add(weight);
+	}
+	
+	/**
+	 * Removes all features, including the default MEAD features,
+	 * so that the score can be built up from scratch.
+	 */
+	public void clearFeatures() {
+		features.clear();
+		featureWeights.clear();
+	}
+	
+	/**
+	 * Sets the trade-off between relevance and novelty used
+	 * by maximal marginal relevance selection.
+	 * 
+	 * @param 	lambda	1.0 ranks by score alone; lower values penalize redundancy.
+	 */
+	public void setLambda(double lambda) {
+		this.lambda = lambda;
+	}
+	
+	/**
+	 * Sets the number of sentences at which the model is built
+	 * and sentences are scored in parallel. Below the threshold
+	 * the fork/join overhead outweighs the gain, so smaller
+	 * documents are processed on the calling thread.
+	 * 
+	 * @param 	parallelThreshold	Minimum number of sentences for parallel execution.
+	 */
+	public void setParallelThreshold(int parallelThreshold) {
+		this.parallelThreshold = parallelThreshold;
+	}
+	
+	/**
+	 * Sets the fork/join pool used for parallel execution.
+	 * The common pool is used by default.
+	 * 
+	 * @param 	pool	ForkJoinPool instance.
+	 */
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+	
+	/**
+	 * Enables collapsing of near-duplicate sentences before scoring.
+	 * The model is then built and scored on one representative
+	 * per group of duplicates, so repeated sentences are counted
+	 * once and can appear in the summary at most once.
+	 * 
+	 * @param 	deduplicator	SimHashDeduplicator instance, or null to disable.
+	 */
+	public void setDeduplicator(SimHashDeduplicator deduplicator) {
+		this.deduplicator = deduplicator;
+	}
+	
+	/**
+	 * Enables reuse of per-thread scratch arenas. Each call then
+	 * builds the model in the arena of the calling thread instead of
+	 * in maps, lists and pair objects, so that steady-state selection
+	 * allocates little more than its result. The arenas are used only
+	 * with the default MEAD features; other features need the full
+	 * FeatureContext and are scored as before. Selections are the
+	 * same either way.
+	 * 
+	 * @param 	useScratchArenas	Whether to use scratch arenas.
+	 */
+	public void setScratchArenas(boolean useScratchArenas) {
+		this.useScratchArenas = useScratchArenas;
+	}
+	
+	/**
+	 * Takes the inverse document frequency of centroid terms from
+	 * statistics over a stream of documents instead of treating the
+	 * sentences of the current document as the collection, once the
+	 * statistics have counted enough documents.
+	 * 
+	 * @param 	corpusStatistics	CorpusStatistics instance, or null for per-document IDF.
+	 */
+	public void setCorpusStatistics(CorpusStatistics corpusStatistics) {
+		this.corpusStatistics = corpusStatistics;
 	}
 	
 	/**
@@ -38,10 +179,250 @@ public class MeadAlgorithm implements SummarizationAlgorithm {
 		docFrequencies = new HashMap<String, List<Integer>>();
 		terms = new ArrayList<String>();
 		averageTermFrequencies = new HashMap<String, Double>();
+		termIndex = new HashMap<String, Integer>();
 	}
 	
 	// Gets selection of sentences to include in summary.
 	public List<Integer> getSelection(List<List<String>> sentences, int percentage) {
+		return selectSummary(sentences, percentage, useScratchArenas, parallelThreshold, null);
+	}
+	
+	/**
+	 * Gets a selection of sentences run a given way for this call
+	 * only, for callers that choose per document. The scratch arena
+	 * setting and parallel threshold of the instance are ignored and
+	 * left as they are. Selections are the same either way.
+	 * 
+	 * @param 	sentences	List of tokenized sentences.
+	 * @param 	percentage	Percentage of sentences to include in summary.
+	 * @param 	useArenas	Whether to use the arena pipeline.
+	 * @param 	parallel	Whether to build the model and score in parallel,
+	 * 						if the arena pipeline is not used.
+	 * @return	List of indices of sentences included in summary.
+	 */
+	public List<Integer> getSelection(List<List<String>> sentences, int percentage,
+			boolean useArenas, boolean parallel) {
+		return selectSummary(sentences, percentage, useArenas,
+				parallel ? 0 : Integer.MAX_VALUE, null);
+	}
+	
+	/**
+	 * Selects the summary sentences with near-duplicates collapsed.
+	 * 
+	 * @param 	sentences	List of tokenized sentences.
+	 * @param 	percentage	Percentage of sentences to include in summary.
+	 * @param 	useArenas	Whether to use the arena pipeline.
+	 * @param 	threshold	Minimum number of sentences for parallel execution.
+	 * @param 	check		Deadline of the call, or null to run to completion.
+	 * @return	List of indices of sentences included in summary.
+	 */
+	private List<Integer> selectSummary(List<List<String>> sentences, int percentage,
+			boolean useArenas, int threshold, DeadlineCheck check) {
+		
+		// The length is a share of the original sentences, so collapsing
+		// duplicates leaves room for more distinct ones, not a shorter summary.
+		CollapsedSentences candidates = collapseDuplicates(sentences);
+		int summaryLength = Math.min(makeSummaryLength(sentences.size(), percentage),
+				candidates.getSentences().size());
+		
+		return candidates.expand(selectSentences(candidates.getSentences(),
+				summaryLength, useArenas, threshold, check));
+	}
+	
+	/**
+	 * Gets a selection of sentences within a time budget. The cost
+	 * of each level of the algorithm is estimated from the number of
+	 * tokens and the time per token of earlier calls, and the most
+	 * exact level that fits in the remaining time is run:
+	 * <ul>
+	 * <li>the full MEAD score and selection;</li>
+	 * <li>without the first sentence overlap or redundancy penalty;</li>
+	 * <li>centroid and position only, with the centroid taken from a
+	 * sample of the sentences;</li>
+	 * <li>the leading sentences of the document.</li>
+	 * </ul>
+	 * If the deadline passes while the full model is built, scoring
+	 * continues at the second level.
+	 * 
+	 * @param 	sentences	List of tokenized sentences.
+	 * @param 	percentage	Percentage of sentences to include in summary.
+	 * @param 	deadline	Deadline of the request.
+	 * @return	List of indices of sentences included in summary,
+	 * 			approximate if the selection was degraded.
+	 */
+	public DeadlineResult<List<Integer>> getSelection(List<List<String>> sentences,
+			int percentage, Deadline deadline) {
+		
+		int numTokens = 0;
+		for (int i=0; i<sentences.size(); i++) {
+			numTokens += sentences.get(i).size();
+		}
+		
+		int level = FULL;
+		long remaining = deadline.getRemainingNanos();
+		while (level < LEAD && remaining < nanosPerToken[level] * numTokens) {
+			level++;
+		}
+		
+		long start = System.nanoTime();
+		List<Integer> selection;
+		DeadlineCheck check = new DeadlineCheck(deadline, level != FULL);
+		
+		// The arena pipeline is exact and the fastest, so
+		// it is used whenever the features allow.
+		if (level <= REDUCED) {
+			selection = selectSummary(sentences, percentage, true, parallelThreshold, check);
+		} else if (level == SAMPLED) {
+			CollapsedSentences candidates = collapseDuplicates(sentences);
+			selection = candidates.expand(selectSampledSentences(candidates.getSentences(),
+					Math.min(makeSummaryLength(sentences.size(), percentage),
+							candidates.getSentences().size())));
+		} else {
+			selection = new ArrayList<Integer>();
+			int summaryLength = Math.min(makeSummaryLength(sentences.size(), percentage),
+					sentences.size());
+			for (int i=0; i<summaryLength; i++) {
+				selection.add(i);
+			}
+		}
+		
+		// Keep a moving average of the cost of the level that ran.
+		if (numTokens > 0 && level < LEAD) {
+			double measured = (System.nanoTime() - start) / (double) numTokens;
+			nanosPerToken[level] = 0.8 * nanosPerToken[level] + 0.2 * measured;
+		}
+		
+		return new DeadlineResult<List<Integer>>(selection, check.isDegraded());
+	}
+	
+	/**
+	 * Gets the MEAD score of every sentence, the weighted sum of the
+	 * features before any selection, for callers that combine it
+	 * with scores of their own. Near-duplicates are not collapsed.
+	 * 
+	 * @param 	sentences	List of tokenized sentences.
+	 * @return	Score of each sentence.
+	 */
+	public double[] getSentenceScores(List<List<String>> sentences) {
+		
+		double[] scores = new double[sentences.size()];
+		if (sentences.isEmpty())
+			return scores;
+		
+		for (IndexValuePair pair : makeSentenceScores(makeFeatureContext(sentences), false)) {
+			scores[pair.index] = pair.value;
+		}
+		
+		return scores;
+	}
+	
+	/**
+	 * Gets the value of each feature for every sentence, before
+	 * weighting, for callers that store the features and combine
+	 * them later. Near-duplicates are not collapsed.
+	 * 
+	 * @param 	sentences	List of tokenized sentences.
+	 * @return	Feature columns, one array of sentence values per feature.
+	 */
+	public double[][] getFeatureValues(List<List<String>> sentences) {
+		
+		double[][] columns = new double[features.size()][sentences.size()];
+		if (sentences.isEmpty())
+			return columns;
+		
+		FeatureContext context = makeFeatureContext(sentences);
+		for (int f=0; f<features.size(); f++) {
+			features.get(f).fill(context, columns[f]);
+		}
+		
+		return columns;
+	}
+	
+	/**
+	 * Gets the number of features in the sentence score.
+	 * 
+	 * @return	Number of features.
+	 */
+	public int getNumFeatures() {
+		return features.size();
+	}
+	
+	/**
+	 * Gets the weight of a feature in the sentence score.
+	 * 
+	 * @param 	feature		Feature index, in the order features were added.
+	 * @return	Feature weight.
+	 */
+	public double getFeatureWeight(int feature) {
+		return featureWeights.get(feature);
+	}
+	
+	/**
+	 * Gets a selection of a fixed number of sentences, for callers
+	 * that need an exact length rather than a percentage.
+	 * 
+	 * @param 	sentences		List of tokenized sentences.
+	 * @param 	summaryLength	Number of sentences to include in summary.
+	 * @return	List of indices of sentences included in summary.
+	 */
+	public List<Integer> getSelectionOfLength(List<List<String>> sentences, int summaryLength) {
+		
+		CollapsedSentences candidates = collapseDuplicates(sentences);
+		
+		int length = Math.min(summaryLength, candidates.getSentences().size());
+		
+		return candidates.expand(selectSentences(candidates.getSentences(),
+				length, useScratchArenas, parallelThreshold, null));
+	}
+	
+	/**
+	 * Collapses near-duplicate sentences if a deduplicator is set.
+	 * 
+	 * @param 	sentences	List of tokenized sentences.
+	 * @return	Representative sentences, or the input sentences
+	 * 			unchanged if no deduplicator is set.
+	 */
+	private CollapsedSentences collapseDuplicates(List<List<String>> sentences) {
+		return (deduplicator == null) ? new CollapsedSentences(sentences, null)
+				: deduplicator.collapse(sentences);
+	}
+	
+	/**
+	 * Runs the MEAD pipeline over a list of sentences.
+	 * 
+	 * @param 	sentences		List of tokenized sentences.
+	 * @param 	summaryLength	Number of sentences to include in summary.
+	 * @param 	useArenas		Whether to use the arena pipeline.
+	 * @param 	threshold		Minimum number of sentences for parallel execution.
+	 * @param 	check			Deadline of the call, or null to run to completion.
+	 * @return	List of indices of sentences included in summary.
+	 */
+	private List<Integer> selectSentences(List<List<String>> sentences, int summaryLength,
+			boolean useArenas, int threshold, DeadlineCheck check) {
+		
+		if (sentences.isEmpty()) {
+			return new ArrayList<Integer>();
+		}
+		
+		if (useArenas && hasDefaultFeatures()) {
+			return selectSentencesWithArena(sentences, summaryLength, check);
+		}
+		
+		if (sentences.size() >= threshold && pool.getParallelism() > 1) {
+			return selectSentencesInParallel(sentences, summaryLength, check);
+		}
+		
+		return makeSelection(makeFeatureContext(sentences), summaryLength, check);
+	}
+	
+	/**
+	 * Builds the document model and the feature context of a list
+	 * of sentences with the sequential pipeline.
+	 * 
+	 * @param 	sentences	List of tokenized sentences.
+	 * @return	Sentences and document model.
+	 */
+	private FeatureContext makeFeatureContext(List<List<String>> sentences) {
 		
 		initModel();
 		buildModel(sentences);
@@ -49,12 +430,478 @@ public class MeadAlgorithm implements SummarizationAlgorithm {
 		List<Double> centroidValues = makeCentroidValues(sentences.size());
 		List<String> centroidDoc = makeCentroidDocument(centroidValues);
 		List<Double> docCentroidValues = makeDocumentCentroids(sentences, centroidValues, centroidDoc);
-		double maxCentroidValue = Collections.max(docCentroidValues);
-		List<Double> positionalValues = makePositionalValues(sentences.size(), maxCentroidValue);
-		List<List<Integer>> sentenceVectors = makeSentenceVectors(sentences, terms);
-		List<Integer> overlaps = makeFirstSentenceOverlaps(sentenceVectors);
-		List<IndexValuePair> sentenceScores = makeSentenceScores(docCentroidValues, positionalValues, overlaps);
-		List<Integer> summarySelection = makeSummarySelection(sentenceScores, percentage);
+		List<SparseVector> sentenceVectors = makeSentenceVectors(sentences);
+		
+		double[] docCentroidArray = new double[docCentroidValues.size()];
+		for (int i=0; i<docCentroidArray.length; i++) {
+			docCentroidArray[i] = docCentroidValues.get(i);
+		}
+		
+		return new FeatureContext(sentences, sentenceVectors, termIndex,
+				makeCentroidTerms(centroidDoc), docCentroidArray);
+	}
+	
+	/**
+	 * Runs the MEAD pipeline over a list of sentences on the fork/join pool.
+	 * Term statistics are counted per chunk of sentences and merged,
+	 * then sentence vectors and scores are computed per chunk.
+	 * Produces the same selection as the sequential pipeline.
+	 * 
+	 * @param 	sentences		List of tokenized sentences.
+	 * @param 	summaryLength	Number of sentences to include in summary.
+	 * @param 	check			Deadline of the call, or null to run to completion.
+	 * @return	List of indices of sentences included in summary.
+	 */
+	private List<Integer> selectSentencesInParallel(List<List<String>> sentences,
+			int summaryLength, DeadlineCheck check) {
+		
+		initModel();
+		int numSentences = sentences.size();
+		
+		TermCountTask.Counts counts = pool.invoke(
+				new TermCountTask(sentences, 0, numSentences, CHUNK_SIZE));
+		
+		// Alphabetize the merged terms, as makeTerms does.
+		for (int i=0; i<counts.size; i++) {
+			terms.add(counts.words[i]);
+		}
+		Collections.sort(terms);
+		for (int i=0; i<terms.size(); i++) {
+			termIndex.put(terms.get(i), i);
+		}
+		
+		// Centroid values, as makeAverageTermFrequencies
+		// and makeCentroidValues compute them.
+		List<Double> centroidValues = new ArrayList<Double>();
+		CorpusStatistics statistics = usableStatistics();
+		for (String term : terms) {
+			int id = counts.ids.get(term);
+			double tf = (double) counts.tf[id] / (float) numSentences;
+			centroidValues.add(tf * inverseDocumentFrequency(statistics, term,
+					numSentences, counts.df[id]));
+		}
+		
+		List<String> centroidDoc = makeCentroidDocument(centroidValues);
+		int[] centroidRanks = new int[terms.size()];
+		double[] rankedCentroidValues = new double[centroidDoc.size()];
+		Arrays.fill(centroidRanks, -1);
+		for (int i=0; i<centroidDoc.size(); i++) {
+			int index = termIndex.get(centroidDoc.get(i));
+			centroidRanks[index] = i;
+			rankedCentroidValues[i] = centroidValues.get(index);
+		}
+		
+		SparseVector[] vectors = new SparseVector[numSentences];
+		pool.invoke(new SentenceVectorTask(sentences, termIndex, vectors,
+				0, numSentences, CHUNK_SIZE));
+		
+		double[] docCentroidArray = new double[numSentences];
+		pool.invoke(new SentenceScoreTask(vectors, centroidRanks, rankedCentroidValues,
+				docCentroidArray, 0, numSentences, CHUNK_SIZE));
+		
+		FeatureContext context = new FeatureContext(sentences, Arrays.asList(vectors), termIndex,
+				makeCentroidTerms(centroidDoc), docCentroidArray);
+		
+		return makeSelection(context, summaryLength, check);
+	}
+	
+	/**
+	 * Checks, once the model is built, whether scoring should be
+	 * reduced because the deadline of the call has passed.
+	 * 
+	 * @param 	check	Deadline of the call, or null to run to completion.
+	 * @return	True to score without first sentence overlap or redundancy penalty.
+	 */
+	private static boolean isReduced(DeadlineCheck check) {
+		return check != null && check.check();
+	}
+	
+	/**
+	 * Selects sentences by centroid and position values, with the
+	 * centroid built from an evenly spaced sample of the sentences.
+	 * Each sentence is scored by the centroid terms it contains, so
+	 * the cost is a single pass over the tokens.
+	 * 
+	 * @param 	sentences		List of tokenized sentences.
+	 * @param 	summaryLength	Number of sentences to include in summary.
+	 * @return	List of indices of sentences included in summary.
+	 */
+	private List<Integer> selectSampledSentences(List<List<String>> sentences, int summaryLength) {
+		
+		int numSentences = sentences.size();
+		if (numSentences == 0) {
+			return new ArrayList<Integer>();
+		}
+		
+		// Count term and sentence frequencies in the sample.
+		int step = Math.max(1, numSentences / SAMPLE_SIZE);
+		int numSampled = 0;
+		Map<String, Integer> counts = new HashMap<String, Integer>();
+		Map<String, Integer> sampleFrequencies = new HashMap<String, Integer>();
+		Set<String> seen = new HashSet<String>();
+		for (int i=0; i<numSentences; i+=step) {
+			seen.clear();
+			for (String word : sentences.get(i)) {
+				Integer count = counts.get(word);
+				counts.put(word, (count == null) ? 1 : count + 1);
+				
+				if (seen.add(word)) {
+					Integer frequency = sampleFrequencies.get(word);
+					sampleFrequencies.put(word, (frequency == null) ? 1 : frequency + 1);
+				}
+			}
+			numSampled++;
+		}
+		
+		// Alphabetize the sampled vocabulary, as makeTerms does.
+		List<String> vocabulary = new ArrayList<String>(counts.keySet());
+		Collections.sort(vocabulary);
+		
+		List<IndexValuePair> pairs = new ArrayList<IndexValuePair>();
+		CorpusStatistics statistics = usableStatistics();
+		for (int i=0; i<vocabulary.size(); i++) {
+			String term = vocabulary.get(i);
+			double tf = counts.get(term) / (float) numSampled;
+			
+			IndexValuePair pair = new IndexValuePair();
+			pair.index = i;
+			pair.value = tf * inverseDocumentFrequency(statistics, term, numSampled,
+					sampleFrequencies.get(term));
+			pairs.add(pair);
+		}
+		Collections.sort(pairs);
+		Collections.reverse(pairs);
+		
+		int topTerms = Math.max(1, (int) (pairs.size() * 0.1));
+		Map<String, Double> centroid = new HashMap<String, Double>();
+		for (int i=0; i<topTerms && i<pairs.size(); i++) {
+			centroid.put(vocabulary.get(pairs.get(i).index), pairs.get(i).value);
+		}
+		
+		// Score every sentence against the sampled centroid.
+		double[] centroidValues = new double[numSentences];
+		double maxCentroidValue = Double.NEGATIVE_INFINITY;
+		for (int i=0; i<numSentences; i++) {
+			seen.clear();
+			double total = 0.0;
+			for (String word : sentences.get(i)) {
+				Double value = centroid.get(word);
+				if (value != null && seen.add(word))
+					total += value;
+			}
+			centroidValues[i] = total;
+			maxCentroidValue = Math.max(maxCentroidValue, total);
+		}
+		
+		List<IndexValuePair> sentenceScores = new ArrayList<IndexValuePair>();
+		for (int i=0; i<numSentences; i++) {
+			IndexValuePair pair = new IndexValuePair();
+			pair.index = i;
+			pair.value = centroidValues[i]
+					+ ((numSentences - i) / (double) numSentences) * maxCentroidValue;
+			sentenceScores.add(pair);
+		}
+		
+		return makeSummarySelection(sentenceScores, Math.min(summaryLength, numSentences));
+	}
+	
+	/**
+	 * Checks whether the score is made up of the default MEAD
+	 * features only, which the arena pipeline computes directly.
+	 * 
+	 * @return	True if all features are default MEAD features.
+	 */
+	private boolean hasDefaultFeatures() {
+		for (int f=0; f<features.size(); f++) {
+			Class<?> featureClass = features.get(f).getClass();
+			
+			if (featureClass != CentroidFeature.class
+					&& featureClass != PositionFeature.class
+					&& featureClass != FirstSentenceOverlapFeature.class)
+				return false;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Runs the MEAD pipeline in the scratch arena of the calling thread.
+	 * Sentences are stored as rows of sorted term ids and counts, terms
+	 * are numbered alphabetically as in makeTerms, and ties are broken
+	 * as in the list-based pipeline, so the selection is the same.
+	 * 
+	 * @param 	sentences		List of tokenized sentences.
+	 * @param 	summaryLength	Number of sentences to include in summary.
+	 * @param 	check			Deadline of the call, or null to run to completion.
+	 * @return	List of indices of sentences included in summary.
+	 */
+	private List<Integer> selectSentencesWithArena(List<List<String>> sentences,
+			int summaryLength, DeadlineCheck check) {
+		
+		ScratchArena arena = ScratchArena.acquire();
+		try {
+			int numSentences = sentences.size();
+			int numTokens = 0;
+			int maxLength = 0;
+			
+			// Index loops avoid allocating an iterator per sentence.
+			for (int i=0; i<numSentences; i++) {
+				List<String> sentence = sentences.get(i);
+				for (int j=0; j<sentence.size(); j++) {
+					arena.addTerm(sentence.get(j));
+				}
+				numTokens += sentence.size();
+				maxLength = Math.max(maxLength, sentence.size());
+			}
+			arena.sortTerms();
+			int numTerms = arena.getNumTerms();
+			
+			int[] offsets = arena.ints(0, numSentences + 1);
+			int[] ids = arena.ints(1, numTokens);
+			double[] counts = arena.doubles(0, numTokens);
+			int[] docFrequency = arena.ints(2, numTerms);
+			double[] termFrequency = arena.doubles(1, numTerms);
+			int[] tokens = arena.ints(3, maxLength);
+			Arrays.fill(docFrequency, 0, numTerms, 0);
+			Arrays.fill(termFrequency, 0, numTerms, 0.0);
+			
+			// Collapse each sentence into sorted distinct term ids and counts.
+			offsets[0] = 0;
+			for (int i=0; i<numSentences; i++) {
+				List<String> sentence = sentences.get(i);
+				int length = sentence.size();
+				for (int j=0; j<length; j++) {
+					tokens[j] = arena.getTermId(sentence.get(j));
+				}
+				Arrays.sort(tokens, 0, length);
+				
+				int pos = offsets[i];
+				for (int j=0; j<length; j++) {
+					if (j == 0 || tokens[j] != tokens[j-1]) {
+						ids[pos] = tokens[j];
+						counts[pos] = 0.0;
+						docFrequency[tokens[j]]++;
+						pos++;
+					}
+					counts[pos-1] += 1.0;
+					termFrequency[tokens[j]] += 1.0;
+				}
+				offsets[i+1] = pos;
+			}
+			
+			// Centroid values, computed as in makeCentroidValues.
+			double[] centroidValues = arena.doubles(2, numTerms);
+			CorpusStatistics statistics = usableStatistics();
+			for (int t=0; t<numTerms; t++) {
+				double tf = termFrequency[t] / (float) numSentences;
+				centroidValues[t] = tf * inverseDocumentFrequency(statistics,
+						arena.getTerm(t), numSentences, docFrequency[t]);
+			}
+			
+			// Rank of each term in the centroid document, or -1.
+			int topTerms = (int) (numTerms * 0.1);
+			if (topTerms < 1 && numTerms > 0)
+				topTerms = 1;
+			
+			int[] rankedTerms = arena.rank(centroidValues, numTerms);
+			int[] centroidRanks = arena.ints(4, numTerms);
+			Arrays.fill(centroidRanks, 0, numTerms, -1);
+			for (int r=0; r<topTerms; r++) {
+				centroidRanks[rankedTerms[r]] = r;
+			}
+			
+			// Sum the centroid values of each sentence in centroid
+			// document order, as makeDocumentCentroids does.
+			double[] docCentroidValues = arena.doubles(3, numSentences);
+			double maxCentroidValue = Double.NEGATIVE_INFINITY;
+			for (int i=0; i<numSentences; i++) {
+				int numRanks = 0;
+				for (int p=offsets[i]; p<offsets[i+1]; p++) {
+					if (centroidRanks[ids[p]] >= 0)
+						tokens[numRanks++] = centroidRanks[ids[p]];
+				}
+				Arrays.sort(tokens, 0, numRanks);
+				
+				double total = 0.0;
+				for (int r=0; r<numRanks; r++) {
+					total += centroidValues[rankedTerms[tokens[r]]];
+				}
+				docCentroidValues[i] = total;
+				
+				if (total > maxCentroidValue)
+					maxCentroidValue = total;
+			}
+			
+			// Weighted sum of the features, as in makeSentenceScores,
+			// computed in one pass over the sentences.
+			boolean reduced = isReduced(check);
+			int numFeatures = 0;
+			Class<?>[] featureClasses = new Class<?>[features.size()];
+			double[] weights = new double[features.size()];
+			for (int f=0; f<features.size(); f++) {
+				Class<?> featureClass = features.get(f).getClass();
+				if (reduced && featureClass == FirstSentenceOverlapFeature.class)
+					continue;
+				
+				featureClasses[numFeatures] = featureClass;
+				weights[numFeatures++] = featureWeights.get(f);
+			}
+			
+			double[] scores = arena.doubles(4, numSentences);
+			for (int i=0; i<numSentences; i++) {
+				double score = 0.0;
+				for (int f=0; f<numFeatures; f++) {
+					double value;
+					if (featureClasses[f] == CentroidFeature.class)
+						value = docCentroidValues[i];
+					else if (featureClasses[f] == PositionFeature.class)
+						value = ((numSentences - i) / (double) numSentences) * maxCentroidValue;
+					else
+						value = dot(offsets, ids, counts, i, 0);
+					
+					score += weights[f] * value;
+				}
+				scores[i] = score;
+			}
+			
+			int length = Math.min(summaryLength, numSentences);
+			int[] selection = arena.ints(6, length);
+			
+			if (lambda < 1.0 && !reduced) {
+				selectRedundancyAware(arena, scores, offsets, ids, counts,
+						numSentences, selection, length);
+			} else {
+				int[] rankedSentences = arena.rank(scores, numSentences);
+				System.arraycopy(rankedSentences, 0, selection, 0, length);
+			}
+			Arrays.sort(selection, 0, length);
+			
+			List<Integer> indices = new ArrayList<Integer>(length);
+			for (int i=0; i<length; i++) {
+				indices.add(selection[i]);
+			}
+			
+			return indices;
+		} finally {
+			arena.release();
+		}
+	}
+	
+	/**
+	 * Selects sentences by maximal marginal relevance over the sentence
+	 * rows of the arena, in the same way as makeRedundancyAwareSelection.
+	 * 
+	 * @param 	arena			Scratch arena of the calling thread.
+	 * @param 	scores			Sentence scores, overwritten with relevance.
+	 * @param 	offsets			Start of each sentence row.
+	 * @param 	ids				Sorted term ids of the rows.
+	 * @param 	counts			Term counts of the rows.
+	 * @param 	numSentences	Number of sentences.
+	 * @param 	selection		Output array of selected sentence indices.
+	 * @param 	length			Number of sentences to select.
+	 */
+	private void selectRedundancyAware(ScratchArena arena, double[] scores, int[] offsets,
+			int[] ids, double[] counts, int numSentences, int[] selection, int length) {
+		
+		double maxScore = 0.0;
+		for (int i=0; i<numSentences; i++) {
+			if (scores[i] > maxScore)
+				maxScore = scores[i];
+		}
+		for (int i=0; i<numSentences; i++) {
+			scores[i] = (maxScore > 0.0) ? scores[i] / maxScore : 0.0;
+		}
+		
+		double[] norms = arena.doubles(5, numSentences);
+		double[] maxSimilarity = arena.doubles(6, numSentences);
+		int[] selected = arena.ints(5, numSentences);
+		for (int i=0; i<numSentences; i++) {
+			double sumOfSquares = 0.0;
+			for (int p=offsets[i]; p<offsets[i+1]; p++) {
+				sumOfSquares += counts[p] * counts[p];
+			}
+			norms[i] = Math.sqrt(sumOfSquares);
+			maxSimilarity[i] = 0.0;
+			selected[i] = 0;
+		}
+		
+		for (int i=0; i<length; i++) {
+			int best = -1;
+			double bestValue = 0.0;
+			for (int j=0; j<numSentences; j++) {
+				if (selected[j] != 0)
+					continue;
+				
+				double value = lambda * scores[j] - (1.0 - lambda) * maxSimilarity[j];
+				if (best < 0 || value > bestValue) {
+					best = j;
+					bestValue = value;
+				}
+			}
+			
+			selected[best] = 1;
+			selection[i] = best;
+			
+			for (int j=0; j<numSentences; j++) {
+				if (selected[j] == 0 && norms[best] != 0.0 && norms[j] != 0.0) {
+					double similarity = dot(offsets, ids, counts, best, j) / (norms[best] * norms[j]);
+					if (similarity > maxSimilarity[j])
+						maxSimilarity[j] = similarity;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Computes the dot product of two sentence rows,
+	 * merging their sorted term ids as SparseVector does.
+	 * 
+	 * @param 	offsets		Start of each sentence row.
+	 * @param 	ids			Sorted term ids of the rows.
+	 * @param 	counts		Term counts of the rows.
+	 * @param 	a			First sentence index.
+	 * @param 	b			Second sentence index.
+	 * @return	Dot product.
+	 */
+	private static double dot(int[] offsets, int[] ids, double[] counts, int a, int b) {
+		double total = 0.0;
+		int i = offsets[a];
+		int j = offsets[b];
+		
+		while (i < offsets[a+1] && j < offsets[b+1]) {
+			if (ids[i] == ids[j]) {
+				total += counts[i] * counts[j];
+				i++;
+				j++;
+			}
+			else if (ids[i] < ids[j]) {
+				i++;
+			}
+			else {
+				j++;
+			}
+		}
+		
+		return total;
+	}
+	
+	/**
+	 * Combines the sentence features into scores and selects the summary.
+	 * 
+	 * @param 	context			Sentences and document model.
+	 * @param 	summaryLength	Number of sentences to include in summary.
+	 * @param 	check			Deadline of the call, or null to run to completion.
+	 * @return	List of indices of sentences included in summary.
+	 */
+	private List<Integer> makeSelection(FeatureContext context, int summaryLength,
+			DeadlineCheck check) {
+		
+		boolean reduced = isReduced(check);
+		
+		List<IndexValuePair> sentenceScores = makeSentenceScores(context, reduced);
+		List<Integer> summarySelection = (lambda < 1.0 && !reduced)
+				? makeRedundancyAwareSelection(sentenceScores, context.sentenceVectors, summaryLength)
+				: makeSummarySelection(sentenceScores, summaryLength);
 		
 		return summarySelection;
 	}
@@ -73,21 +920,14 @@ public class MeadAlgorithm implements SummarizationAlgorithm {
 
 
 	/**
-	 * Slices off a percentage of top ranking sentences.
+	 * Slices off a number of top ranking sentences.
 	 * 
 	 * @param 	sentenceScores	List of IndexValuePair (sentence and score).
-	 * @param 	percent			Percentage of sentences to slice off.
+	 * @param 	summaryLength	Number of sentences to slice off.
 	 * @return	List of indices of sentences to include in summary.
 	 */
 	private List<Integer> makeSummarySelection(List<IndexValuePair> sentenceScores,
-			int percent) {
-		
-		// Calculate the number of sentences in the summary.
-		int summaryLength = (int) (sentenceScores.size() * percent / (double) 100.0);
-	
-		// Make sure the summary is at least 1 sentence long.
-		if (summaryLength < 1)
-			summaryLength = 1;
+			int summaryLength) {
 		
 		// Sort the sentence scores from top to bottom.
 		Collections.sort(sentenceScores);
@@ -104,99 +944,155 @@ public class MeadAlgorithm implements SummarizationAlgorithm {
 		
 		return indices;
 	}
-
+	
 	/**
-	 * Calculates the score for each sentence in the collection.
+	 * Selects sentences by maximal marginal relevance. Each round picks
+	 * the sentence with the best trade-off between its normalized score
+	 * and its highest similarity to any sentence already picked. The
+	 * highest similarity of each candidate is updated incrementally
+	 * against the newly picked sentence only, so selection costs
+	 * O(k * S) similarity computations rather than O(k^2 * S).
 	 * 
-	 * @param 	docCentroidValues	List of centroid scores for each sentence.
-	 * @param 	positionalValues	List of position scores for each sentence.
-	 * @param 	overlaps			List of first sentence overlap scores for each sentence.
-	 * @return	List of IndexValuePair with indices and scores for all sentences.
+	 * @param 	sentenceScores	List of IndexValuePair (sentence and score).
+	 * @param 	sentenceVectors	Sparse term vectors for all sentences.
+	 * @param 	summaryLength	Number of sentences to select.
+	 * @return	List of indices of sentences to include in summary.
 	 */
-	private List<IndexValuePair> makeSentenceScores(List<Double> docCentroidValues,
-			List<Double> positionalValues, List<Integer> overlaps) {
+	private List<Integer> makeRedundancyAwareSelection(List<IndexValuePair> sentenceScores,
+			List<SparseVector> sentenceVectors, int summaryLength) {
 		
-		List<IndexValuePair> pairs = new ArrayList<IndexValuePair>();
+		int numSentences = sentenceScores.size();
 		
-		for (int i=0; i<docCentroidValues.size(); i++) {
-			IndexValuePair pair = new IndexValuePair();
-			pair.index = i;
-			pair.value = docCentroidValues.get(i) + positionalValues.get(i) + overlaps.get(i);
-			pairs.add(pair);
+		// Normalize scores to [0, 1] so they are comparable
+		// with cosine similarities.
+		double maxScore = 0.0;
+		for (IndexValuePair pair : sentenceScores) {
+			if (pair.value > maxScore)
+				maxScore = pair.value;
 		}
 		
-		return pairs;
-	}
-
-	/**
-	 * Builds word occurrence vectors for all sentences.
-	 * 
-	 * @param 	sentences		List of tokenized sentences.
-	 * @param 	sentenceTerms	List of all words in sentences.
-	 * @return
-	 */
-	private List<List<Integer>> makeSentenceVectors(
-			List<List<String>> sentences, List<String> sentenceTerms) {
-		// Sentence vectors are vectors of length N where N is the number of
-		// different words in the document and the value at the index
-		// is the number of times that word occurs in the sentence.
+		double[] relevance = new double[numSentences];
+		for (IndexValuePair pair : sentenceScores) {
+			relevance[pair.index] = (maxScore > 0.0) ? pair.value / maxScore : 0.0;
+		}
 		
-		List<List<Integer>> sentenceVectors = new ArrayList<List<Integer>>();
+		double[] maxSimilarity = new double[numSentences];
+		boolean[] selected = new boolean[numSentences];
 		
-		for (List<String> document : sentences) {
-			List<Integer> sentenceVector = new ArrayList<Integer>();
+		List<Integer> indices = new ArrayList<Integer>();
+		for (int i=0; i<summaryLength && i<numSentences; i++) {
 			
-			for (String term : sentenceTerms) {
-				sentenceVector.add(Collections.frequency(document, term));
+			// Find the unselected sentence with the best marginal relevance.
+			// Ties go to the earlier sentence.
+			int best = -1;
+			double bestValue = 0.0;
+			for (int j=0; j<numSentences; j++) {
+				if (selected[j])
+					continue;
+				
+				double value = lambda * relevance[j] - (1.0 - lambda) * maxSimilarity[j];
+				if (best < 0 || value > bestValue) {
+					best = j;
+					bestValue = value;
+				}
 			}
 			
-			sentenceVectors.add(sentenceVector);
+			selected[best] = true;
+			indices.add(best);
+			
+			// Only the newly selected sentence can raise
+			// the maximum similarity of the remaining candidates.
+			SparseVector picked = sentenceVectors.get(best);
+			for (int j=0; j<numSentences; j++) {
+				if (!selected[j]) {
+					double similarity = picked.cosine(sentenceVectors.get(j));
+					if (similarity > maxSimilarity[j])
+						maxSimilarity[j] = similarity;
+				}
+			}
 		}
 		
-		return sentenceVectors;
+		// Sort the selected sentence indices.
+		Collections.sort(indices);
+		
+		return indices;
+	}
+	
+	/**
+	 * Calculates the number of sentences in the summary.
+	 * 
+	 * @param 	numSentences	Number of sentences in document.
+	 * @param 	percent			Percentage of sentences to include.
+	 * @return	Number of sentences in summary, at least 1.
+	 */
+	private int makeSummaryLength(int numSentences, int percent) {
+		int summaryLength = (int) (numSentences * percent / 100.0);
+		
+		// Make sure the summary is at least 1 sentence long.
+		if (summaryLength < 1)
+			summaryLength = 1;
+		
+		return summaryLength;
 	}
 
 	/**
-	 * Calculates dot products of all sentence vectors and the
-	 * first sentence in the collection of sentence vectors.
+	 * Calculates the score for each sentence in the collection
+	 * as the weighted sum of the feature columns, combined in a
+	 * single pass once every feature has filled its column.
 	 * 
-	 * @param 	sentenceVectors	List of sentence vectors.
-	 * @return	List of first sentence overlap values.
+	 * @param 	context		Sentences and document model.
+	 * @param 	reduced		Whether to leave out the first sentence overlap.
+	 * @return	List of IndexValuePair with indices and scores for all sentences.
 	 */
-	private List<Integer> makeFirstSentenceOverlaps(List<List<Integer>> sentenceVectors) {
-		List<Integer> overlaps = new ArrayList<Integer>();
-		List<Integer> firstSentence = sentenceVectors.get(0);
+	private List<IndexValuePair> makeSentenceScores(FeatureContext context, boolean reduced) {
 		
-		for (int i=0; i<sentenceVectors.size(); i++) {
-			int overlap = 0;
-			List<Integer> vector = sentenceVectors.get(i);
-			
-			for (int j=0; j<vector.size(); j++) {
-				overlap += vector.get(j) * firstSentence.get(j);
-			}
+		int numSentences = context.getNumSentences();
+		double[][] columns = new double[features.size()][];
+		double[] weights = new double[features.size()];
+		int numColumns = 0;
+		
+		for (int f=0; f<features.size(); f++) {
+			if (reduced && features.get(f) instanceof FirstSentenceOverlapFeature)
+				continue;
 			
-			overlaps.add(overlap);
+			columns[numColumns] = new double[numSentences];
+			features.get(f).fill(context, columns[numColumns]);
+			weights[numColumns++] = featureWeights.get(f);
 		}
 		
-		return overlaps;
+		double[] scores = new double[numSentences];
+		ArrayMath.combine(scores, columns, weights, numColumns, numSentences);
+		
+		List<IndexValuePair> pairs = new ArrayList<IndexValuePair>();
+		
+		for (int i=0; i<numSentences; i++) {
+			IndexValuePair pair = new IndexValuePair();
+			pair.index = i;
+			pair.value = scores[i];
+			pairs.add(pair);
+		}
+		
+		return pairs;
 	}
 
 	/**
-	 * Calculate positional values of sentences.
+	 * Builds sparse word occurrence vectors for all sentences.
 	 * 
-	 * @param 	size				Number of sentences.
-	 * @param 	maxCentroidValue	Max centroid value of all sentences.
-	 * @return	List of positional values of all sentences.
+	 * @param 	sentences		List of tokenized sentences.
+	 * @return	List of sparse sentence vectors.
 	 */
-	private List<Double> makePositionalValues(int size, double maxCentroidValue) {
-		List<Double> posValues = new ArrayList<Double>();
+	private List<SparseVector> makeSentenceVectors(List<List<String>> sentences) {
+		// Sentence vectors hold, for each different word in the sentence,
+		// the index of the word in the term list and the number of times
+		// that word occurs in the sentence.
+		
+		List<SparseVector> sentenceVectors = new ArrayList<SparseVector>();
 		
-		for (int i=0; i<size; i++) {
-			double posValue = ((size - i) / (double) size) * maxCentroidValue;
-			posValues.add(posValue);
+		for (List<String> document : sentences) {
+			sentenceVectors.add(new SparseVector(document, termIndex));
 		}
 		
-		return posValues;
+		return sentenceVectors;
 	}
 
 	/**
@@ -228,6 +1124,22 @@ public class MeadAlgorithm implements SummarizationAlgorithm {
 		return docCentroidValues;
 	}
 
+	/**
+	 * Marks the terms that are in the centroid document.
+	 * 
+	 * @param 	centroidDoc		Centroid pseudo-document.
+	 * @return	Whether each term is in the centroid document, by term index.
+	 */
+	private boolean[] makeCentroidTerms(List<String> centroidDoc) {
+		boolean[] centroidTerms = new boolean[terms.size()];
+		
+		for (String term : centroidDoc) {
+			centroidTerms[termIndex.get(term)] = true;
+		}
+		
+		return centroidTerms;
+	}
+	
 	/**
 	 * Determines the frequency of each word in the document.
 	 *
@@ -252,7 +1164,8 @@ public class MeadAlgorithm implements SummarizationAlgorithm {
 	}
 	
 	/**
-	 * Creates alphabetized list of words in document.
+	 * Creates alphabetized list of words in document
+	 * and an index from each word to its position.
 	 */
 	private void makeTerms() {
 		Set<String> keys = docFrequencies.keySet();
@@ -262,6 +1175,10 @@ public class MeadAlgorithm implements SummarizationAlgorithm {
 		}
 		
 		Collections.sort(terms);
+		
+		for (int i=0; i<terms.size(); i++) {
+			termIndex.put(terms.get(i), i);
+		}
 	}
 	
 	/**
@@ -299,17 +1216,50 @@ public class MeadAlgorithm implements SummarizationAlgorithm {
 	 */
 	private List<Double> makeCentroidValues(int numSentences) {
 		List<Double> centroidValues = new ArrayList<Double>();
+		CorpusStatistics statistics = usableStatistics();
 		
 		for(String term : terms) {
 			double tf = averageTermFrequencies.get(term);
 			int df = docFrequencies.get(term).size();
 			
-			centroidValues.add(tf * Math.log10(numSentences / (double) df));
+			centroidValues.add(tf * inverseDocumentFrequency(statistics, term, numSentences, df));
 		}
 		
 		return centroidValues;
 	}
 	
+	/**
+	 * Gets the corpus statistics if they are set and have counted
+	 * enough documents. Checked once per document, so that every
+	 * term of a document gets its IDF from the same source.
+	 * 
+	 * @return	Corpus statistics, or null to use the sentences.
+	 */
+	private CorpusStatistics usableStatistics() {
+		if (corpusStatistics != null && corpusStatistics.hasMinDocuments())
+			return corpusStatistics;
+		
+		return null;
+	}
+	
+	/**
+	 * Calculates the inverse document frequency of a word, from the
+	 * corpus statistics if given, or else from the sentences.
+	 * 
+	 * @param 	statistics		Result of usableStatistics.
+	 * @param 	term			Word string.
+	 * @param 	numSentences	Number of sentences in document.
+	 * @param 	df				Number of sentences containing the word.
+	 * @return	Inverse document frequency.
+	 */
+	private double inverseDocumentFrequency(CorpusStatistics statistics, String term,
+			int numSentences, int df) {
+		if (statistics != null)
+			return statistics.getInverseDocumentFrequency(term);
+		
+		return Math.log10(numSentences / (double) df);
+	}
+	
 	/**
 	 * Builds centroid document by taking words with
 	 * a centroid value above a certain threshold.
@@ -0,0 +1,18 @@
+package docsum.algorithm;
+
+/**
+ * Positional value of each sentence, falling linearly from the
+ * max centroid value for the first sentence towards zero.
+ */
+public class PositionFeature implements SentenceFeature {
+	
+	// Earlier sentences get higher values.
+	public void fill(FeatureContext context, double[] column) {
+		int size = column.length;
+		double maxCentroidValue = context.maxCentroidValue;
+		
+		for (int i=0; i<size; i++) {
+			column[i] = ((size - i) / (double) size) * maxCentroidValue;
+		}
+	}
+}
@@ -0,0 +1,148 @@
+package docsum.algorithm;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inverted index of a single document, from each term to
+ * the sentences containing it and its count in each.
+ * <p>
+ * Postings are stored in compressed sparse row form: the postings
+ * of term t are the entries from offsets[t] to offsets[t+1] of the
+ * sentence and count arrays, in ascending sentence order.
+ */
+public class PostingsIndex {
+	
+	Map<String, Integer> termIds;
+	int[] offsets;
+	int[] postingSentences;
+	int[] postingCounts;
+	int numSentences;
+	
+	/**
+	 * Constructor for tokenized sentences.
+	 * 
+	 * @param 	sentences	List of tokenized sentences.
+	 */
+	public PostingsIndex(List<List<String>> sentences) {
+		termIds = new HashMap<String, Integer>();
+		
+		int[][] ids = new int[sentences.size()][];
+		for (int i=0; i<ids.length; i++) {
+			List<String> sentence = sentences.get(i);
+			ids[i] = new int[sentence.size()];
+			for (int j=0; j<ids[i].length; j++) {
+				Integer id = termIds.get(sentence.get(j));
+				if (id == null) {
+					id = termIds.size();
+					termIds.put(sentence.get(j), id);
+				}
+				ids[i][j] = id;
+			}
+		}
+		
+		build(ids, termIds.size());
+	}
+	
+	/**
+	 * Constructor for dictionary-encoded sentences.
+	 * 
+	 * @param 	terms		Term table.
+	 * @param 	sentences	Term ids of each sentence.
+	 */
+	public PostingsIndex(List<String> terms, int[][] sentences) {
+		termIds = new HashMap<String, Integer>();
+		for (int i=0; i<terms.size(); i++) {
+			termIds.put(terms.get(i), i);
+		}
+		
+		build(sentences, terms.size());
+	}
+	
+	/**
+	 * Fills the postings arrays with two passes over the
+	 * sentences, one to size the postings of each term
+	 * and one to place them.
+	 * 
+	 * @param 	sentences	Term ids of each sentence.
+	 * @param 	numTerms	Number of terms.
+	 */
+	private void build(int[][] sentences, int numTerms) {
+		numSentences = sentences.length;
+		
+		// A sentence is counted once per term, at its first occurrence,
+		// which is found by marking the term with the sentence number.
+		int[] lastSentence = new int[numTerms];
+		int[] lengths = new int[numTerms];
+		for (int i=0; i<sentences.length; i++) {
+			for (int id : sentences[i]) {
+				if (lastSentence[id] != i + 1) {
+					lastSentence[id] = i + 1;
+					lengths[id]++;
+				}
+			}
+		}
+		
+		offsets = new int[numTerms + 1];
+		for (int t=0; t<numTerms; t++) {
+			offsets[t+1] = offsets[t] + lengths[t];
+		}
+		
+		postingSentences = new int[offsets[numTerms]];
+		postingCounts = new int[offsets[numTerms]];
+		int[] next = new int[numTerms];
+		for (int i=0; i<sentences.length; i++) {
+			for (int id : sentences[i]) {
+				int start = offsets[id];
+				if (next[id] > 0 && postingSentences[start + next[id] - 1] == i) {
+					postingCounts[start + next[id] - 1]++;
+				} else {
+					postingSentences[start + next[id]] = i;
+					postingCounts[start + next[id]] = 1;
+					next[id]++;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Gets the id of a term.
+	 * 
+	 * @param 	term	Term string.
+	 * @return	Term id, or -1 if the term does not occur.
+	 */
+	public int getTermId(String term) {
+		Integer id = termIds.get(term);
+		return (id == null) ? -1 : id;
+	}
+	
+	/**
+	 * Gets the number of sentences containing a term.
+	 * 
+	 * @param 	term	Term string.
+	 * @return	Sentence frequency, 0 if the term does not occur.
+	 */
+	public int getSentenceFrequency(String term) {
+		int id = getTermId(term);
+		return (id < 0) ? 0 : offsets[id+1] - offsets[id];
+	}
+	
+	/**
+	 * Gets the number of sentences in the document.
+	 * 
+	 * @return	Number of sentences.
+	 */
+	public int getNumSentences() {
+		return numSentences;
+	}
+	
+	/**
+	 * Gets the number of distinct terms in the document.
+	 * 
+	 * @return	Number of terms.
+	 */
+	public int getNumTerms() {
+		return offsets.length - 1;
+	}
+}
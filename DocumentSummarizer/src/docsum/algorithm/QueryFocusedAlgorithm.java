@@ -0,0 +1,189 @@
+package docsum.algorithm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Summarizes a document with respect to a query.
+ * <p>
+ * When a document is set, its postings index and the MEAD score
+ * of every sentence are computed once. A query then walks only
+ * the postings of its terms, scoring each sentence that contains
+ * a query term by the sum of tf * idf over the query terms. The
+ * relevance and the MEAD score, each normalized by its maximum,
+ * are mixed with a query weight, and the best of the matching
+ * sentences are selected. Sentences without a query term are
+ * never visited, so the cost of a query grows with the length
+ * of its postings rather than with the document.
+ */
+public class QueryFocusedAlgorithm {
+	
+	static final double DEFAULT_QUERY_WEIGHT = 0.7;
+	
+	MeadAlgorithm mead;
+	double queryWeight;
+	
+	PostingsIndex index;
+	double[] baseScores;
+	double maxBaseScore;
+	
+	double[] relevance;
+	int[] stamps;
+	int[] touched;
+	int stamp;
+	
+	/**
+	 * Default no-argument constructor.
+	 */
+	public QueryFocusedAlgorithm() {
+		this(new MeadAlgorithm(), DEFAULT_QUERY_WEIGHT);
+	}
+	
+	/**
+	 * Constructor with the default query weight.
+	 * 
+	 * @param 	mead	MeadAlgorithm instance used for the base scores.
+	 */
+	public QueryFocusedAlgorithm(MeadAlgorithm mead) {
+		this(mead, DEFAULT_QUERY_WEIGHT);
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param 	mead		MeadAlgorithm instance used for the base scores.
+	 * @param 	queryWeight	Weight of query relevance, between 0 and 1.
+	 */
+	public QueryFocusedAlgorithm(MeadAlgorithm mead, double queryWeight) {
+		this.mead = mead;
+		this.queryWeight = queryWeight;
+	}
+	
+	/**
+	 * Sets the document to summarize, building its postings index.
+	 * 
+	 * @param 	sentences	List of tokenized sentences.
+	 */
+	public void setDocument(List<List<String>> sentences) {
+		setDocument(sentences, new PostingsIndex(sentences));
+	}
+	
+	/**
+	 * Sets the document to summarize with a postings
+	 * index built when the document was preprocessed.
+	 * 
+	 * @param 	sentences	List of tokenized sentences.
+	 * @param 	index		PostingsIndex of the sentences.
+	 */
+	public void setDocument(List<List<String>> sentences, PostingsIndex index) {
+		this.index = index;
+		
+		baseScores = mead.getSentenceScores(sentences);
+		maxBaseScore = 0.0;
+		for (double score : baseScores) {
+			if (score > maxBaseScore)
+				maxBaseScore = score;
+		}
+		
+		int numSentences = index.getNumSentences();
+		relevance = new double[numSentences];
+		stamps = new int[numSentences];
+		touched = new int[numSentences];
+		stamp = 0;
+	}
+	
+	/**
+	 * Gets the postings index of the current document.
+	 * 
+	 * @return	PostingsIndex instance, or null if no document is set.
+	 */
+	public PostingsIndex getIndex() {
+		return index;
+	}
+	
+	/**
+	 * Selects the sentences of the current document that best answer
+	 * a query. Only sentences containing a query term are candidates,
+	 * so the selection may be shorter than the percentage asks for,
+	 * and is empty if no query term occurs in the document.
+	 * 
+	 * @param 	query		Preprocessed query terms.
+	 * @param 	percentage	Percentage of sentences to include in summary.
+	 * @return	List of indices of sentences included in summary.
+	 */
+	public List<Integer> getSelection(List<String> query, int percentage) {
+		
+		int numSentences = index.getNumSentences();
+		int numTouched = 0;
+		
+		// A new stamp marks which sentences this query has reached,
+		// so the relevance array never has to be cleared in full.
+		stamp++;
+		
+		Set<String> seen = new HashSet<String>();
+		for (String term : query) {
+			int id = index.getTermId(term);
+			if (id < 0 || !seen.add(term))
+				continue;
+			
+			int start = index.offsets[id];
+			int end = index.offsets[id+1];
+			double idf = Math.log10(numSentences / (double) (end - start));
+			
+			for (int p=start; p<end; p++) {
+				int sentence = index.postingSentences[p];
+				if (stamps[sentence] != stamp) {
+					stamps[sentence] = stamp;
+					relevance[sentence] = 0.0;
+					touched[numTouched++] = sentence;
+				}
+				relevance[sentence] += index.postingCounts[p] * idf;
+			}
+		}
+		
+		double maxRelevance = 0.0;
+		for (int i=0; i<numTouched; i++) {
+			if (relevance[touched[i]] > maxRelevance)
+				maxRelevance = relevance[touched[i]];
+		}
+		
+		List<IndexValuePair> sentenceScores = new ArrayList<IndexValuePair>(numTouched);
+		for (int i=0; i<numTouched; i++) {
+			int sentence = touched[i];
+			IndexValuePair pair = new IndexValuePair();
+			pair.index = sentence;
+			pair.value = queryWeight * normalize(relevance[sentence], maxRelevance)
+					+ (1.0 - queryWeight) * normalize(baseScores[sentence], maxBaseScore);
+			sentenceScores.add(pair);
+		}
+		
+		Collections.sort(sentenceScores);
+		Collections.reverse(sentenceScores);
+		
+		int summaryLength = (int) (numSentences * percentage / 100.0);
+		if (summaryLength < 1)
+			summaryLength = 1;
+		
+		List<Integer> indices = new ArrayList<Integer>();
+		for (int i=0; i<summaryLength && i<numTouched; i++) {
+			indices.add(sentenceScores.get(i).index);
+		}
+		Collections.sort(indices);
+		
+		return indices;
+	}
+	
+	/**
+	 * Divides a value by a maximum, or gives 0 if the maximum is not positive.
+	 * 
+	 * @param 	value	Value to normalize.
+	 * @param 	max		Maximum value.
+	 * @return	Normalized value.
+	 */
+	private static double normalize(double value, double max) {
+		return (max > 0.0) ? value / max : 0.0;
+	}
+}
@@ -0,0 +1,350 @@
+package docsum.algorithm;
+
+import java.util.Arrays;
+
+/**
+ * Per-thread scratch space that the summarization and keyword
+ * algorithms reuse from one call to the next, so that a thread
+ * serving many requests stops allocating once its buffers have
+ * grown to fit the largest document it has seen.
+ * <p>
+ * An arena holds numbered growable int and double arrays, an
+ * open-addressing table from terms to ids, and the buffers for
+ * ranking by score. Array contents are not cleared between calls;
+ * callers initialize the part they use. The term table is emptied
+ * on release.
+ */
+public class ScratchArena {
+	
+	static final int NUM_BUFFERS = 8;
+	
+	static final ThreadLocal<ScratchArena> ARENAS = new ThreadLocal<ScratchArena>() {
+		@Override
+		protected ScratchArena initialValue() {
+			return new ScratchArena();
+		}
+	};
+	
+	int[][] intBuffers;
+	double[][] doubleBuffers;
+	
+	String[] tableKeys;
+	int[] tableIds;
+	int tableMask;
+	String[] terms;
+	String[] sortedTerms;
+	int[] termSlots;
+	int[] sortedSlots;
+	int numTerms;
+	
+	int[] order;
+	int[] sortBuffer;
+	double[] sortScores;
+	boolean sortByTerm;
+	
+	LongIntHashMap pairs;
+	boolean inUse;
+	
+	/**
+	 * Constructor. Arenas are obtained with acquire.
+	 */
+	ScratchArena() {
+		intBuffers = new int[NUM_BUFFERS][];
+		doubleBuffers = new double[NUM_BUFFERS][];
+		for (int i=0; i<NUM_BUFFERS; i++) {
+			intBuffers[i] = new int[16];
+			doubleBuffers[i] = new double[16];
+		}
+		
+		tableKeys = new String[64];
+		tableIds = new int[64];
+		tableMask = 63;
+		terms = new String[16];
+		sortedTerms = new String[16];
+		termSlots = new int[16];
+		sortedSlots = new int[16];
+		
+		order = new int[16];
+		sortBuffer = new int[16];
+		pairs = new LongIntHashMap();
+	}
+	
+	/**
+	 * Gets the arena of the calling thread. If it is already in
+	 * use further up the stack, a temporary arena is returned.
+	 * 
+	 * @return	ScratchArena instance, to be released after use.
+	 */
+	public static ScratchArena acquire() {
+		ScratchArena arena = ARENAS.get();
+		if (arena.inUse)
+			arena = new ScratchArena();
+		
+		arena.inUse = true;
+		return arena;
+	}
+	
+	/**
+	 * Empties the term table and returns the arena to its thread.
+	 * References to terms are dropped so that the input of the
+	 * last call can be garbage collected.
+	 */
+	public void release() {
+		for (int i=0; i<numTerms; i++) {
+			tableKeys[termSlots[i]] = null;
+			terms[i] = null;
+			sortedTerms[i] = null;
+		}
+		numTerms = 0;
+		inUse = false;
+	}
+	
+	/**
+	 * Gets a numbered int buffer of at least the given length.
+	 * 
+	 * @param 	buffer	Buffer number, below NUM_BUFFERS.
+	 * @param 	length	Minimum length.
+	 * @return	Buffer with unspecified contents.
+	 */
+	public int[] ints(int buffer, int length) {
+		if (intBuffers[buffer].length < length)
+			intBuffers[buffer] = new int[Math.max(length, intBuffers[buffer].length * 2)];
+		
+		return intBuffers[buffer];
+	}
+	
+	/**
+	 * Gets a numbered double buffer of at least the given length.
+	 * 
+	 * @param 	buffer	Buffer number, below NUM_BUFFERS.
+	 * @param 	length	Minimum length.
+	 * @return	Buffer with unspecified contents.
+	 */
+	public double[] doubles(int buffer, int length) {
+		if (doubleBuffers[buffer].length < length)
+			doubleBuffers[buffer] = new double[Math.max(length, doubleBuffers[buffer].length * 2)];
+		
+		return doubleBuffers[buffer];
+	}
+	
+	/**
+	 * Gets the pair table, emptied.
+	 * 
+	 * @return	LongIntHashMap instance.
+	 */
+	public LongIntHashMap pairs() {
+		pairs.clear();
+		return pairs;
+	}
+	
+	/**
+	 * Adds a term to the term table if it is not already there.
+	 * 
+	 * @param 	term	Term string.
+	 * @return	Id of the term.
+	 */
+	public int addTerm(String term) {
+		int slot = findSlot(term);
+		if (tableKeys[slot] != null)
+			return tableIds[slot];
+		
+		if (numTerms == terms.length) {
+			int capacity = numTerms * 2;
+			terms = Arrays.copyOf(terms, capacity);
+			sortedTerms = new String[capacity];
+			termSlots = Arrays.copyOf(termSlots, capacity);
+			sortedSlots = new int[capacity];
+		}
+		
+		tableKeys[slot] = term;
+		tableIds[slot] = numTerms;
+		terms[numTerms] = term;
+		termSlots[numTerms] = slot;
+		numTerms++;
+		
+		// Keep the load factor at or below one half.
+		if (numTerms * 2 > tableKeys.length)
+			rehash(tableKeys.length * 2);
+		
+		return numTerms - 1;
+	}
+	
+	/**
+	 * Gets the id of a term in the term table.
+	 * 
+	 * @param 	term	Term string.
+	 * @return	Id of the term, or -1 if it is not in the table.
+	 */
+	public int getTermId(String term) {
+		int slot = findSlot(term);
+		return (tableKeys[slot] == null) ? -1 : tableIds[slot];
+	}
+	
+	/**
+	 * Gets a term by id.
+	 * 
+	 * @param 	id	Term id.
+	 * @return	Term string.
+	 */
+	public String getTerm(int id) {
+		return terms[id];
+	}
+	
+	/**
+	 * Gets the number of terms in the term table.
+	 * 
+	 * @return	Number of terms.
+	 */
+	public int getNumTerms() {
+		return numTerms;
+	}
+	
+	/**
+	 * Renumbers the terms in alphabetical order, so that
+	 * ids match the indices of a sorted term list.
+	 */
+	public void sortTerms() {
+		int[] byTerm = identity(numTerms);
+		
+		sortByTerm = true;
+		sort(byTerm, numTerms);
+		
+		for (int i=0; i<numTerms; i++) {
+			sortedTerms[i] = terms[byTerm[i]];
+			sortedSlots[i] = termSlots[byTerm[i]];
+			tableIds[sortedSlots[i]] = i;
+		}
+		
+		String[] swapTerms = terms;
+		terms = sortedTerms;
+		sortedTerms = swapTerms;
+		int[] swapSlots = termSlots;
+		termSlots = sortedSlots;
+		sortedSlots = swapSlots;
+	}
+	
+	/**
+	 * Ranks indices by score, highest first. Equal scores are
+	 * ranked by descending index, the order produced by sorting
+	 * IndexValuePairs and reversing them.
+	 * 
+	 * @param 	scores	Score of each index.
+	 * @param 	n		Number of indices.
+	 * @return	Buffer holding the ranked indices, valid until the next call.
+	 */
+	public int[] rank(double[] scores, int n) {
+		int[] ranked = identity(n);
+		
+		sortByTerm = false;
+		sortScores = scores;
+		sort(ranked, n);
+		sortScores = null;
+		
+		return ranked;
+	}
+	
+	/**
+	 * Fills the order buffer with the indices 0 to n - 1.
+	 * 
+	 * @param 	n	Number of indices.
+	 * @return	Order buffer.
+	 */
+	private int[] identity(int n) {
+		if (order.length < n)
+			order = new int[Math.max(n, order.length * 2)];
+		for (int i=0; i<n; i++) {
+			order[i] = i;
+		}
+		
+		return order;
+	}
+	
+	/**
+	 * Sorts indices with a bottom-up merge sort
+	 * through the reusable sort buffer.
+	 * 
+	 * @param 	a	Indices to sort.
+	 * @param 	n	Number of indices.
+	 */
+	private void sort(int[] a, int n) {
+		if (sortBuffer.length < n)
+			sortBuffer = new int[Math.max(n, sortBuffer.length * 2)];
+		
+		int[] from = a;
+		int[] to = sortBuffer;
+		
+		for (int width=1; width<n; width*=2) {
+			for (int lo=0; lo<n; lo+=2*width) {
+				int mid = Math.min(lo + width, n);
+				int hi = Math.min(lo + 2 * width, n);
+				int i = lo;
+				int j = mid;
+				
+				for (int k=lo; k<hi; k++) {
+					if (i < mid && (j >= hi || compare(from[i], from[j]) <= 0))
+						to[k] = from[i++];
+					else
+						to[k] = from[j++];
+				}
+			}
+			
+			int[] swap = from;
+			from = to;
+			to = swap;
+		}
+		
+		if (from != a)
+			System.arraycopy(from, 0, a, 0, n);
+	}
+	
+	/**
+	 * Compares two indices by term, or by descending
+	 * score and then descending index.
+	 * 
+	 * @param 	a	First index.
+	 * @param 	b	Second index.
+	 * @return	Negative if a sorts first, positive if b sorts first.
+	 */
+	private int compare(int a, int b) {
+		if (sortByTerm)
+			return terms[a].compareTo(terms[b]);
+		
+		int c = Double.compare(sortScores[b], sortScores[a]);
+		return (c != 0) ? c : b - a;
+	}
+	
+	/**
+	 * Finds the slot of a term, or the empty slot where it belongs.
+	 * 
+	 * @param 	term	Term string.
+	 * @return	Slot index.
+	 */
+	private int findSlot(String term) {
+		int h = term.hashCode();
+		int slot = (h ^ (h >>> 16)) & tableMask;
+		
+		while (tableKeys[slot] != null && !tableKeys[slot].equals(term)) {
+			slot = (slot + 1) & tableMask;
+		}
+		
+		return slot;
+	}
+	
+	/**
+	 * Moves the term table into a larger table.
+	 * 
+	 * @param 	capacity	New number of slots, a power of two.
+	 */
+	private void rehash(int capacity) {
+		tableKeys = new String[capacity];
+		tableIds = new int[capacity];
+		tableMask = capacity - 1;
+		
+		for (int i=0; i<numTerms; i++) {
+			int slot = findSlot(terms[i]);
+			tableKeys[slot] = terms[i];
+			tableIds[slot] = i;
+			termSlots[i] = slot;
+		}
+	}
+}
@@ -0,0 +1,17 @@
+package docsum.algorithm;
+
+/**
+ * Interface for sentence scoring features used by MeadAlgorithm.
+ * A feature computes one value per sentence into a column, and the
+ * sentence score is the weighted sum of all feature columns.
+ */
+public interface SentenceFeature {
+	
+	/**
+	 * Computes the feature value of every sentence.
+	 * 
+	 * @param 	context		Sentences and document model.
+	 * @param 	column		Array to fill with one value per sentence.
+	 */
+	public void fill(FeatureContext context, double[] column);
+}
@@ -0,0 +1,90 @@
+package docsum.algorithm;
+
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fork/join task that computes the centroid value of a
+ * range of sentences from their sparse term vectors.
+ */
+public class SentenceScoreTask extends RecursiveAction {
+
+	private static final long serialVersionUID = -6120865420951726283L;
+	
+	SparseVector[] vectors;
+	int[] centroidRanks;
+	double[] centroidValues;
+	double[] docCentroidValues;
+	int start;
+	int end;
+	int chunkSize;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param 	vectors				Sparse term vectors of all sentences.
+	 * @param 	centroidRanks		Rank of each term in the centroid document, or -1.
+	 * @param 	centroidValues		Centroid value of each centroid document term, by rank.
+	 * @param 	docCentroidValues	Array to fill with sentence centroid values.
+	 * @param 	start				Index of first sentence in range.
+	 * @param 	end					Index one past last sentence in range.
+	 * @param 	chunkSize			Number of sentences processed without splitting.
+	 */
+	public SentenceScoreTask(SparseVector[] vectors, int[] centroidRanks,
+			double[] centroidValues, double[] docCentroidValues,
+			int start, int end, int chunkSize) {
+		this.vectors = vectors;
+		this.centroidRanks = centroidRanks;
+		this.centroidValues = centroidValues;
+		this.docCentroidValues = docCentroidValues;
+		this.start = start;
+		this.end = end;
+		this.chunkSize = chunkSize;
+	}
+	
+	// Scores the sentences directly or splits the range in two.
+	protected void compute() {
+		if (end - start <= chunkSize) {
+			scoreRange();
+			return;
+		}
+		
+		int middle = (start + end) >>> 1;
+		invokeAll(new SentenceScoreTask(vectors, centroidRanks, centroidValues,
+						docCentroidValues, start, middle, chunkSize),
+				new SentenceScoreTask(vectors, centroidRanks, centroidValues,
+						docCentroidValues, middle, end, chunkSize));
+	}
+	
+	/**
+	 * Scores the sentences in the range sequentially.
+	 */
+	private void scoreRange() {
+		int[] ranks = new int[16];
+		
+		for (int i=start; i<end; i++) {
+			SparseVector vector = vectors[i];
+			
+			// Collect the centroid ranks of the terms in the sentence.
+			int count = 0;
+			for (int index : vector.indices) {
+				int rank = centroidRanks[index];
+				if (rank >= 0) {
+					if (count == ranks.length)
+						ranks = Arrays.copyOf(ranks, count * 2);
+					ranks[count++] = rank;
+				}
+			}
+			
+			// Sum in centroid document order, as the sequential
+			// implementation does, so the totals are identical.
+			Arrays.sort(ranks, 0, count);
+			double total = 0.0;
+			for (int j=0; j<count; j++) {
+				total += centroidValues[ranks[j]];
+			}
+			
+			docCentroidValues[i] = total;
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package docsum.algorithm;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fork/join task that builds sparse term vectors for a range
+ * of sentences. Each sentence's vector is written to its own
+ * slot in a shared array, so ranges can be filled in parallel.
+ */
+public class SentenceVectorTask extends RecursiveAction {
+
+	private static final long serialVersionUID = 4739159018732478920L;
+	
+	List<List<String>> sentences;
+	Map<String, Integer> termIndex;
+	SparseVector[] vectors;
+	int start;
+	int end;
+	int chunkSize;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param 	sentences	List of tokenized sentences.
+	 * @param 	termIndex	Map from each term to its index.
+	 * @param 	vectors		Array to fill with one vector per sentence.
+	 * @param 	start		Index of first sentence in range.
+	 * @param 	end			Index one past last sentence in range.
+	 * @param 	chunkSize	Number of sentences processed without splitting.
+	 */
+	public SentenceVectorTask(List<List<String>> sentences, Map<String, Integer> termIndex,
+			SparseVector[] vectors, int start, int end, int chunkSize) {
+		this.sentences = sentences;
+		this.termIndex = termIndex;
+		this.vectors = vectors;
+		this.start = start;
+		this.end = end;
+		this.chunkSize = chunkSize;
+	}
+	
+	// Builds the vectors directly or splits the range in two.
+	protected void compute() {
+		if (end - start <= chunkSize) {
+			for (int i=start; i<end; i++) {
+				vectors[i] = new SparseVector(sentences.get(i), termIndex);
+			}
+			return;
+		}
+		
+		int middle = (start + end) >>> 1;
+		invokeAll(new SentenceVectorTask(sentences, termIndex, vectors, start, middle, chunkSize),
+				new SentenceVectorTask(sentences, termIndex, vectors, middle, end, chunkSize));
+	}
+}
@@ -0,0 +1,177 @@
+package docsum.algorithm;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collapses near-duplicate sentences into a single representative
+ * sentence, using 64-bit SimHash fingerprints.
+ * <p>
+ * Two sentences are near-duplicates if their fingerprints differ in at
+ * most a given number of bits. Fingerprints are split into bands so that
+ * candidates are found by hash lookup rather than by comparing every
+ * pair of sentences.
+ * <p>
+ * SimHash based on the paper:
+ * "Detecting Near-Duplicates for Web Crawling"
+ * http://www.wwwconference.org/www2007/papers/paper215.pdf
+ * <p>
+ * The deduplicator keeps no state between calls, so one instance
+ * can be shared by summarizers on several threads.
+ */
+public class SimHashDeduplicator {
+	
+	static final int BITS = 64;
+	
+	int maxDistance;
+	int numBands;
+	int bandWidth;
+	
+	/**
+	 * Default constructor. Sentences whose fingerprints
+	 * differ in at most 3 bits are treated as duplicates.
+	 */
+	public SimHashDeduplicator() {
+		this(3);
+	}
+	
+	/**
+	 * Constructor with configurable Hamming distance threshold.
+	 * 
+	 * @param 	maxDistance		Maximum number of differing fingerprint bits, 0 to 15.
+	 */
+	public SimHashDeduplicator(int maxDistance) {
+		if (maxDistance < 0 || maxDistance > 15)
+			throw new IllegalArgumentException("maxDistance must be between 0 and 15");
+		
+		// By the pigeonhole principle, two fingerprints within
+		// distance d agree exactly on at least one of d+1 bands.
+		this.maxDistance = maxDistance;
+		this.numBands = maxDistance + 1;
+		this.bandWidth = BITS / numBands;
+	}
+	
+	/**
+	 * Collapses near-duplicate sentences. The first occurrence of each
+	 * group of duplicates is kept as its representative.
+	 * 
+	 * @param 	sentences	List of tokenized sentences.
+	 * @return	Representative sentences in document order and their indices.
+	 */
+	public CollapsedSentences collapse(List<List<String>> sentences) {
+		
+		List<List<String>> representatives = new ArrayList<List<String>>();
+		List<Integer> representativeIndices = new ArrayList<Integer>();
+		
+		List<Long> fingerprints = new ArrayList<Long>();
+		List<Map<Long, List<Integer>>> bands = new ArrayList<Map<Long, List<Integer>>>();
+		for (int b=0; b<numBands; b++) {
+			bands.add(new HashMap<Long, List<Integer>>());
+		}
+		
+		for (int i=0; i<sentences.size(); i++) {
+			List<String> sentence = sentences.get(i);
+			long fingerprint = fingerprint(sentence);
+			
+			// Look for an existing representative that shares a band.
+			int match = -1;
+			for (int b=0; b<numBands && match < 0; b++) {
+				List<Integer> candidates = bands.get(b).get(bandKey(fingerprint, b));
+				if (candidates == null)
+					continue;
+				
+				for (Integer candidate : candidates) {
+					long distance = Long.bitCount(fingerprint ^ fingerprints.get(candidate));
+					if (distance <= maxDistance) {
+						match = candidate;
+						break;
+					}
+				}
+			}
+			
+			if (match < 0) {
+				int rep = representatives.size();
+				representatives.add(sentence);
+				representativeIndices.add(i);
+				fingerprints.add(fingerprint);
+				
+				for (int b=0; b<numBands; b++) {
+					Long key = bandKey(fingerprint, b);
+					List<Integer> bucket = bands.get(b).get(key);
+					if (bucket == null) {
+						bucket = new ArrayList<Integer>();
+						bands.get(b).put(key, bucket);
+					}
+					bucket.add(rep);
+				}
+			}
+		}
+		
+		return new CollapsedSentences(representatives, representativeIndices);
+	}
+	
+	/**
+	 * Computes the SimHash fingerprint of a sentence.
+	 * Every token votes on each bit of the fingerprint
+	 * according to the corresponding bit of its own hash.
+	 * 
+	 * @param 	sentence	List of words in the sentence.
+	 * @return	64-bit fingerprint.
+	 */
+	long fingerprint(List<String> sentence) {
+		int[] votes = new int[BITS];
+		
+		for (String word : sentence) {
+			long hash = hash(word);
+			for (int bit=0; bit<BITS; bit++) {
+				if (((hash >>> bit) & 1L) != 0)
+					votes[bit]++;
+				else
+					votes[bit]--;
+			}
+		}
+		
+		long fingerprint = 0L;
+		for (int bit=0; bit<BITS; bit++) {
+			if (votes[bit] > 0)
+				fingerprint |= 1L << bit;
+		}
+		
+		return fingerprint;
+	}
+	
+	/**
+	 * Extracts one band of a fingerprint.
+	 * 
+	 * @param 	fingerprint		64-bit fingerprint.
+	 * @param 	band			Band number.
+	 * @return	Lookup key for the band.
+	 */
+	private Long bandKey(long fingerprint, int band) {
+		int shift = band * bandWidth;
+		int width = (band == numBands - 1) ? BITS - shift : bandWidth;
+		long mask = (width == BITS) ? -1L : (1L << width) - 1;
+		
+		return (fingerprint >>> shift) & mask;
+	}
+	
+	/**
+	 * Spreads the 32-bit String hash code over 64 bits
+	 * using the MurmurHash3 finalizer.
+	 * 
+	 * @param 	word	Word to hash.
+	 * @return	64-bit hash.
+	 */
+	private long hash(String word) {
+		long h = word.hashCode();
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		
+		return h;
+	}
+}
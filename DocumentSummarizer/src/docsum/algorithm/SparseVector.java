@@ -0,0 +1,136 @@
+package docsum.algorithm;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sparse term count vector for a single sentence.
+ * Term indices are kept in ascending order so that
+ * dot products can be computed with a linear merge.
+ */
+public class SparseVector {
+
+	int[] indices;
+	double[] values;
+	double norm;
+	
+	/**
+	 * Builds a sparse count vector from a tokenized sentence.
+	 * 
+	 * @param 	sentence	List of words in the sentence.
+	 * @param 	termIndex	Map from each term to its index.
+	 */
+	public SparseVector(List<String> sentence, Map<String, Integer> termIndex) {
+		
+		// Look up the index of every token and sort them
+		// so that repeated terms end up next to each other.
+		int[] ids = new int[sentence.size()];
+		for (int i=0; i<ids.length; i++) {
+			ids[i] = termIndex.get(sentence.get(i));
+		}
+		Arrays.sort(ids);
+		
+		// Count the number of distinct terms.
+		int distinct = 0;
+		for (int i=0; i<ids.length; i++) {
+			if (i == 0 || ids[i] != ids[i-1])
+				distinct++;
+		}
+		
+		// Collapse runs of the same index into counts.
+		indices = new int[distinct];
+		values = new double[distinct];
+		int pos = -1;
+		for (int i=0; i<ids.length; i++) {
+			if (i == 0 || ids[i] != ids[i-1]) {
+				pos++;
+				indices[pos] = ids[i];
+			}
+			values[pos] += 1.0;
+		}
+		
+		// Cache the Euclidean norm for cosine similarity.
+		norm = Math.sqrt(ArrayMath.sumOfSquares(values, values.length));
+	}
+	
+	/**
+	 * Gets the number of distinct terms in the vector.
+	 * 
+	 * @return	Number of entries.
+	 */
+	public int getNumEntries() {
+		return indices.length;
+	}
+	
+	/**
+	 * Gets the term index of an entry.
+	 * 
+	 * @param 	entry	Entry number, in ascending term order.
+	 * @return	Term index.
+	 */
+	public int getIndex(int entry) {
+		return indices[entry];
+	}
+	
+	/**
+	 * Gets the count of an entry.
+	 * 
+	 * @param 	entry	Entry number, in ascending term order.
+	 * @return	Number of occurrences of the term.
+	 */
+	public double getValue(int entry) {
+		return values[entry];
+	}
+	
+	/**
+	 * Gets the Euclidean norm of the vector.
+	 * 
+	 * @return	Norm.
+	 */
+	public double getNorm() {
+		return norm;
+	}
+	
+	/**
+	 * Computes the dot product with another sparse vector.
+	 * 
+	 * @param 	other	Sparse vector.
+	 * @return	Dot product of the two vectors.
+	 */
+	public double dot(SparseVector other) {
+		double total = 0.0;
+		int i = 0;
+		int j = 0;
+		
+		while (i < indices.length && j < other.indices.length) {
+			if (indices[i] == other.indices[j]) {
+				total += values[i] * other.values[j];
+				i++;
+				j++;
+			}
+			else if (indices[i] < other.indices[j]) {
+				i++;
+			}
+			else {
+				j++;
+			}
+		}
+		
+		return total;
+	}
+	
+	/**
+	 * Computes the cosine similarity with another sparse vector.
+	 * Empty vectors have zero similarity with everything.
+	 * 
+	 * @param 	other	Sparse vector.
+	 * @return	Cosine similarity between 0 and 1.
+	 */
+	public double cosine(SparseVector other) {
+		if (norm == 0.0 || other.norm == 0.0)
+			return 0.0;
+		
+		return dot(other) / (norm * other.norm);
+	}
+}
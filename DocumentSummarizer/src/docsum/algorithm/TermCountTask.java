@@ -0,0 +1,150 @@
+package docsum.algorithm;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Fork/join task that counts term frequencies and document
+ * frequencies over a range of sentences. Ranges larger than the
+ * chunk size are split in half and the two halves' counts merged.
+ * Each chunk counts into its own primitive arrays, so no
+ * synchronization is needed until the merge.
+ */
+public class TermCountTask extends RecursiveTask<TermCountTask.Counts> {
+
+	private static final long serialVersionUID = -2893574413096127615L;
+	
+	List<List<String>> sentences;
+	int start;
+	int end;
+	int chunkSize;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param 	sentences	List of tokenized sentences.
+	 * @param 	start		Index of first sentence in range.
+	 * @param 	end			Index one past last sentence in range.
+	 * @param 	chunkSize	Number of sentences counted without splitting.
+	 */
+	public TermCountTask(List<List<String>> sentences, int start, int end, int chunkSize) {
+		this.sentences = sentences;
+		this.start = start;
+		this.end = end;
+		this.chunkSize = chunkSize;
+	}
+	
+	// Counts the range directly or splits it in two.
+	protected Counts compute() {
+		if (end - start <= chunkSize) {
+			return countRange();
+		}
+		
+		int middle = (start + end) >>> 1;
+		TermCountTask left = new TermCountTask(sentences, start, middle, chunkSize);
+		TermCountTask right = new TermCountTask(sentences, middle, end, chunkSize);
+		left.fork();
+		Counts rightCounts = right.compute();
+		Counts leftCounts = left.join();
+		
+		return leftCounts.merge(rightCounts);
+	}
+	
+	/**
+	 * Counts terms in the range sequentially.
+	 * 
+	 * @return	Term counts for the range.
+	 */
+	private Counts countRange() {
+		Counts counts = new Counts();
+		
+		// Sentence in which each term was last seen, so that
+		// document frequency is only incremented once per sentence.
+		int[] lastSeen = new int[16];
+		
+		for (int i=start; i<end; i++) {
+			for (String word : sentences.get(i)) {
+				int id = counts.idOf(word);
+				if (id >= lastSeen.length)
+					lastSeen = Arrays.copyOf(lastSeen, Math.max(id + 1, lastSeen.length * 2));
+				
+				counts.tf[id]++;
+				if (counts.df[id] == 0 || lastSeen[id] != i) {
+					counts.df[id]++;
+					lastSeen[id] = i;
+				}
+			}
+		}
+		
+		return counts;
+	}
+	
+	/**
+	 * Term table with total occurrences and number
+	 * of sentences containing each term, indexed by a
+	 * term id local to the table.
+	 */
+	public static class Counts {
+		
+		Map<String, Integer> ids;
+		String[] words;
+		int[] tf;
+		int[] df;
+		int size;
+		
+		/**
+		 * Creates an empty term table.
+		 */
+		Counts() {
+			ids = new HashMap<String, Integer>();
+			words = new String[16];
+			tf = new int[16];
+			df = new int[16];
+		}
+		
+		/**
+		 * Gets the id of a term, adding it if necessary.
+		 * 
+		 * @param 	word	Term string.
+		 * @return	Local id of the term.
+		 */
+		int idOf(String word) {
+			Integer id = ids.get(word);
+			if (id != null)
+				return id;
+			
+			if (size == words.length) {
+				words = Arrays.copyOf(words, size * 2);
+				tf = Arrays.copyOf(tf, size * 2);
+				df = Arrays.copyOf(df, size * 2);
+			}
+			
+			ids.put(word, size);
+			words[size] = word;
+			return size++;
+		}
+		
+		/**
+		 * Adds the counts of another table into the larger of the two.
+		 * The ranges counted by the two tables must not overlap.
+		 * 
+		 * @param 	other	Term counts for another range.
+		 * @return	Merged term counts.
+		 */
+		Counts merge(Counts other) {
+			Counts into = (size >= other.size) ? this : other;
+			Counts from = (into == this) ? other : this;
+			
+			for (int i=0; i<from.size; i++) {
+				int id = into.idOf(from.words[i]);
+				into.tf[id] += from.tf[i];
+				into.df[id] += from.df[i];
+			}
+			
+			return into;
+		}
+	}
+}
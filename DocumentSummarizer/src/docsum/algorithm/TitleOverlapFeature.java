@@ -0,0 +1,44 @@
+package docsum.algorithm;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Overlap of each sentence with a title: the dot product
+ * of their word occurrence vectors. The title must be
+ * preprocessed the same way as the sentences.
+ */
+public class TitleOverlapFeature implements SentenceFeature {
+	
+	Map<String, Integer> titleCounts;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param 	title	List of preprocessed title words.
+	 */
+	public TitleOverlapFeature(List<String> title) {
+		titleCounts = new HashMap<String, Integer>();
+		
+		for (String word : title) {
+			Integer count = titleCounts.get(word);
+			titleCounts.put(word, (count == null) ? 1 : count + 1);
+		}
+	}
+	
+	// Sums the title count of every word in each sentence.
+	public void fill(FeatureContext context, double[] column) {
+		
+		for (int i=0; i<column.length; i++) {
+			int overlap = 0;
+			for (String word : context.sentences.get(i)) {
+				Integer count = titleCounts.get(word);
+				if (count != null)
+					overlap += count;
+			}
+			
+			column[i] = overlap;
+		}
+	}
+}
@@ -0,0 +1,204 @@
+package docsum.batch;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Coordinator of a sharded batch run by BatchWorker processes.
+ * <p>
+ * plan splits an input manifest, one path per line, into shards in
+ * the shared work directory, which must not hold an earlier batch.
+ * Workers on any machine that can see the directory then claim and
+ * process the shards. merge waits for every shard to finish,
+ * reclaiming shards of dead workers, checks that every planned shard
+ * has a result, and concatenates the shard results in manifest order
+ * into a single result file.
+ * <p>
+ * Usage: BatchCoordinator plan workDir manifest [shardSize]
+ * <br>
+ * Usage: BatchCoordinator merge workDir output [leaseSeconds]
+ * <br>
+ * Usage: BatchCoordinator status workDir
+ */
+public class BatchCoordinator {
+	
+	static final int DEFAULT_SHARD_SIZE = 100;
+	static final long POLL_MILLIS = 1000;
+	static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	WorkDirectory workDirectory;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param 	workDir		Shared work directory.
+	 * @throws 	IOException
+	 */
+	public BatchCoordinator(Path workDir) throws IOException {
+		workDirectory = new WorkDirectory(workDir);
+	}
+	
+	/**
+	 * Splits a manifest into pending shards. Blank lines
+	 * and lines starting with # are skipped. The plan file is
+	 * written last, so workers wait until every shard is there.
+	 * 
+	 * @param 	manifest	File listing one input path per line.
+	 * @param 	shardSize	Number of inputs per shard.
+	 * @return	Number of shards.
+	 * @throws 	IOException		If the work directory already holds a batch,
+	 * 							or the manifest cannot be read.
+	 */
+	public int plan(Path manifest, int shardSize) throws IOException {
+		workDirectory.checkUnused();
+		
+		int numShards = 0;
+		List<String> shard = new ArrayList<String>();
+		
+		BufferedReader reader = Files.newBufferedReader(manifest, UTF8);
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.length() == 0 || line.startsWith("#"))
+					continue;
+				
+				shard.add(line);
+				if (shard.size() == shardSize) {
+					workDirectory.addShard(shardName(numShards++), shard);
+					shard.clear();
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		
+		if (!shard.isEmpty())
+			workDirectory.addShard(shardName(numShards++), shard);
+		workDirectory.setPlannedShards(numShards);
+		
+		return numShards;
+	}
+	
+	/**
+	 * Waits until no shard is pending or claimed, then writes the
+	 * shard results in order to one file, replacing it atomically.
+	 * 
+	 * @param 	output		Result file.
+	 * @param 	leaseMillis	Time after which a claim without heartbeat is stale.
+	 * @return	Number of result lines.
+	 * @throws 	IOException		If the work directory or output cannot be
+	 * 							accessed, or a planned shard has no result.
+	 * @throws 	InterruptedException
+	 */
+	public int merge(Path output, long leaseMillis) throws IOException, InterruptedException {
+		int numShards = workDirectory.getPlannedShards();
+		
+		while (workDirectory.countPending() > 0 || workDirectory.countClaimed() > 0) {
+			workDirectory.reclaimStale(leaseMillis);
+			Thread.sleep(POLL_MILLIS);
+		}
+		
+		List<Path> results = workDirectory.listResults();
+		if (results.size() != numShards)
+			throw new IOException("Expected " + numShards + " shard results, found "
+					+ results.size());
+		
+		Path parent = output.toAbsolutePath().getParent();
+		Path temp = Files.createTempFile(parent, ".merge", ".tmp");
+		int numLines = 0;
+		
+		try {
+			BufferedWriter writer = Files.newBufferedWriter(temp, UTF8);
+			try {
+				for (Path result : results) {
+					for (String line : Files.readAllLines(result, UTF8)) {
+						writer.write(line);
+						writer.newLine();
+						numLines++;
+					}
+				}
+			} finally {
+				writer.close();
+			}
+			
+			Files.move(temp, output,
+					StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+		
+		return numLines;
+	}
+	
+	/**
+	 * Gets the progress of the batch on one line.
+	 * 
+	 * @return	Status string.
+	 * @throws 	IOException
+	 */
+	public String getStatus() throws IOException {
+		return "pending=" + workDirectory.countPending()
+				+ " claimed=" + workDirectory.countClaimed()
+				+ " done=" + workDirectory.listResults().size();
+	}
+	
+	/**
+	 * Makes a shard name that sorts in manifest order.
+	 * 
+	 * @param 	index	Shard number.
+	 * @return	Shard name.
+	 */
+	private static String shardName(int index) {
+		return String.format("shard-%08d", index);
+	}
+	
+	/**
+	 * Entry point for the coordinator.
+	 * 
+	 * @param 	args	Command line arguments.
+	 * @throws 	Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2 || (!args[0].equals("status") && args.length < 3)) {
+			System.err.println("Usage: BatchCoordinator plan workDir manifest [shardSize]");
+			System.err.println("       BatchCoordinator merge workDir output [leaseSeconds]");
+			System.err.println("       BatchCoordinator status workDir");
+			System.exit(1);
+		}
+		
+		BatchCoordinator coordinator = new BatchCoordinator(Paths.get(args[1]));
+		
+		if (args[0].equals("plan")) {
+			int shardSize = (args.length > 3) ? Integer.parseInt(args[3]) : DEFAULT_SHARD_SIZE;
+			int numShards = coordinator.plan(Paths.get(args[2]), shardSize);
+			System.out.println("Planned " + numShards + " shards");
+		}
+		else if (args[0].equals("merge")) {
+			long leaseMillis = (args.length > 3) ? Long.parseLong(args[3]) * 1000
+					: BatchWorker.DEFAULT_LEASE_MILLIS;
+			if (leaseMillis <= 0) {
+				System.err.println("leaseSeconds must be positive");
+				System.exit(1);
+			}
+			int numLines = coordinator.merge(Paths.get(args[2]), leaseMillis);
+			System.out.println("Merged " + numLines + " results into " + args[2]);
+		}
+		else if (args[0].equals("status")) {
+			System.out.println(coordinator.getStatus());
+		}
+		else {
+			System.err.println("Unknown command: " + args[0]);
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,305 @@
+package docsum.batch;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import docsum.summarizer.DocumentSummarizer;
+import docsum.summarizer.SentencePreprocessor;
+import docsum.summarizer.SentenceSegmenter;
+
+/**
+ * Worker process of a sharded batch. Waits until the batch has been
+ * planned, then claims shards from the shared work directory one at
+ * a time, summarizes their documents on a pool of threads and stores
+ * each shard's result, until no shard is left pending or claimed. While it holds a shard, a background thread
+ * touches the claim as a heartbeat; if the claim is gone because
+ * another worker took it over, the shard is abandoned. When nothing
+ * is pending, the worker returns stale claims of dead workers to
+ * pending and keeps waiting, so the batch finishes as long as one
+ * worker is alive. A shard claimed more than the maximum number of
+ * times, because it keeps killing its workers, is stored with an
+ * error line for each document instead of being tried again.
+ * <p>
+ * Each result line is the input path, "ok" or "error", and the
+ * summary or error message, separated by tabs, with backslashes,
+ * tabs and line breaks escaped.
+ */
+public class BatchWorker {
+	
+	static final long DEFAULT_LEASE_MILLIS = 60000;
+	static final int DEFAULT_MAX_ATTEMPTS = 3;
+	static final long POLL_MILLIS = 1000;
+	static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	WorkDirectory workDirectory;
+	String workerId;
+	int percentage;
+	long leaseMillis;
+	int maxAttempts;
+	
+	SentenceSegmenter segmenter;
+	SentencePreprocessor preprocessor;
+	ThreadLocal<DocumentSummarizer> summarizers;
+	ExecutorService threads;
+	ScheduledExecutorService heartbeats;
+	
+	int numShards;
+	int numDocuments;
+	int numFailedShards;
+	
+	/**
+	 * Constructor with the default maximum number of attempts.
+	 * 
+	 * @param 	workDir		Shared work directory.
+	 * @param 	percentage	Percentage of sentences to include in summaries.
+	 * @param 	numThreads	Number of summarizer threads.
+	 * @param 	leaseMillis	Time after which a claim without heartbeat is stale.
+	 * @throws 	IOException
+	 */
+	public BatchWorker(Path workDir, int percentage, int numThreads, long leaseMillis)
+			throws IOException {
+		this(workDir, percentage, numThreads, leaseMillis, DEFAULT_MAX_ATTEMPTS);
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param 	workDir		Shared work directory.
+	 * @param 	percentage	Percentage of sentences to include in summaries.
+	 * @param 	numThreads	Number of summarizer threads.
+	 * @param 	leaseMillis	Time after which a claim without heartbeat is stale.
+	 * @param 	maxAttempts	Number of times a shard is claimed before it fails.
+	 * @throws 	IOException
+	 */
+	public BatchWorker(Path workDir, int percentage, int numThreads, long leaseMillis,
+			int maxAttempts) throws IOException {
+		if (leaseMillis < 4)
+			throw new IllegalArgumentException("Lease is too short: " + leaseMillis + " ms");
+		if (maxAttempts < 1)
+			throw new IllegalArgumentException("Maximum attempts must be positive: " + maxAttempts);
+		
+		this.percentage = percentage;
+		this.leaseMillis = leaseMillis;
+		this.maxAttempts = maxAttempts;
+		workDirectory = new WorkDirectory(workDir);
+		
+		// The runtime name is pid@host, which identifies the process
+		// across machines; the suffix keeps restarted pids apart.
+		workerId = ManagementFactory.getRuntimeMXBean().getName()
+				+ "-" + UUID.randomUUID().toString().substring(0, 8);
+		
+		segmenter = new SentenceSegmenter();
+		preprocessor = new SentencePreprocessor();
+		summarizers = new ThreadLocal<DocumentSummarizer>() {
+			protected DocumentSummarizer initialValue() {
+				return new DocumentSummarizer(segmenter, preprocessor);
+			}
+		};
+		threads = Executors.newFixedThreadPool(numThreads);
+		heartbeats = Executors.newSingleThreadScheduledExecutor();
+	}
+	
+	/**
+	 * Waits for the batch to be planned, then processes
+	 * shards until the batch is finished.
+	 * 
+	 * @throws 	IOException		If the work directory cannot be accessed.
+	 * @throws 	InterruptedException
+	 */
+	public void run() throws IOException, InterruptedException {
+		try {
+			// A worker started before the coordinator would
+			// otherwise find nothing pending and stop at once.
+			while (!workDirectory.isPlanned()) {
+				Thread.sleep(POLL_MILLIS);
+			}
+			
+			while (true) {
+				Path claim = workDirectory.claim(workerId);
+				
+				if (claim != null) {
+					process(claim);
+					continue;
+				}
+				
+				if (workDirectory.reclaimStale(leaseMillis) > 0)
+					continue;
+				if (workDirectory.countClaimed() == 0 && workDirectory.countPending() == 0)
+					break;
+				
+				Thread.sleep(POLL_MILLIS);
+			}
+		} finally {
+			threads.shutdown();
+			heartbeats.shutdown();
+		}
+	}
+	
+	/**
+	 * Summarizes the documents of a claimed shard and stores the result.
+	 * The shard is abandoned if the claim is lost, and failed if it
+	 * has been attempted too often.
+	 * 
+	 * @param 	claim	Claim file.
+	 * @throws 	IOException
+	 * @throws 	InterruptedException
+	 */
+	private void process(final Path claim) throws IOException, InterruptedException {
+		List<String> paths = workDirectory.readShard(claim);
+		
+		int attempts = workDirectory.getAttempts(claim);
+		if (attempts > maxAttempts) {
+			List<String> lines = new ArrayList<String>();
+			for (String path : paths) {
+				lines.add(escape(path) + "\terror\tshard failed after "
+						+ maxAttempts + " attempts");
+			}
+			workDirectory.complete(claim, lines);
+			numFailedShards++;
+			return;
+		}
+		
+		final AtomicBoolean lost = new AtomicBoolean();
+		Future<?> heartbeat = heartbeats.scheduleAtFixedRate(new Runnable() {
+			public void run() {
+				if (!workDirectory.heartbeat(claim))
+					lost.set(true);
+			}
+		}, leaseMillis / 4, leaseMillis / 4, TimeUnit.MILLISECONDS);
+		
+		try {
+			List<Future<String>> futures = new ArrayList<Future<String>>();
+			for (final String path : paths) {
+				futures.add(threads.submit(new Callable<String>() {
+					public String call() {
+						return summarize(path);
+					}
+				}));
+			}
+			
+			List<String> lines = new ArrayList<String>();
+			for (Future<String> future : futures) {
+				if (lost.get())
+					break;
+				
+				try {
+					lines.add(future.get());
+				} catch (ExecutionException e) {
+					throw new IOException(e.getCause());
+				}
+			}
+			
+			// Another worker holds the shard now and will store its result.
+			if (lost.get()) {
+				for (Future<String> future : futures) {
+					future.cancel(true);
+				}
+				System.err.println("Lost claim " + claim.getFileName() + ", abandoning shard");
+				return;
+			}
+			
+			workDirectory.complete(claim, lines);
+			numShards++;
+			numDocuments += paths.size();
+		} finally {
+			heartbeat.cancel(false);
+		}
+	}
+	
+	/**
+	 * Summarizes one input file into a result line. Failures are
+	 * recorded in the line rather than failing the shard.
+	 * 
+	 * @param 	path	Input path.
+	 * @return	Result line.
+	 */
+	private String summarize(String path) {
+		try {
+			String text = new String(Files.readAllBytes(Paths.get(path)), UTF8);
+			String summary = summarizers.get().summarize(text, percentage);
+			
+			return escape(path) + "\tok\t" + escape(summary);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return escape(path) + "\terror\t" + escape(String.valueOf(e));
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			return escape(path) + "\terror\t" + escape(String.valueOf(e));
+		}
+	}
+	
+	/**
+	 * Escapes a field of a result line.
+	 * 
+	 * @param 	field	Field text.
+	 * @return	Text without tabs or line breaks.
+	 */
+	static String escape(String field) {
+		StringBuilder escaped = new StringBuilder(field.length());
+		
+		for (int i=0; i<field.length(); i++) {
+			char c = field.charAt(i);
+			if (c == '\\')
+				escaped.append("\\\\");
+			else if (c == '\t')
+				escaped.append("\\t");
+			else if (c == '\n')
+				escaped.append("\\n");
+			else if (c == '\r')
+				escaped.append("\\r");
+			else
+				escaped.append(c);
+		}
+		
+		return escaped.toString();
+	}
+	
+	/**
+	 * Entry point for a worker process.
+	 * Usage: BatchWorker workDir [percentage] [threads] [leaseSeconds] [maxAttempts]
+	 * 
+	 * @param 	args	Command line arguments.
+	 * @throws 	Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.err.println("Usage: BatchWorker workDir [percentage] [threads] "
+					+ "[leaseSeconds] [maxAttempts]");
+			System.exit(1);
+		}
+		
+		int percentage = (args.length > 1) ? Integer.parseInt(args[1]) : 20;
+		int numThreads = (args.length > 2) ? Integer.parseInt(args[2])
+				: Runtime.getRuntime().availableProcessors();
+		long leaseMillis = (args.length > 3) ? Long.parseLong(args[3]) * 1000
+				: DEFAULT_LEASE_MILLIS;
+		int maxAttempts = (args.length > 4) ? Integer.parseInt(args[4]) : DEFAULT_MAX_ATTEMPTS;
+		if (leaseMillis <= 0 || maxAttempts < 1) {
+			System.err.println("leaseSeconds and maxAttempts must be positive");
+			System.exit(1);
+		}
+		
+		BatchWorker worker = new BatchWorker(Paths.get(args[0]), percentage,
+				numThreads, leaseMillis, maxAttempts);
+		worker.run();
+		
+		System.out.println(worker.workerId + " summarized " + worker.numDocuments
+				+ " documents in " + worker.numShards + " shards, "
+				+ worker.numFailedShards + " shards failed");
+	}
+}
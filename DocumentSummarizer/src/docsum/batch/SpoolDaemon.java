@@ -0,0 +1,418 @@
+package docsum.batch;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import docsum.summarizer.DocumentSummarizer;
+import docsum.summarizer.SentencePreprocessor;
+import docsum.summarizer.SentenceSegmenter;
+
+/**
+ * Long-running process that watches a spool directory and summarizes
+ * every text file that is created or changed in it.
+ * <p>
+ * Files are summarized on a pool of worker threads once they have
+ * stopped changing for a short delay. Each summary is written to a
+ * temporary file and renamed into the output directory, so readers
+ * never see a partial summary. The name and content hash of every
+ * processed file are appended to a checkpoint file, so after a
+ * restart files that were already summarized are skipped rather
+ * than redone. A file whose content matches an earlier file under
+ * another name is still summarized under its own name. A file that
+ * changes while it is being summarized is summarized again once the
+ * first run is done, never by two workers at once.
+ */
+public class SpoolDaemon {
+	
+	static final String CHECKPOINT_FILE = ".checkpoint";
+	static final String SUMMARY_SUFFIX = ".summary.txt";
+	static final long SETTLE_MILLIS = 500;
+	static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	Path inputDir;
+	Path outputDir;
+	int percentage;
+	
+	SentenceSegmenter segmenter;
+	SentencePreprocessor preprocessor;
+	ThreadLocal<DocumentSummarizer> summarizers;
+	
+	ScheduledExecutorService workers;
+	Map<Path, ScheduledFuture<?>> pending;
+	Set<Path> inFlight;
+	Set<Path> changed;
+	Set<String> processed;
+	BufferedWriter checkpoint;
+	WatchService watcher;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param 	inputDir	Spool directory to watch.
+	 * @param 	outputDir	Directory to write summaries and the checkpoint to.
+	 * @param 	percentage	Percentage of sentences to include in summaries.
+	 * @param 	numWorkers	Number of worker threads.
+	 * @throws 	IllegalArgumentException	If both directories are the same,
+	 * 										since summaries would be summarized again.
+	 */
+	public SpoolDaemon(Path inputDir, Path outputDir, int percentage, int numWorkers) {
+		if (inputDir.toAbsolutePath().normalize().equals(outputDir.toAbsolutePath().normalize()))
+			throw new IllegalArgumentException("Input and output directories must differ");
+		
+		this.inputDir = inputDir;
+		this.outputDir = outputDir;
+		this.percentage = percentage;
+		
+		// The segmenter and preprocessor are shared, but each
+		// worker needs its own summarizer because the MEAD
+		// model is rebuilt in place for every document.
+		segmenter = new SentenceSegmenter();
+		preprocessor = new SentencePreprocessor();
+		summarizers = new ThreadLocal<DocumentSummarizer>() {
+			protected DocumentSummarizer initialValue() {
+				return new DocumentSummarizer(segmenter, preprocessor);
+			}
+		};
+		
+		workers = new ScheduledThreadPoolExecutor(numWorkers);
+		pending = new HashMap<Path, ScheduledFuture<?>>();
+		inFlight = new HashSet<Path>();
+		changed = new HashSet<Path>();
+		processed = new HashSet<String>();
+	}
+	
+	/**
+	 * Loads the checkpoint, summarizes files already in the spool
+	 * directory, then watches for changes until stop is called.
+	 * 
+	 * @throws 	IOException		If the directories cannot be read or watched.
+	 */
+	public void run() throws IOException {
+		Files.createDirectories(outputDir);
+		loadCheckpoint();
+		
+		watcher = FileSystems.getDefault().newWatchService();
+		inputDir.register(watcher,
+				StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_MODIFY);
+		
+		// Pick up files that arrived while the daemon was not running.
+		scanDirectory();
+		
+		try {
+			while (true) {
+				WatchKey key = watcher.take();
+				
+				for (WatchEvent<?> event : key.pollEvents()) {
+					if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+						scanDirectory();
+					}
+					else {
+						schedule(inputDir.resolve((Path) event.context()));
+					}
+				}
+				
+				if (!key.reset())
+					break;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ClosedWatchServiceException e) {
+			// Stopped.
+		}
+	}
+	
+	/**
+	 * Stops watching, waits for queued files to
+	 * finish and closes the checkpoint file.
+	 */
+	public void stop() {
+		try {
+			if (watcher != null)
+				watcher.close();
+			
+			workers.shutdown();
+			workers.awaitTermination(1, TimeUnit.MINUTES);
+			
+			synchronized (this) {
+				if (checkpoint != null)
+					checkpoint.close();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Schedules every file in the spool directory.
+	 * 
+	 * @throws 	IOException		If the directory cannot be listed.
+	 */
+	private void scanDirectory() throws IOException {
+		DirectoryStream<Path> stream = Files.newDirectoryStream(inputDir);
+		try {
+			for (Path path : stream) {
+				schedule(path);
+			}
+		} finally {
+			stream.close();
+		}
+	}
+	
+	/**
+	 * Schedules a file to be summarized after the settle delay.
+	 * If the file changes again before then, the delay restarts,
+	 * so files still being written are not summarized half-way.
+	 * A file that is being summarized is scheduled again when
+	 * that is done, rather than summarized by two workers at once.
+	 * 
+	 * @param 	path	File in the spool directory.
+	 */
+	private synchronized void schedule(Path path) {
+		if (!isCandidate(path))
+			return;
+		
+		if (inFlight.contains(path)) {
+			changed.add(path);
+			return;
+		}
+		
+		ScheduledFuture<?> previous = pending.get(path);
+		if (previous != null)
+			previous.cancel(false);
+		
+		SettleTask task = new SettleTask(path);
+		task.future = workers.schedule(task, SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+		pending.put(path, task.future);
+	}
+	
+	/**
+	 * Summarizes a file once it has settled, keeping it marked
+	 * in flight until the summary and checkpoint are written.
+	 */
+	class SettleTask implements Runnable {
+		
+		Path path;
+		ScheduledFuture<?> future;
+		
+		/**
+		 * Constructor.
+		 * 
+		 * @param 	path	File in the spool directory.
+		 */
+		SettleTask(Path path) {
+			this.path = path;
+		}
+		
+		public void run() {
+			synchronized (SpoolDaemon.this) {
+				// A task that started as it was being cancelled
+				// has been replaced by a later one and does nothing.
+				if (pending.get(path) != future)
+					return;
+				
+				pending.remove(path);
+				inFlight.add(path);
+			}
+			
+			try {
+				process(path);
+			} finally {
+				synchronized (SpoolDaemon.this) {
+					inFlight.remove(path);
+					if (changed.remove(path) && !workers.isShutdown())
+						schedule(path);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Checks whether a path is a regular, visible text file.
+	 * 
+	 * @param 	path	File in the spool directory.
+	 * @return	True if the file should be summarized.
+	 */
+	private boolean isCandidate(Path path) {
+		String name = path.getFileName().toString();
+		return !name.startsWith(".") && name.endsWith(".txt") && Files.isRegularFile(path);
+	}
+	
+	/**
+	 * Summarizes a file unless the same content has
+	 * already been processed under the same name.
+	 * 
+	 * @param 	path	File in the spool directory.
+	 */
+	private void process(Path path) {
+		try {
+			if (!Files.isRegularFile(path))
+				return;
+			
+			byte[] content = Files.readAllBytes(path);
+			String key = checkpointKey(hash(content), path);
+			
+			synchronized (this) {
+				if (processed.contains(key))
+					return;
+			}
+			
+			String text = new String(content, UTF8);
+			String summary = summarizers.get().summarize(text, percentage);
+			
+			writeAtomically(outputDir.resolve(path.getFileName() + SUMMARY_SUFFIX), summary);
+			recordCheckpoint(key);
+		} catch (IOException e) {
+			e.printStackTrace();
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Writes a file by writing a temporary file in the
+	 * same directory and renaming it over the target.
+	 * 
+	 * @param 	target	File to write.
+	 * @param 	text	Contents of the file.
+	 * @throws 	IOException
+	 */
+	private void writeAtomically(Path target, String text) throws IOException {
+		Path temp = Files.createTempFile(target.getParent(), ".summary", ".tmp");
+		
+		try {
+			Files.write(temp, text.getBytes(UTF8));
+			Files.move(temp, target,
+					StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+	
+	/**
+	 * Makes the checkpoint entry of a file, which is its content
+	 * hash and its name separated by a tab.
+	 * 
+	 * @param 	hash	Content hash of the file.
+	 * @param 	path	File in the spool directory.
+	 * @return	Checkpoint entry.
+	 */
+	private static String checkpointKey(String hash, Path path) {
+		return hash + "\t" + path.getFileName();
+	}
+	
+	/**
+	 * Reads the entries of previously processed files and
+	 * opens the checkpoint file for appending.
+	 * 
+	 * @throws 	IOException
+	 */
+	private synchronized void loadCheckpoint() throws IOException {
+		Path checkpointPath = outputDir.resolve(CHECKPOINT_FILE);
+		
+		if (Files.exists(checkpointPath)) {
+			BufferedReader reader = Files.newBufferedReader(checkpointPath, UTF8);
+			try {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					processed.add(line);
+				}
+			} finally {
+				reader.close();
+			}
+		}
+		
+		checkpoint = Files.newBufferedWriter(checkpointPath, UTF8,
+				StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+	}
+	
+	/**
+	 * Records a processed file in the checkpoint. The line is
+	 * flushed only after the summary is in place, so a crash can
+	 * at worst cause a file to be summarized twice, never skipped.
+	 * 
+	 * @param 	key		Checkpoint entry of the file.
+	 * @throws 	IOException
+	 */
+	private synchronized void recordCheckpoint(String key) throws IOException {
+		processed.add(key);
+		checkpoint.write(key);
+		checkpoint.newLine();
+		checkpoint.flush();
+	}
+	
+	/**
+	 * Computes the SHA-256 hash of file content.
+	 * 
+	 * @param 	content		File bytes.
+	 * @return	Hexadecimal hash string.
+	 */
+	private static String hash(byte[] content) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+			StringBuilder hex = new StringBuilder(digest.length * 2);
+			for (byte b : digest) {
+				hex.append(String.format("%02x", b));
+			}
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/**
+	 * Entry point for the daemon.
+	 * Usage: SpoolDaemon inputDir outputDir [percentage] [workers]
+	 * 
+	 * @param 	args	Command line arguments.
+	 * @throws 	IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: SpoolDaemon inputDir outputDir [percentage] [workers]");
+			System.exit(1);
+		}
+		
+		int percentage = (args.length > 2) ? Integer.parseInt(args[2]) : 20;
+		int numWorkers = (args.length > 3) ? Integer.parseInt(args[3])
+				: Runtime.getRuntime().availableProcessors();
+		
+		final SpoolDaemon daemon = new SpoolDaemon(Paths.get(args[0]), Paths.get(args[1]),
+				percentage, numWorkers);
+		
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			public void run() {
+				daemon.stop();
+			}
+		});
+		
+		daemon.run();
+	}
+}
@@ -0,0 +1,363 @@
+package docsum.batch;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Shared directory through which a coordinator and any number of
+ * worker processes, possibly on different machines, divide a batch.
+ * <p>
+ * A shard is a file listing input paths. It starts in pending/ and
+ * is claimed by renaming it into claimed/ with the worker id in its
+ * name; the rename is atomic, so exactly one worker wins each shard.
+ * The file is touched just before the rename, so a fresh claim never
+ * looks stale, and the holder keeps touching it as a heartbeat. A
+ * claim whose file has not been touched within the lease is taken to
+ * belong to a dead worker and is renamed back into pending/. Each
+ * claim counts an attempt in a header line of the shard, so a shard
+ * that keeps killing its workers can be given up. The planned number
+ * of shards is kept in a plan file, written after every shard, and
+ * checked on merge. A directory holds one batch only, since shard
+ * names repeat from one batch to the next. Results are
+ * written to a temporary file and renamed into results/, so a shard
+ * is either finished or not; if a slow worker and the one that took
+ * over both finish, the second result replaces an identical first.
+ * <p>
+ * Modification times are compared across machines, so the lease
+ * must be much longer than the clock skew between them.
+ */
+class WorkDirectory {
+	
+	static final String PENDING = "pending";
+	static final String CLAIMED = "claimed";
+	static final String RESULTS = "results";
+	static final String PLAN_FILE = "plan";
+	static final String ATTEMPTS_HEADER = "#attempts ";
+	static final String SHARD_SUFFIX = ".shard";
+	static final String RESULT_SUFFIX = ".tsv";
+	static final char CLAIM_SEPARATOR = '@';
+	static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	Path pendingDir;
+	Path claimedDir;
+	Path resultsDir;
+	Path planFile;
+	
+	/**
+	 * Constructor. Creates the subdirectories if necessary.
+	 * 
+	 * @param 	root	Shared work directory.
+	 * @throws 	IOException
+	 */
+	WorkDirectory(Path root) throws IOException {
+		pendingDir = Files.createDirectories(root.resolve(PENDING));
+		claimedDir = Files.createDirectories(root.resolve(CLAIMED));
+		resultsDir = Files.createDirectories(root.resolve(RESULTS));
+		planFile = root.resolve(PLAN_FILE);
+	}
+	
+	/**
+	 * Adds a pending shard.
+	 * 
+	 * @param 	name	Shard name, which orders shards when results are merged.
+	 * @param 	paths	Input paths in the shard.
+	 * @throws 	IOException
+	 */
+	void addShard(String name, List<String> paths) throws IOException {
+		writeAtomically(pendingDir.resolve(name + SHARD_SUFFIX), paths);
+	}
+	
+	/**
+	 * Records the number of shards in the batch.
+	 * 
+	 * @param 	numShards	Number of planned shards.
+	 * @throws 	IOException
+	 */
+	void setPlannedShards(int numShards) throws IOException {
+		writeAtomically(planFile, Collections.singletonList(String.valueOf(numShards)));
+	}
+	
+	/**
+	 * Checks that the directory holds no shards, results or plan,
+	 * so that a new batch cannot be mixed up with an earlier one.
+	 * 
+	 * @throws 	IOException		If the directory is already in use.
+	 */
+	void checkUnused() throws IOException {
+		if (Files.exists(planFile) || countPending() > 0 || countClaimed() > 0
+				|| !listResults().isEmpty())
+			throw new IOException("Work directory already holds a batch: "
+					+ planFile.getParent());
+	}
+	
+	/**
+	 * Checks whether the batch has been planned completely.
+	 * 
+	 * @return	True if the plan file exists.
+	 */
+	boolean isPlanned() {
+		return Files.exists(planFile);
+	}
+	
+	/**
+	 * Gets the number of shards in the batch.
+	 * 
+	 * @return	Number of planned shards.
+	 * @throws 	IOException		If no batch has been planned.
+	 */
+	int getPlannedShards() throws IOException {
+		if (!Files.exists(planFile))
+			throw new IOException("No batch has been planned in " + planFile.getParent());
+		
+		return Integer.parseInt(Files.readAllLines(planFile, UTF8).get(0).trim());
+	}
+	
+	/**
+	 * Claims a pending shard and counts the attempt. Shards that
+	 * already have a result, because a presumed-dead worker finished
+	 * after all, are dropped instead of being claimed.
+	 * 
+	 * @param 	workerId	Id of the claiming worker.
+	 * @return	Claim file, or null if no shard is pending.
+	 * @throws 	IOException
+	 */
+	Path claim(String workerId) throws IOException {
+		for (Path pending : list(pendingDir, SHARD_SUFFIX)) {
+			String name = getShardName(pending);
+			Path claim = claimedDir.resolve(name + CLAIM_SEPARATOR + workerId);
+			
+			// A reclaimed shard keeps its old modification time,
+			// which would make the claim stale as soon as it moves.
+			if (!heartbeat(pending))
+				continue;
+			
+			try {
+				Files.move(pending, claim, StandardCopyOption.ATOMIC_MOVE);
+			} catch (NoSuchFileException e) {
+				// Another worker won this shard.
+				continue;
+			}
+			
+			if (Files.exists(getResultPath(name))) {
+				Files.deleteIfExists(claim);
+				continue;
+			}
+			
+			List<String> paths = readShard(claim);
+			List<String> lines = new ArrayList<String>(paths.size() + 1);
+			lines.add(ATTEMPTS_HEADER + (getAttempts(claim) + 1));
+			lines.addAll(paths);
+			writeAtomically(claim, lines);
+			
+			return claim;
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Gets the number of times a shard has been claimed,
+	 * including the current claim.
+	 * 
+	 * @param 	claim	Claim or pending shard file.
+	 * @return	Number of attempts.
+	 * @throws 	IOException
+	 */
+	int getAttempts(Path claim) throws IOException {
+		for (String line : Files.readAllLines(claim, UTF8)) {
+			if (line.startsWith(ATTEMPTS_HEADER))
+				return Integer.parseInt(line.substring(ATTEMPTS_HEADER.length()).trim());
+		}
+		
+		return 0;
+	}
+	
+	/**
+	 * Marks a claim as alive.
+	 * 
+	 * @param 	claim	Claim file.
+	 * @return	False if the claim has been reclaimed.
+	 */
+	boolean heartbeat(Path claim) {
+		try {
+			Files.setLastModifiedTime(claim, FileTime.fromMillis(System.currentTimeMillis()));
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+	
+	/**
+	 * Reads the input paths of a claimed shard. The manifest
+	 * has no comment lines, so header lines are told apart
+	 * from paths by their leading #.
+	 * 
+	 * @param 	claim	Claim file.
+	 * @return	Input paths.
+	 * @throws 	IOException
+	 */
+	List<String> readShard(Path claim) throws IOException {
+		List<String> paths = new ArrayList<String>();
+		
+		for (String line : Files.readAllLines(claim, UTF8)) {
+			if (!line.startsWith("#"))
+				paths.add(line);
+		}
+		
+		return paths;
+	}
+	
+	/**
+	 * Stores the result of a claimed shard and releases the claim.
+	 * 
+	 * @param 	claim	Claim file.
+	 * @param 	lines	Result lines.
+	 * @throws 	IOException
+	 */
+	void complete(Path claim, List<String> lines) throws IOException {
+		writeAtomically(getResultPath(getShardName(claim)), lines);
+		Files.deleteIfExists(claim);
+	}
+	
+	/**
+	 * Returns claims that have not been touched within
+	 * the lease to pending, so other workers can take them.
+	 * 
+	 * @param 	leaseMillis		Time after which a silent claim is stale.
+	 * @return	Number of shards reclaimed.
+	 * @throws 	IOException
+	 */
+	int reclaimStale(long leaseMillis) throws IOException {
+		long now = System.currentTimeMillis();
+		int reclaimed = 0;
+		
+		for (Path claim : list(claimedDir, null)) {
+			try {
+				if (now - Files.getLastModifiedTime(claim).toMillis() < leaseMillis)
+					continue;
+				
+				Files.move(claim, pendingDir.resolve(getShardName(claim) + SHARD_SUFFIX),
+						StandardCopyOption.ATOMIC_MOVE);
+				reclaimed++;
+			} catch (NoSuchFileException e) {
+				// Completed or reclaimed by someone else meanwhile.
+			} catch (FileAlreadyExistsException e) {
+				Files.deleteIfExists(claim);
+			}
+		}
+		
+		return reclaimed;
+	}
+	
+	/**
+	 * Counts the pending shards.
+	 * 
+	 * @return	Number of pending shards.
+	 * @throws 	IOException
+	 */
+	int countPending() throws IOException {
+		return list(pendingDir, SHARD_SUFFIX).size();
+	}
+	
+	/**
+	 * Counts the claimed shards.
+	 * 
+	 * @return	Number of claimed shards.
+	 * @throws 	IOException
+	 */
+	int countClaimed() throws IOException {
+		return list(claimedDir, null).size();
+	}
+	
+	/**
+	 * Lists the result files in shard order.
+	 * 
+	 * @return	Result files.
+	 * @throws 	IOException
+	 */
+	List<Path> listResults() throws IOException {
+		return list(resultsDir, RESULT_SUFFIX);
+	}
+	
+	/**
+	 * Gets the result file of a shard.
+	 * 
+	 * @param 	name	Shard name.
+	 * @return	Result file.
+	 */
+	Path getResultPath(String name) {
+		return resultsDir.resolve(name + RESULT_SUFFIX);
+	}
+	
+	/**
+	 * Gets the shard name of a pending shard or claim file.
+	 * 
+	 * @param 	file	Shard or claim file.
+	 * @return	Shard name.
+	 */
+	static String getShardName(Path file) {
+		String name = file.getFileName().toString();
+		int end = name.indexOf(CLAIM_SEPARATOR);
+		if (end < 0)
+			end = name.lastIndexOf('.');
+		
+		return name.substring(0, end);
+	}
+	
+	/**
+	 * Lists the visible files in a directory in name order.
+	 * 
+	 * @param 	dir		Directory.
+	 * @param 	suffix	Required name suffix, or null for any file.
+	 * @return	Files.
+	 * @throws 	IOException
+	 */
+	private static List<Path> list(Path dir, String suffix) throws IOException {
+		List<Path> files = new ArrayList<Path>();
+		
+		DirectoryStream<Path> stream = Files.newDirectoryStream(dir);
+		try {
+			for (Path path : stream) {
+				String name = path.getFileName().toString();
+				if (!name.startsWith(".") && (suffix == null || name.endsWith(suffix)))
+					files.add(path);
+			}
+		} finally {
+			stream.close();
+		}
+		
+		Collections.sort(files);
+		return files;
+	}
+	
+	/**
+	 * Writes lines to a temporary file in the same
+	 * directory and renames it over the target.
+	 * 
+	 * @param 	target	File to write.
+	 * @param 	lines	Lines of the file.
+	 * @throws 	IOException
+	 */
+	static void writeAtomically(Path target, List<String> lines) throws IOException {
+		Path temp = Files.createTempFile(target.getParent(), ".batch", ".tmp");
+		
+		try {
+			Files.write(temp, lines, UTF8);
+			Files.move(temp, target,
+					StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+}
@@ -0,0 +1,490 @@
+package docsum.bench;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import docsum.algorithm.HITSAlgorithm;
+import docsum.algorithm.MeadAlgorithm;
+import docsum.summarizer.DocumentSummarizer;
+import docsum.summarizer.KeywordExtractor;
+import docsum.summarizer.SentencePreprocessor;
+import docsum.summarizer.SentenceSegmenter;
+import docsum.summarizer.SummaryScheduler;
+
+/**
+ * Request-level load generator for the summarizer. Runs a mix of
+ * document sizes through DocumentSummarizer and KeywordExtractor at
+ * each of several concurrency levels, and reports throughput, latency
+ * percentiles, garbage collection and allocation rate per level.
+ * Results are appended to a CSV file so that runs of different
+ * versions can be compared.
+ * <p>
+ * With --scheduler true, requests are submitted to a SummaryScheduler
+ * instead, by as many clients as the concurrency level, and keywords
+ * are not extracted. In both modes the 99th percentile latency of small
+ * and large requests, as the scheduler classifies them, is reported
+ * separately, to show whether large documents hold up small ones.
+ * <p>
+ * Usage: LoadHarness [--sizes chars:weight,...] [--concurrency n,...]
+ * [--requests n] [--warmup n] [--percentage n] [--keywords true|false]
+ * [--corpus dir] [--label name] [--csv file] [--seed n] [--scratch true|false]
+ * [--scheduler true|false] [--large-threshold cost]
+ */
+public class LoadHarness {
+	
+	static final String CSV_HEADER = "label,concurrency,requests,seconds,throughput,"
+			+ "p50_ms,p95_ms,p99_ms,max_ms,gc_count,gc_ms,alloc_mb_per_s,"
+			+ "small_p99_ms,large_p99_ms";
+	
+	int[] sizes;
+	int[] weights;
+	int[] concurrencyLevels;
+	int numRequests;
+	int numWarmup;
+	int percentage;
+	boolean keywords;
+	boolean scratch;
+	boolean allocationSupported;
+	boolean scheduled;
+	long largeThreshold;
+	String label;
+	File csvFile;
+	
+	List<String> corpusSentences;
+	Random random;
+	
+	SentenceSegmenter segmenter;
+	SentencePreprocessor preprocessor;
+	ThreadLocal<DocumentSummarizer> summarizers;
+	ThreadLocal<KeywordExtractor> extractors;
+	SummaryScheduler scheduler;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param 	options		Map of option names to values.
+	 * @throws 	IOException	If the corpus cannot be read.
+	 */
+	public LoadHarness(Map<String, String> options) throws IOException {
+		parseSizes(get(options, "sizes", "2000:70,20000:25,200000:5"));
+		concurrencyLevels = parseInts(get(options, "concurrency", "1,2,4,8"));
+		numRequests = Integer.parseInt(get(options, "requests", "200"));
+		numWarmup = Integer.parseInt(get(options, "warmup", "50"));
+		percentage = Integer.parseInt(get(options, "percentage", "20"));
+		keywords = Boolean.parseBoolean(get(options, "keywords", "true"));
+		scratch = Boolean.parseBoolean(get(options, "scratch", "false"));
+		scheduled = Boolean.parseBoolean(get(options, "scheduler", "false"));
+		largeThreshold = Long.parseLong(get(options, "large-threshold",
+				Long.toString(SummaryScheduler.DEFAULT_LARGE_THRESHOLD)));
+		label = get(options, "label", "current");
+		csvFile = new File(get(options, "csv", "load-results.csv"));
+		random = new Random(Long.parseLong(get(options, "seed", "42")));
+		allocationSupported = isAllocationSupported(ManagementFactory.getThreadMXBean());
+		
+		if (options.containsKey("corpus"))
+			corpusSentences = readCorpus(new File(options.get("corpus")));
+		
+		// Each worker thread gets its own summarizer and extractor,
+		// since the algorithms rebuild their models in place.
+		segmenter = new SentenceSegmenter();
+		preprocessor = new SentencePreprocessor();
+		summarizers = new ThreadLocal<DocumentSummarizer>() {
+			protected DocumentSummarizer initialValue() {
+				MeadAlgorithm mead = new MeadAlgorithm();
+				mead.setScratchArenas(scratch);
+				return new DocumentSummarizer(segmenter, preprocessor, mead);
+			}
+		};
+		extractors = new ThreadLocal<KeywordExtractor>() {
+			protected KeywordExtractor initialValue() {
+				HITSAlgorithm hits = new HITSAlgorithm();
+				hits.setScratchArenas(scratch);
+				return new KeywordExtractor(segmenter, preprocessor, hits);
+			}
+		};
+	}
+	
+	/**
+	 * Runs the warm-up and every concurrency level.
+	 * 
+	 * @throws 	Exception	If a request fails.
+	 */
+	public void run() throws Exception {
+		List<String> documents = makeDocuments(numRequests);
+		
+		// Queues hold every request of a level,
+		// so no client is turned away.
+		if (scheduled) {
+			scheduler = new SummaryScheduler(segmenter, preprocessor, largeThreshold,
+					Math.max(1, Runtime.getRuntime().availableProcessors() - 1), numRequests,
+					1, numRequests, Math.max(1, Runtime.getRuntime().availableProcessors() / 4));
+		}
+		
+		System.out.println("Warming up with " + numWarmup + " requests");
+		runLevel(makeDocuments(numWarmup), 1);
+		
+		boolean newFile = !csvFile.exists() || csvFile.length() == 0;
+		PrintWriter csv = new PrintWriter(new FileWriter(csvFile, true));
+		try {
+			if (newFile)
+				csv.println(CSV_HEADER);
+			
+			System.out.println(CSV_HEADER);
+			for (int concurrency : concurrencyLevels) {
+				String row = runLevel(documents, concurrency);
+				System.out.println(row);
+				csv.println(row);
+				csv.flush();
+			}
+		} finally {
+			csv.close();
+			if (scheduler != null)
+				scheduler.shutdown();
+		}
+	}
+	
+	/**
+	 * Runs all documents at one concurrency level.
+	 * 
+	 * @param 	documents	Documents to summarize.
+	 * @param 	concurrency	Number of concurrent workers.
+	 * @return	CSV row with the results.
+	 * @throws 	Exception	If a request fails.
+	 */
+	private String runLevel(List<String> documents, int concurrency) throws Exception {
+		final long[] latencies = new long[documents.size()];
+		final boolean[] large = new boolean[documents.size()];
+		final AtomicLong allocated = new AtomicLong();
+		final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int i=0; i<documents.size(); i++) {
+			final int index = i;
+			final String text = documents.get(i);
+			large[i] = SummaryScheduler.estimateCost(text) >= largeThreshold;
+			
+			tasks.add(new Callable<Void>() {
+				public Void call() throws Exception {
+					long bytesBefore = allocatedBytes(threads);
+					long start = System.nanoTime();
+					
+					if (scheduled) {
+						scheduler.submit(text, percentage).get();
+					} else {
+						String summary = summarizers.get().summarize(text, percentage);
+						if (keywords)
+							extractors.get().extract(summary);
+					}
+					
+					latencies[index] = System.nanoTime() - start;
+					allocated.addAndGet(allocatedBytes(threads) - bytesBefore);
+					return null;
+				}
+			});
+		}
+		
+		long gcCountBefore = gcCount();
+		long gcTimeBefore = gcTime();
+		long start = System.nanoTime();
+		
+		ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+		try {
+			for (Future<Void> future : executor.invokeAll(tasks)) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+		
+		double seconds = (System.nanoTime() - start) / 1e9;
+		long gcCount = gcCount() - gcCountBefore;
+		long gcTime = gcTime() - gcTimeBefore;
+		
+		String smallP99 = classPercentile(latencies, large, false, 99);
+		String largeP99 = classPercentile(latencies, large, true, 99);
+		Arrays.sort(latencies);
+		
+		// Client threads of the scheduler only wait, so
+		// their allocation says nothing about the work.
+		String allocationRate = (allocationSupported && !scheduled)
+				? String.format(Locale.ROOT, "%.1f", allocated.get() / 1e6 / seconds) : "n/a";
+		
+		return String.format(Locale.ROOT, "%s,%d,%d,%.3f,%.2f,%.2f,%.2f,%.2f,%.2f,%d,%d,%s,%s,%s",
+				label, concurrency, latencies.length, seconds,
+				latencies.length / seconds,
+				percentile(latencies, 50), percentile(latencies, 95),
+				percentile(latencies, 99), latencies[latencies.length-1] / 1e6,
+				gcCount, gcTime, allocationRate, smallP99, largeP99);
+	}
+	
+	/**
+	 * Gets a latency percentile of the small or the large requests.
+	 * 
+	 * @param 	latencies	Latencies in nanoseconds, in request order.
+	 * @param 	large		Whether each request is large.
+	 * @param 	ofLarge		True for the large requests, false for the small.
+	 * @param 	percentile	Percentile, 0 to 100.
+	 * @return	Latency in milliseconds, or n/a if there are no such requests.
+	 */
+	private static String classPercentile(long[] latencies, boolean[] large, boolean ofLarge,
+			int percentile) {
+		
+		int count = 0;
+		long[] selected = new long[latencies.length];
+		for (int i=0; i<latencies.length; i++) {
+			if (large[i] == ofLarge)
+				selected[count++] = latencies[i];
+		}
+		
+		if (count == 0)
+			return "n/a";
+		
+		selected = Arrays.copyOf(selected, count);
+		Arrays.sort(selected);
+		
+		return String.format(Locale.ROOT, "%.2f", percentile(selected, percentile));
+	}
+	
+	/**
+	 * Gets a latency percentile from sorted latencies.
+	 * 
+	 * @param 	sorted		Sorted latencies in nanoseconds.
+	 * @param 	percentile	Percentile, 0 to 100.
+	 * @return	Latency in milliseconds.
+	 */
+	private static double percentile(long[] sorted, int percentile) {
+		int index = (int) Math.ceil(sorted.length * percentile / 100.0) - 1;
+		return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+	}
+	
+	/**
+	 * Checks whether the JVM reports the bytes allocated by each thread.
+	 * 
+	 * @param 	threads		ThreadMXBean instance.
+	 * @return	True if per-thread allocation is supported and enabled.
+	 */
+	private static boolean isAllocationSupported(ThreadMXBean threads) {
+		if (!(threads instanceof com.sun.management.ThreadMXBean))
+			return false;
+		
+		com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+		return sunThreads.isThreadAllocatedMemorySupported()
+				&& sunThreads.isThreadAllocatedMemoryEnabled();
+	}
+	
+	/**
+	 * Gets the bytes allocated so far by the current thread,
+	 * or 0 if the JVM does not report it.
+	 * 
+	 * @param 	threads		ThreadMXBean instance.
+	 * @return	Allocated bytes.
+	 */
+	private long allocatedBytes(ThreadMXBean threads) {
+		if (!allocationSupported)
+			return 0;
+		
+		return ((com.sun.management.ThreadMXBean) threads)
+				.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+	
+	/**
+	 * Gets the total number of collections of all collectors.
+	 * 
+	 * @return	Collection count.
+	 */
+	private static long gcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, gc.getCollectionCount());
+		}
+		return count;
+	}
+	
+	/**
+	 * Gets the total collection time of all collectors.
+	 * 
+	 * @return	Collection time in milliseconds.
+	 */
+	private static long gcTime() {
+		long time = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			time += Math.max(0, gc.getCollectionTime());
+		}
+		return time;
+	}
+	
+	/**
+	 * Makes documents with sizes drawn from the configured mix.
+	 * 
+	 * @param 	count	Number of documents.
+	 * @return	List of document strings.
+	 */
+	private List<String> makeDocuments(int count) {
+		int totalWeight = 0;
+		for (int weight : weights) {
+			totalWeight += weight;
+		}
+		
+		List<String> documents = new ArrayList<String>();
+		for (int i=0; i<count; i++) {
+			int pick = random.nextInt(totalWeight);
+			int s = 0;
+			while (pick >= weights[s]) {
+				pick -= weights[s];
+				s++;
+			}
+			documents.add(makeDocument(sizes[s]));
+		}
+		
+		return documents;
+	}
+	
+	/**
+	 * Makes a document of roughly the given number of characters
+	 * from corpus sentences, or from synthetic sentences whose word
+	 * frequencies follow a Zipf-like distribution if there is no corpus.
+	 * 
+	 * @param 	chars	Target number of characters.
+	 * @return	Document string.
+	 */
+	private String makeDocument(int chars) {
+		StringBuilder builder = new StringBuilder(chars + 200);
+		
+		while (builder.length() < chars) {
+			if (corpusSentences != null) {
+				builder.append(corpusSentences.get(random.nextInt(corpusSentences.size())));
+			}
+			else {
+				int numWords = 8 + random.nextInt(18);
+				for (int w=0; w<numWords; w++) {
+					int rank = (int) Math.exp(random.nextDouble() * Math.log(5000));
+					builder.append(w == 0 ? "Word" : " word").append(rank);
+				}
+				builder.append('.');
+			}
+			builder.append(' ');
+		}
+		
+		return builder.toString();
+	}
+	
+	/**
+	 * Reads the sentences of every text file in a directory.
+	 * 
+	 * @param 	directory	Corpus directory.
+	 * @return	List of sentence strings.
+	 * @throws 	IOException
+	 */
+	private List<String> readCorpus(File directory) throws IOException {
+		List<String> sentences = new ArrayList<String>();
+		File[] files = directory.listFiles();
+		
+		if (files != null) {
+			for (File file : files) {
+				if (file.isFile() && file.getName().endsWith(".txt")) {
+					String text = new String(Files.readAllBytes(file.toPath()),
+							Charset.forName("UTF-8"));
+					for (String sentence : text.split("(?<=[.!?])\\s+")) {
+						if (sentence.trim().length() > 0)
+							sentences.add(sentence.trim());
+					}
+				}
+			}
+		}
+		
+		if (sentences.isEmpty())
+			throw new IOException("No sentences found in corpus " + directory);
+		
+		return sentences;
+	}
+	
+	/**
+	 * Parses the document size mix.
+	 * 
+	 * @param 	spec	Comma-separated chars:weight pairs.
+	 */
+	private void parseSizes(String spec) {
+		String[] parts = spec.split(",");
+		sizes = new int[parts.length];
+		weights = new int[parts.length];
+		
+		for (int i=0; i<parts.length; i++) {
+			String[] pair = parts[i].split(":");
+			sizes[i] = Integer.parseInt(pair[0].trim());
+			weights[i] = (pair.length > 1) ? Integer.parseInt(pair[1].trim()) : 1;
+		}
+	}
+	
+	/**
+	 * Parses a comma-separated list of integers.
+	 * 
+	 * @param 	spec	Comma-separated integers.
+	 * @return	Array of integers.
+	 */
+	private static int[] parseInts(String spec) {
+		String[] parts = spec.split(",");
+		int[] values = new int[parts.length];
+		
+		for (int i=0; i<parts.length; i++) {
+			values[i] = Integer.parseInt(parts[i].trim());
+		}
+		
+		return values;
+	}
+	
+	/**
+	 * Gets an option value or its default.
+	 * 
+	 * @param 	options			Map of option names to values.
+	 * @param 	name			Option name.
+	 * @param 	defaultValue	Value if the option is absent.
+	 * @return	Option value.
+	 */
+	private static String get(Map<String, String> options, String name, String defaultValue) {
+		String value = options.get(name);
+		return (value == null) ? defaultValue : value;
+	}
+	
+	/**
+	 * Entry point for the load harness.
+	 * 
+	 * @param 	args	Command line arguments as --name value pairs.
+	 * @throws 	Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = new HashMap<String, String>();
+		
+		for (int i=0; i<args.length; i+=2) {
+			if (!args[i].startsWith("--")) {
+				System.err.println("Unexpected argument: " + args[i]);
+				System.exit(1);
+			}
+			if (i + 1 == args.length) {
+				System.err.println("Missing value for " + args[i]);
+				System.exit(1);
+			}
+			options.put(args[i].substring(2), args[i+1]);
+		}
+		
+		new LoadHarness(options).run();
+	}
+}
@@ -0,0 +1,423 @@
+package docsum.bench;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import docsum.algorithm.HITSAlgorithm;
+import docsum.algorithm.IncrementalMeadAlgorithm;
+import docsum.algorithm.KeywordAlgorithm;
+import docsum.algorithm.MeadAlgorithm;
+import docsum.algorithm.SummarizationAlgorithm;
+import docsum.bench.reference.ReferenceHITSAlgorithm;
+import docsum.bench.reference.ReferenceMeadAlgorithm;
+import docsum.bench.reference.ReferenceSentencePreprocessor;
+import docsum.summarizer.SentencePreprocessor;
+import docsum.summarizer.SentenceSegmenter;
+
+/**
+ * Differential test of optimized engines against the reference code
+ * over a local corpus. Each document is segmented once and run through
+ * the reference and every candidate engine, and the outputs compared:
+ * <ul>
+ * <li>preprocessors by the tokens they keep in each sentence;</li>
+ * <li>summarization algorithms by their selections. Where selections
+ * differ, the reference MEAD score of each sentence chosen only by the
+ * candidate is compared with the lowest score the reference selected,
+ * and differences within the tolerance are counted as ties;</li>
+ * <li>keyword algorithms by their rankings. Where a rank holds a
+ * different word, the reference HITS scores of the two words are
+ * compared, and differences within the tolerance are counted as ties.</li>
+ * </ul>
+ * Summarization and keyword engines are given the reference
+ * preprocessor's output, so each engine is checked on its own.
+ * The speedup of each candidate is the best of several timed runs
+ * of the reference divided by the best of its own.
+ * <p>
+ * The reference engines are frozen copies of the original MeadAlgorithm,
+ * HITSAlgorithm and SentencePreprocessor in docsum.bench.reference, so
+ * changes to the engines in use are checked too. Built-in candidates
+ * are the SentencePreprocessor, the sequential, scratch-arena, parallel
+ * and incremental MEAD paths and the plain and scratch-arena HITS paths.
+ * Further candidates are named by class; they must have a public
+ * no-argument constructor and implement SummarizationAlgorithm or
+ * KeywordAlgorithm, or extend SentencePreprocessor.
+ * <p>
+ * Usage: VerificationHarness --corpus dir [--percentage n] [--tolerance x]
+ * [--repeat n] [--engines class,...] [--report file]
+ * <p>
+ * Each row is marked ok, tie if every difference is within the
+ * tolerance, or MISMATCH. The exit status is 1 if there is any mismatch.
+ */
+public class VerificationHarness {
+	
+	static final String REPORT_HEADER = "document,sentences,engine,status,"
+			+ "differences,max_delta,reference_ms,engine_ms,speedup";
+	
+	int percentage;
+	double tolerance;
+	int repeat;
+	File corpus;
+	File reportFile;
+	
+	SentenceSegmenter segmenter;
+	ReferenceSentencePreprocessor referencePreprocessor;
+	ReferenceMeadAlgorithm referenceMead;
+	ReferenceHITSAlgorithm referenceHits;
+	
+	Map<String, SentencePreprocessor> preprocessors;
+	Map<String, SummarizationAlgorithm> summarizers;
+	Map<String, KeywordAlgorithm> keywordAlgorithms;
+	
+	int numComparisons;
+	int numFailures;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param 	options		Map of option names to values.
+	 * @throws 	Exception	If a candidate engine cannot be created.
+	 */
+	public VerificationHarness(Map<String, String> options) throws Exception {
+		corpus = new File(get(options, "corpus", "corpus"));
+		percentage = Integer.parseInt(get(options, "percentage", "20"));
+		tolerance = Double.parseDouble(get(options, "tolerance", "1e-9"));
+		repeat = Integer.parseInt(get(options, "repeat", "3"));
+		reportFile = new File(get(options, "report", "verification-report.csv"));
+		
+		segmenter = new SentenceSegmenter();
+		referencePreprocessor = new ReferenceSentencePreprocessor();
+		referenceMead = new ReferenceMeadAlgorithm();
+		referenceHits = new ReferenceHITSAlgorithm();
+		
+		preprocessors = new LinkedHashMap<String, SentencePreprocessor>();
+		summarizers = new LinkedHashMap<String, SummarizationAlgorithm>();
+		keywordAlgorithms = new LinkedHashMap<String, KeywordAlgorithm>();
+		
+		preprocessors.put("preprocessor", new SentencePreprocessor());
+		
+		MeadAlgorithm mead = new MeadAlgorithm();
+		mead.setParallelThreshold(Integer.MAX_VALUE);
+		summarizers.put("mead", mead);
+		
+		MeadAlgorithm arenaMead = new MeadAlgorithm();
+		arenaMead.setScratchArenas(true);
+		summarizers.put("mead-arena", arenaMead);
+		
+		MeadAlgorithm parallelMead = new MeadAlgorithm();
+		parallelMead.setParallelThreshold(1);
+		summarizers.put("mead-parallel", parallelMead);
+		
+		summarizers.put("mead-incremental", new IncrementalMeadAlgorithm());
+		
+		keywordAlgorithms.put("hits", new HITSAlgorithm());
+		
+		HITSAlgorithm arenaHits = new HITSAlgorithm();
+		arenaHits.setScratchArenas(true);
+		keywordAlgorithms.put("hits-arena", arenaHits);
+		
+		if (options.containsKey("engines")) {
+			for (String name : options.get("engines").split(",")) {
+				addEngine(name.trim());
+			}
+		}
+	}
+	
+	/**
+	 * Adds a candidate engine by class name.
+	 * 
+	 * @param 	className	Fully qualified class name.
+	 * @throws 	Exception	If the class cannot be instantiated or is not an engine.
+	 */
+	private void addEngine(String className) throws Exception {
+		Object engine = Class.forName(className).getConstructor().newInstance();
+		String name = engine.getClass().getSimpleName();
+		
+		if (engine instanceof SentencePreprocessor)
+			preprocessors.put(name, (SentencePreprocessor) engine);
+		else if (engine instanceof SummarizationAlgorithm)
+			summarizers.put(name, (SummarizationAlgorithm) engine);
+		else if (engine instanceof KeywordAlgorithm)
+			keywordAlgorithms.put(name, (KeywordAlgorithm) engine);
+		else
+			throw new IllegalArgumentException(className + " is not an engine");
+	}
+	
+	/**
+	 * Compares every candidate on every document in the corpus,
+	 * printing and saving one report row per comparison.
+	 * 
+	 * @return	True if all candidates agreed with the reference.
+	 * @throws 	IOException		If the corpus or report cannot be accessed.
+	 */
+	public boolean run() throws IOException {
+		File[] files = corpus.listFiles();
+		if (files == null)
+			throw new IOException("Cannot read corpus " + corpus);
+		Arrays.sort(files);
+		
+		PrintWriter report = new PrintWriter(new FileWriter(reportFile));
+		try {
+			report.println(REPORT_HEADER);
+			System.out.println(REPORT_HEADER);
+			
+			for (File file : files) {
+				if (file.isFile() && file.getName().endsWith(".txt")) {
+					String text = new String(Files.readAllBytes(file.toPath()),
+							Charset.forName("UTF-8"));
+					
+					for (String row : verify(file.getName(), text)) {
+						report.println(row);
+						System.out.println(row);
+					}
+					report.flush();
+				}
+			}
+		} finally {
+			report.close();
+		}
+		
+		System.out.println(String.format(Locale.ROOT, "%d comparisons, %d failed",
+				numComparisons, numFailures));
+		
+		return numFailures == 0;
+	}
+	
+	/**
+	 * Compares every candidate with the reference on one document.
+	 * 
+	 * @param 	name	Document name for the report.
+	 * @param 	text	Document text.
+	 * @return	Report rows.
+	 */
+	private List<String> verify(String name, String text) {
+		List<String> rows = new ArrayList<String>();
+		final List<List<String>> segmented = segmenter.segment(text);
+		int numSentences = segmented.size();
+		
+		final List<List<String>> processed = referencePreprocessor.process(segmented);
+		long referenceNanos = time(new Runnable() {
+			public void run() {
+				referencePreprocessor.process(segmented);
+			}
+		});
+		
+		for (Map.Entry<String, SentencePreprocessor> entry : preprocessors.entrySet()) {
+			final SentencePreprocessor preprocessor = entry.getValue();
+			List<List<String>> result = preprocessor.process(segmented);
+			long nanos = time(new Runnable() {
+				public void run() {
+					preprocessor.process(segmented);
+				}
+			});
+			
+			int differences = 0;
+			for (int i=0; i<numSentences; i++) {
+				if (i >= result.size() || !processed.get(i).equals(result.get(i)))
+					differences++;
+			}
+			differences += Math.max(0, result.size() - numSentences);
+			
+			rows.add(row(name, numSentences, entry.getKey(), differences == 0,
+					differences, 0.0, referenceNanos, nanos));
+		}
+		
+		if (processed.isEmpty())
+			return rows;
+		
+		// Selections.
+		List<Integer> reference = referenceMead.getSelection(processed, percentage);
+		referenceNanos = time(new Runnable() {
+			public void run() {
+				referenceMead.getSelection(processed, percentage);
+			}
+		});
+		double[] scores = referenceMead.getSentenceScores(processed);
+		
+		for (Map.Entry<String, SummarizationAlgorithm> entry : summarizers.entrySet()) {
+			final SummarizationAlgorithm algorithm = entry.getValue();
+			List<Integer> selection = select(algorithm, processed);
+			long nanos = time(new Runnable() {
+				public void run() {
+					select(algorithm, processed);
+				}
+			});
+			
+			// Only candidates picked instead of a reference sentence
+			// count, by how far they score below the reference's weakest.
+			double weakest = Double.POSITIVE_INFINITY;
+			for (int index : reference) {
+				weakest = Math.min(weakest, scores[index]);
+			}
+			
+			int differences = 0;
+			double maxDelta = 0.0;
+			for (int index : selection) {
+				if (!reference.contains(index)) {
+					differences++;
+					maxDelta = Math.max(maxDelta, Math.abs(weakest - scores[index]));
+				}
+			}
+			differences += Math.abs(reference.size() - selection.size());
+			
+			boolean agrees = (reference.size() == selection.size()) && maxDelta <= tolerance;
+			rows.add(row(name, numSentences, entry.getKey(), agrees,
+					differences, maxDelta, referenceNanos, nanos));
+		}
+		
+		// Keyword ranks.
+		List<String> keywords = referenceHits.getKeywords(processed);
+		Map<String, Double> keywordScores = referenceHits.getKeywordScores(processed);
+		referenceNanos = time(new Runnable() {
+			public void run() {
+				referenceHits.getKeywords(processed);
+			}
+		});
+		
+		for (Map.Entry<String, KeywordAlgorithm> entry : keywordAlgorithms.entrySet()) {
+			final KeywordAlgorithm algorithm = entry.getValue();
+			List<String> result = algorithm.getKeywords(processed);
+			long nanos = time(new Runnable() {
+				public void run() {
+					algorithm.getKeywords(processed);
+				}
+			});
+			
+			// A rank holding another word counts by how far apart the
+			// reference scores of the two words are, so that words
+			// swapped on a near-tie are within the tolerance. Words
+			// the reference does not know are infinitely far apart.
+			int differences = 0;
+			double maxDelta = 0.0;
+			for (int rank=0; rank<keywords.size() && rank<result.size(); rank++) {
+				String expected = keywords.get(rank);
+				String actual = result.get(rank);
+				if (!expected.equals(actual)) {
+					differences++;
+					Double score = keywordScores.get(actual);
+					double delta = (score == null) ? Double.POSITIVE_INFINITY
+							: Math.abs(keywordScores.get(expected) - score);
+					maxDelta = Math.max(maxDelta, delta);
+				}
+			}
+			differences += Math.abs(result.size() - keywords.size());
+			
+			boolean agrees = (keywords.size() == result.size()) && maxDelta <= tolerance;
+			rows.add(row(name, numSentences, entry.getKey(), agrees,
+					differences, maxDelta, referenceNanos, nanos));
+		}
+		
+		return rows;
+	}
+	
+	/**
+	 * Runs a summarization algorithm. The incremental algorithm
+	 * is reset first, so that it does not return its cached
+	 * selection from the previous run of the same document.
+	 * 
+	 * @param 	algorithm	SummarizationAlgorithm instance.
+	 * @param 	sentences	List of tokenized sentences.
+	 * @return	List of indices of sentences included in summary.
+	 */
+	private List<Integer> select(SummarizationAlgorithm algorithm, List<List<String>> sentences) {
+		if (algorithm instanceof IncrementalMeadAlgorithm)
+			((IncrementalMeadAlgorithm) algorithm).reset();
+		
+		return algorithm.getSelection(sentences, percentage);
+	}
+	
+	/**
+	 * Times a task as the best of the configured number of runs.
+	 * 
+	 * @param 	task	Task to time.
+	 * @return	Shortest run in nanoseconds.
+	 */
+	private long time(Runnable task) {
+		long best = Long.MAX_VALUE;
+		
+		for (int i=0; i<repeat; i++) {
+			long start = System.nanoTime();
+			task.run();
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		
+		return best;
+	}
+	
+	/**
+	 * Formats a report row and counts the comparison.
+	 * 
+	 * @param 	name			Document name.
+	 * @param 	numSentences	Number of sentences in the document.
+	 * @param 	engine			Candidate engine name.
+	 * @param 	agrees			Whether the candidate agrees with the reference,
+	 * 							exactly or up to ties within the tolerance.
+	 * @param 	differences		Number of differing sentences, selections or ranks.
+	 * @param 	maxDelta		Largest score delta.
+	 * @param 	referenceNanos	Reference time in nanoseconds.
+	 * @param 	engineNanos		Candidate time in nanoseconds.
+	 * @return	CSV row.
+	 */
+	private String row(String name, int numSentences, String engine, boolean agrees,
+			int differences, double maxDelta, long referenceNanos, long engineNanos) {
+		
+		numComparisons++;
+		if (!agrees)
+			numFailures++;
+		
+		String status = !agrees ? "MISMATCH" : (differences > 0) ? "tie" : "ok";
+		
+		return String.format(Locale.ROOT, "%s,%d,%s,%s,%d,%.3g,%.3f,%.3f,%.2f",
+				name, numSentences, engine, status,
+				differences, maxDelta, referenceNanos / 1e6, engineNanos / 1e6,
+				referenceNanos / (double) Math.max(1, engineNanos));
+	}
+	
+	/**
+	 * Gets an option value or its default.
+	 * 
+	 * @param 	options			Map of option names to values.
+	 * @param 	name			Option name.
+	 * @param 	defaultValue	Value if the option is absent.
+	 * @return	Option value.
+	 */
+	private static String get(Map<String, String> options, String name, String defaultValue) {
+		String value = options.get(name);
+		return (value == null) ? defaultValue : value;
+	}
+	
+	/**
+	 * Entry point for the verification harness.
+	 * 
+	 * @param 	args	Command line arguments as --name value pairs.
+	 * @throws 	Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = new HashMap<String, String>();
+		
+		for (int i=0; i<args.length; i+=2) {
+			if (!args[i].startsWith("--")) {
+				System.err.println("Unexpected argument: " + args[i]);
+				System.exit(1);
+			}
+			if (i + 1 == args.length) {
+				System.err.println("Missing value for " + args[i]);
+				System.exit(1);
+			}
+			options.put(args[i].substring(2), args[i+1]);
+		}
+		
+		boolean passed = new VerificationHarness(options).run();
+		System.exit(passed ? 0 : 1);
+	}
+}
@@ -0,0 +1,17 @@
+package docsum.bench.reference;
+
+/**
+ * Convenience class for sorting arrays by
+ * a floating point value associated with each element.
+ * Frozen copy of the original, for the reference engines.
+ */
+class IndexValuePair implements Comparable<IndexValuePair>{
+
+	double value;
+	int index;
+	
+	// Comparison takes place on value.
+	public int compareTo(IndexValuePair c) {
+		return Double.compare(this.value, c.value);
+	}
+}
\ No newline at end of file
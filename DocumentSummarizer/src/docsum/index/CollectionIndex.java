@@ -0,0 +1,648 @@
+package docsum.index;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Memory-mapped index of a document collection, written by
+ * CollectionIndexer, that assembles summaries of search hits
+ * without tokenizing any document.
+ * <p>
+ * The index directory holds:
+ * <ul>
+ * <li>a header with the counts and the MEAD feature weights;</li>
+ * <li>a document table with the path, first sentence, number of
+ * sentences and highest MEAD score of each document, and the size
+ * and modification time of its source file when it was indexed;</li>
+ * <li>a sentence table with the byte range of each sentence in
+ * its source file and the value of each MEAD feature;</li>
+ * <li>a lexicon of terms in sorted order, each pointing at its
+ * postings, which are varint-encoded gaps between sentence ids
+ * and the count of the term in each sentence.</li>
+ * </ul>
+ * Sentence ids run across the collection, and the document of a
+ * sentence is found by binary search of the document table.
+ * A search reads the postings of the query terms, ranks documents
+ * by summed tf * idf, and picks the summary sentences of each hit
+ * by relevance mixed with the stored MEAD score. Only the records
+ * of matching sentences are touched, and their text is read from
+ * the source files at the stored byte offsets, after checking that
+ * each file is unchanged since it was indexed. Postings are decoded
+ * one at a time as the merge reaches them, so a search holds one
+ * cursor per query term however common the terms are.
+ */
+public class CollectionIndex {
+	
+	static final int MAGIC = 0x44534349;
+	static final int VERSION = 2;
+	static final double DEFAULT_QUERY_WEIGHT = 0.7;
+	static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	static final String META_FILE = "index.meta";
+	static final String DOCUMENTS_FILE = "documents.dat";
+	static final String PATHS_FILE = "paths.dat";
+	static final String SENTENCES_FILE = "sentences.dat";
+	static final String LEXICON_FILE = "lexicon.dat";
+	static final String TERMS_FILE = "terms.dat";
+	static final String POSTINGS_FILE = "postings.dat";
+	
+	static final int DOCUMENT_RECORD = 40;
+	static final int LEXICON_RECORD = 24;
+	
+	int numDocuments;
+	int numSentences;
+	int numTerms;
+	double[] featureWeights;
+	int sentenceRecord;
+	double queryWeight;
+	
+	MappedFile documents;
+	MappedFile paths;
+	MappedFile sentences;
+	MappedFile lexicon;
+	MappedFile terms;
+	MappedFile postings;
+	
+	/**
+	 * Constructor. Indexes are obtained with open.
+	 */
+	CollectionIndex() {
+		queryWeight = DEFAULT_QUERY_WEIGHT;
+	}
+	
+	/**
+	 * Opens an index written by CollectionIndexer.
+	 * 
+	 * @param 	indexDir	Index directory.
+	 * @return	CollectionIndex instance.
+	 * @throws 	IOException		If the directory does not hold an index.
+	 */
+	public static CollectionIndex open(File indexDir) throws IOException {
+		CollectionIndex index = new CollectionIndex();
+		
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(new File(indexDir, META_FILE))));
+		try {
+			if (in.readInt() != MAGIC)
+				throw new IOException("Not a collection index");
+			int version = in.readUnsignedByte();
+			if (version != VERSION)
+				throw new IOException("Unsupported collection index version " + version);
+			
+			index.numDocuments = in.readInt();
+			index.numSentences = in.readInt();
+			index.numTerms = in.readInt();
+			index.featureWeights = new double[in.readInt()];
+			for (int f=0; f<index.featureWeights.length; f++) {
+				index.featureWeights[f] = in.readDouble();
+			}
+		} finally {
+			in.close();
+		}
+		
+		index.sentenceRecord = 8 + 4 * index.featureWeights.length;
+		index.documents = new MappedFile(new File(indexDir, DOCUMENTS_FILE));
+		index.paths = new MappedFile(new File(indexDir, PATHS_FILE));
+		index.sentences = new MappedFile(new File(indexDir, SENTENCES_FILE));
+		index.lexicon = new MappedFile(new File(indexDir, LEXICON_FILE));
+		index.terms = new MappedFile(new File(indexDir, TERMS_FILE));
+		index.postings = new MappedFile(new File(indexDir, POSTINGS_FILE));
+		
+		return index;
+	}
+	
+	/**
+	 * Sets the weight of query relevance against the MEAD score
+	 * when picking the summary sentences of a hit.
+	 * 
+	 * @param 	queryWeight		Weight between 0 and 1.
+	 */
+	public void setQueryWeight(double queryWeight) {
+		this.queryWeight = queryWeight;
+	}
+	
+	/**
+	 * Gets the number of documents in the index.
+	 * 
+	 * @return	Number of documents.
+	 */
+	public int getNumDocuments() {
+		return numDocuments;
+	}
+	
+	/**
+	 * Gets the number of sentences in the index.
+	 * 
+	 * @return	Number of sentences.
+	 */
+	public int getNumSentences() {
+		return numSentences;
+	}
+	
+	/**
+	 * Gets the number of distinct terms in the index.
+	 * 
+	 * @return	Number of terms.
+	 */
+	public int getNumTerms() {
+		return numTerms;
+	}
+	
+	/**
+	 * Gets the path of the source file of a document.
+	 * 
+	 * @param 	document	Document id.
+	 * @return	Absolute path.
+	 */
+	public String getPath(int document) {
+		long record = (long) document * DOCUMENT_RECORD;
+		byte[] bytes = new byte[documents.getInt(record + 8)];
+		paths.getBytes(documents.getLong(record), bytes);
+		
+		return new String(bytes, UTF8);
+	}
+	
+	/**
+	 * Gets the number of sentences in a document.
+	 * 
+	 * @param 	document	Document id.
+	 * @return	Number of sentences.
+	 */
+	public int getSentenceCount(int document) {
+		return documents.getInt((long) document * DOCUMENT_RECORD + 16);
+	}
+	
+	/**
+	 * Gets the number of sentences in the collection containing a term.
+	 * 
+	 * @param 	term	Preprocessed term.
+	 * @return	Sentence frequency, 0 if the term is not indexed.
+	 */
+	public int getSentenceFrequency(String term) {
+		int entry = findTerm(term);
+		return (entry < 0) ? 0 : lexicon.getInt((long) entry * LEXICON_RECORD + 20);
+	}
+	
+	/**
+	 * Gets the MEAD score of a sentence, the weighted
+	 * sum of its stored feature values.
+	 * 
+	 * @param 	document	Document id.
+	 * @param 	sentence	Sentence index in the document.
+	 * @return	MEAD score.
+	 */
+	public double getSentenceScore(int document, int sentence) {
+		return getScore(getFirstSentence(document) + sentence);
+	}
+	
+	/**
+	 * Generates the generic MEAD summary of a document from the
+	 * stored scores, reading only the selected sentences.
+	 * 
+	 * @param 	document	Document id.
+	 * @param 	percentage	Percentage of sentences to include in summary.
+	 * @return	Summary string.
+	 * @throws 	IOException		If the source file cannot be read.
+	 */
+	public String getSummary(int document, int percentage) throws IOException {
+		int first = getFirstSentence(document);
+		int count = getSentenceCount(document);
+		if (count == 0)
+			return "";
+		
+		int[] candidates = new int[count];
+		double[] scores = new double[count];
+		for (int i=0; i<count; i++) {
+			candidates[i] = i;
+			scores[i] = getScore(first + i);
+		}
+		
+		int summaryLength = Math.max(1, (int) (count * percentage / 100.0));
+		
+		return readSentences(document, select(candidates, scores, count, summaryLength));
+	}
+	
+	/**
+	 * Finds the documents that best match a query and summarizes each
+	 * from its sentences that contain a query term.
+	 * 
+	 * @param 	query					Preprocessed query terms.
+	 * @param 	maxDocuments			Number of documents to return.
+	 * @param 	sentencesPerDocument	Number of summary sentences per document.
+	 * @return	Hits in descending order of score.
+	 * @throws 	IOException		If a source file cannot be read.
+	 */
+	public List<SearchHit> search(List<String> query, int maxDocuments,
+			int sentencesPerDocument) throws IOException {
+		
+		// Open a cursor on the postings of each distinct query term.
+		List<PostingsCursor> cursors = new ArrayList<PostingsCursor>();
+		for (String term : new LinkedHashSet<String>(query)) {
+			int entry = findTerm(term);
+			if (entry < 0)
+				continue;
+			
+			long record = (long) entry * LEXICON_RECORD;
+			int frequency = lexicon.getInt(record + 20);
+			PostingsCursor cursor = new PostingsCursor(postings, lexicon.getLong(record + 8),
+					frequency, Math.log10(numSentences / (double) frequency));
+			cursor.next();
+			cursors.add(cursor);
+		}
+		
+		// Merge the postings in sentence order, gathering the matching
+		// sentences of one document at a time, and keep the best
+		// documents in a heap with the weakest on top.
+		Comparator<SearchHit> byScore = new Comparator<SearchHit>() {
+			public int compare(SearchHit a, SearchHit b) {
+				int c = Double.compare(a.score, b.score);
+				return (c != 0) ? c : b.document - a.document;
+			}
+		};
+		PriorityQueue<SearchHit> best = new PriorityQueue<SearchHit>(Math.max(1, maxDocuments), byScore);
+		
+		int numTerms = cursors.size();
+		int document = -1;
+		int documentEnd = 0;
+		int numMatches = 0;
+		int[] matches = new int[16];
+		double[] relevance = new double[16];
+		
+		while (maxDocuments > 0) {
+			int sentence = Integer.MAX_VALUE;
+			for (int t=0; t<numTerms; t++) {
+				if (cursors.get(t).id < sentence)
+					sentence = cursors.get(t).id;
+			}
+			
+			if (sentence == Integer.MAX_VALUE || sentence >= documentEnd) {
+				if (numMatches > 0)
+					offer(best, maxDocuments, document, matches, relevance, numMatches);
+				if (sentence == Integer.MAX_VALUE)
+					break;
+				
+				document = findDocument(sentence);
+				documentEnd = getFirstSentence(document) + getSentenceCount(document);
+				numMatches = 0;
+			}
+			
+			double value = 0.0;
+			for (int t=0; t<numTerms; t++) {
+				PostingsCursor cursor = cursors.get(t);
+				if (cursor.id == sentence) {
+					value += cursor.count * cursor.idf;
+					cursor.next();
+				}
+			}
+			
+			if (numMatches == matches.length) {
+				matches = Arrays.copyOf(matches, numMatches * 2);
+				relevance = Arrays.copyOf(relevance, numMatches * 2);
+			}
+			matches[numMatches] = sentence;
+			relevance[numMatches] = value;
+			numMatches++;
+		}
+		
+		List<SearchHit> hits = new ArrayList<SearchHit>(best);
+		Collections.sort(hits, Collections.reverseOrder(byScore));
+		
+		for (SearchHit hit : hits) {
+			summarizeHit(hit, sentencesPerDocument);
+		}
+		
+		return hits;
+	}
+	
+	/**
+	 * Reads sentences of a document from its source file.
+	 * 
+	 * @param 	document	Document id.
+	 * @param 	selection	Ascending sentence indices in the document.
+	 * @return	The sentences, concatenated.
+	 * @throws 	IOException		If the source file cannot be read
+	 * 							or has changed since it was indexed.
+	 */
+	public String readSentences(int document, List<Integer> selection) throws IOException {
+		int first = getFirstSentence(document);
+		long record = (long) document * DOCUMENT_RECORD;
+		String path = getPath(document);
+		StringBuilder stringBuilder = new StringBuilder();
+		
+		// The stored byte offsets only hold for the file as it was indexed.
+		RandomAccessFile source = new RandomAccessFile(path, "r");
+		try {
+			if (source.length() != documents.getLong(record + 24)
+					|| new File(path).lastModified() != documents.getLong(record + 32))
+				throw new IOException("Source file has changed since it was indexed: " + path);
+			
+			for (int index : selection) {
+				long sentence = (long) (first + index) * sentenceRecord;
+				byte[] bytes = new byte[sentences.getInt(sentence + 4)];
+				source.seek(sentences.getInt(sentence));
+				source.readFully(bytes);
+				stringBuilder.append(new String(bytes, UTF8));
+			}
+		} finally {
+			source.close();
+		}
+		
+		return stringBuilder.toString();
+	}
+	
+	/**
+	 * Adds a document to the heap of best hits if it scores
+	 * higher than the weakest hit kept so far.
+	 * 
+	 * @param 	best			Heap of best hits.
+	 * @param 	maxDocuments	Size of the heap.
+	 * @param 	document		Document id.
+	 * @param 	matches			Matching sentence ids.
+	 * @param 	relevance		Relevance of each matching sentence.
+	 * @param 	numMatches		Number of matching sentences.
+	 */
+	private void offer(PriorityQueue<SearchHit> best, int maxDocuments, int document,
+			int[] matches, double[] relevance, int numMatches) {
+		
+		double score = 0.0;
+		for (int i=0; i<numMatches; i++) {
+			score += relevance[i];
+		}
+		
+		SearchHit weakest = best.peek();
+		if (best.size() == maxDocuments && (score < weakest.score
+				|| (score == weakest.score && document > weakest.document)))
+			return;
+		
+		SearchHit hit = new SearchHit(document, score);
+		hit.matches = Arrays.copyOf(matches, numMatches);
+		hit.relevance = Arrays.copyOf(relevance, numMatches);
+		best.add(hit);
+		if (best.size() > maxDocuments)
+			best.poll();
+	}
+	
+	/**
+	 * Picks the summary sentences of a hit from its matching
+	 * sentences and reads them from the source file.
+	 * 
+	 * @param 	hit						Search hit.
+	 * @param 	sentencesPerDocument	Number of summary sentences.
+	 * @throws 	IOException		If the source file cannot be read.
+	 */
+	private void summarizeHit(SearchHit hit, int sentencesPerDocument) throws IOException {
+		int first = getFirstSentence(hit.document);
+		double maxScore = documents.getFloat((long) hit.document * DOCUMENT_RECORD + 20);
+		int numMatches = hit.matches.length;
+		
+		double maxRelevance = 0.0;
+		for (double value : hit.relevance) {
+			maxRelevance = Math.max(maxRelevance, value);
+		}
+		
+		int[] candidates = new int[numMatches];
+		double[] scores = new double[numMatches];
+		for (int i=0; i<numMatches; i++) {
+			candidates[i] = hit.matches[i] - first;
+			scores[i] = queryWeight * ((maxRelevance > 0.0) ? hit.relevance[i] / maxRelevance : 0.0)
+					+ (1.0 - queryWeight) * ((maxScore > 0.0) ? getScore(hit.matches[i]) / maxScore : 0.0);
+		}
+		
+		hit.path = getPath(hit.document);
+		hit.selection = select(candidates, scores, numMatches, sentencesPerDocument);
+		hit.summary = readSentences(hit.document, hit.selection);
+		hit.matches = null;
+		hit.relevance = null;
+	}
+	
+	/**
+	 * Selects the highest scoring candidates. Ties go to
+	 * the later sentence, as in MeadAlgorithm.
+	 * 
+	 * @param 	candidates		Sentence indices.
+	 * @param 	scores			Score of each candidate.
+	 * @param 	numCandidates	Number of candidates.
+	 * @param 	summaryLength	Number of sentences to select.
+	 * @return	Ascending indices of the selected sentences.
+	 */
+	private static List<Integer> select(final int[] candidates, final double[] scores,
+			int numCandidates, int summaryLength) {
+		
+		List<Integer> order = new ArrayList<Integer>(numCandidates);
+		for (int i=0; i<numCandidates; i++) {
+			order.add(i);
+		}
+		Collections.sort(order, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				int c = Double.compare(scores[b], scores[a]);
+				return (c != 0) ? c : candidates[b] - candidates[a];
+			}
+		});
+		
+		List<Integer> selection = new ArrayList<Integer>();
+		for (int i=0; i<summaryLength && i<numCandidates; i++) {
+			selection.add(candidates[order.get(i)]);
+		}
+		Collections.sort(selection);
+		
+		return selection;
+	}
+	
+	/**
+	 * Gets the MEAD score of a sentence from its stored features.
+	 * 
+	 * @param 	sentence	Collection-wide sentence id.
+	 * @return	MEAD score.
+	 */
+	private double getScore(int sentence) {
+		long record = (long) sentence * sentenceRecord;
+		double score = 0.0;
+		for (int f=0; f<featureWeights.length; f++) {
+			score += featureWeights[f] * sentences.getFloat(record + 8 + 4 * f);
+		}
+		
+		return score;
+	}
+	
+	/**
+	 * Gets the collection-wide id of the first sentence of a document.
+	 * 
+	 * @param 	document	Document id.
+	 * @return	Sentence id.
+	 */
+	private int getFirstSentence(int document) {
+		return documents.getInt((long) document * DOCUMENT_RECORD + 12);
+	}
+	
+	/**
+	 * Finds the document containing a sentence by binary
+	 * search over the first sentences of the documents.
+	 * 
+	 * @param 	sentence	Collection-wide sentence id.
+	 * @return	Document id.
+	 */
+	private int findDocument(int sentence) {
+		int low = 0;
+		int high = numDocuments - 1;
+		
+		// Find the last document starting at or before the sentence
+		// that has sentences, skipping over empty documents.
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (getFirstSentence(mid) <= sentence)
+				low = mid;
+			else
+				high = mid - 1;
+		}
+		while (getSentenceCount(low) == 0) {
+			low--;
+		}
+		
+		return low;
+	}
+	
+	/**
+	 * Finds a term in the lexicon by binary search.
+	 * 
+	 * @param 	term	Preprocessed term.
+	 * @return	Lexicon entry, or -1 if the term is not indexed.
+	 */
+	private int findTerm(String term) {
+		int low = 0;
+		int high = numTerms - 1;
+		
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			long record = (long) mid * LEXICON_RECORD;
+			byte[] bytes = new byte[lexicon.getInt(record + 16)];
+			terms.getBytes(lexicon.getLong(record), bytes);
+			
+			int c = new String(bytes, UTF8).compareTo(term);
+			if (c < 0)
+				low = mid + 1;
+			else if (c > 0)
+				high = mid - 1;
+			else
+				return mid;
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * Reads a varint from a mapped file.
+	 * 
+	 * @param 	file		Mapped file.
+	 * @param 	position	File position.
+	 * @return	Number of bytes read in the upper 32 bits, value in the lower 32.
+	 */
+	private static long readVarint(MappedFile file, long position) {
+		int value = 0;
+		int bytes = 0;
+		int b;
+		
+		do {
+			b = file.getByte(position + bytes);
+			value |= (b & 0x7F) << (7 * bytes);
+			bytes++;
+		} while ((b & 0x80) != 0);
+		
+		return ((long) bytes << 32) | (value & 0xFFFFFFFFL);
+	}
+	
+	/**
+	 * Entry point for searching an index.
+	 * Usage: CollectionIndex indexDir [documents] term...
+	 * Terms must be preprocessed, that is lower case and without
+	 * punctuation, as by SentencePreprocessor.
+	 * 
+	 * @param 	args	Command line arguments.
+	 * @throws 	IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: CollectionIndex indexDir [documents] term...");
+			System.exit(1);
+		}
+		
+		CollectionIndex index = CollectionIndex.open(new File(args[0]));
+		
+		int first = 1;
+		int maxDocuments = 10;
+		if (args[1].matches("\\d+")) {
+			maxDocuments = Integer.parseInt(args[1]);
+			first = 2;
+		}
+		
+		List<String> query = new ArrayList<String>();
+		for (int i=first; i<args.length; i++) {
+			query.add(args[i]);
+		}
+		
+		for (SearchHit hit : index.search(query, maxDocuments, 3)) {
+			System.out.println(String.format("%.3f\t%s", hit.getScore(), hit.getPath()));
+			System.out.println("\t" + hit.getSummary().trim());
+		}
+	}
+	
+	/**
+	 * Cursor over the postings of a term, decoding one sentence
+	 * id and count at a time from the mapped postings file.
+	 */
+	static class PostingsCursor {
+		
+		MappedFile postings;
+		long position;
+		int remaining;
+		double idf;
+		int id;
+		int count;
+		
+		/**
+		 * Constructor. The cursor is before the first posting.
+		 * 
+		 * @param 	postings	Mapped postings file.
+		 * @param 	position	Position of the first posting.
+		 * @param 	frequency	Number of postings.
+		 * @param 	idf			Inverse sentence frequency of the term.
+		 */
+		PostingsCursor(MappedFile postings, long position, int frequency, double idf) {
+			this.postings = postings;
+			this.position = position;
+			this.remaining = frequency;
+			this.idf = idf;
+		}
+		
+		/**
+		 * Moves to the next posting. Past the last posting the
+		 * id is Integer.MAX_VALUE, after every sentence id.
+		 */
+		void next() {
+			if (remaining == 0) {
+				id = Integer.MAX_VALUE;
+				return;
+			}
+			
+			long value = readVarint(postings, position);
+			position += value >>> 32;
+			id += (int) value;
+			
+			value = readVarint(postings, position);
+			position += value >>> 32;
+			count = (int) value;
+			remaining--;
+		}
+	}
+}
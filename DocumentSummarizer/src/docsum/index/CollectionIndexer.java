@@ -0,0 +1,510 @@
+package docsum.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import docsum.algorithm.MeadAlgorithm;
+import docsum.summarizer.AnalyzedDocument;
+import docsum.summarizer.SentencePreprocessor;
+import docsum.summarizer.SentenceSegmenter;
+
+/**
+ * Offline builder of a CollectionIndex over a set of text files.
+ * <p>
+ * Each document is segmented and preprocessed once. The byte range
+ * of every sentence in its source file and the value of every MEAD
+ * feature are appended to fixed-size records, and the postings of
+ * its terms are buffered in memory. When the buffer is full it is
+ * written out as a run sorted by term, so collections far larger
+ * than memory can be indexed. Closing the indexer merges the runs
+ * into the term lexicon and the compressed postings file.
+ */
+public class CollectionIndexer {
+	
+	static final int DEFAULT_RUN_POSTINGS = 1 << 22;
+	static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	File indexDir;
+	SentenceSegmenter segmenter;
+	SentencePreprocessor preprocessor;
+	MeadAlgorithm mead;
+	int maxRunPostings;
+	
+	DataOutputStream documents;
+	DataOutputStream paths;
+	DataOutputStream sentences;
+	long pathOffset;
+	int numDocuments;
+	int numSentences;
+	
+	Map<String, int[]> runPostings;
+	int numRunPostings;
+	List<File> runs;
+	
+	/**
+	 * Constructor with the default run size.
+	 * 
+	 * @param 	indexDir		Directory to write the index to.
+	 * @param 	segmenter		SentenceSegmenter instance.
+	 * @param 	preprocessor	SentencePreprocessor instance.
+	 * @throws 	IOException		If the index files cannot be created.
+	 */
+	public CollectionIndexer(File indexDir, SentenceSegmenter segmenter,
+			SentencePreprocessor preprocessor) throws IOException {
+		this(indexDir, segmenter, preprocessor, DEFAULT_RUN_POSTINGS);
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param 	indexDir		Directory to write the index to.
+	 * @param 	segmenter		SentenceSegmenter instance.
+	 * @param 	preprocessor	SentencePreprocessor instance.
+	 * @param 	maxRunPostings	Number of postings buffered before a run is written.
+	 * @throws 	IOException		If the index files cannot be created.
+	 */
+	public CollectionIndexer(File indexDir, SentenceSegmenter segmenter,
+			SentencePreprocessor preprocessor, int maxRunPostings) throws IOException {
+		this.indexDir = indexDir;
+		this.segmenter = segmenter;
+		this.preprocessor = preprocessor;
+		this.maxRunPostings = maxRunPostings;
+		mead = new MeadAlgorithm();
+		
+		Files.createDirectories(indexDir.toPath());
+		documents = open(CollectionIndex.DOCUMENTS_FILE);
+		paths = open(CollectionIndex.PATHS_FILE);
+		sentences = open(CollectionIndex.SENTENCES_FILE);
+		
+		runPostings = new HashMap<String, int[]>();
+		runs = new ArrayList<File>();
+	}
+	
+	/**
+	 * Adds a UTF-8 text file to the index.
+	 * 
+	 * @param 	source	Text file.
+	 * @throws 	IOException		If the file cannot be read or the index written.
+	 */
+	public void addDocument(File source) throws IOException {
+		long lastModified = source.lastModified();
+		byte[] bytes = Files.readAllBytes(source.toPath());
+		String text = new String(bytes, UTF8);
+		AnalyzedDocument document = AnalyzedDocument.analyze(text, segmenter, preprocessor);
+		List<List<String>> processed = document.getSentences();
+		int count = document.getSentenceCount();
+		
+		double[][] features = mead.getFeatureValues(processed);
+		int[] byteOffsets = makeByteOffsets(text);
+		
+		// Sentence records hold the byte range in the source file,
+		// so that summaries are read back without decoding the file.
+		float maxScore = 0.0f;
+		for (int i=0; i<count; i++) {
+			int start = byteOffsets[document.getSentenceStart(i)];
+			int end = byteOffsets[document.getSentenceEnd(i)];
+			sentences.writeInt(start);
+			sentences.writeInt(end - start);
+			
+			double score = 0.0;
+			for (int f=0; f<features.length; f++) {
+				sentences.writeFloat((float) features[f][i]);
+				score += mead.getFeatureWeight(f) * (float) features[f][i];
+			}
+			maxScore = Math.max(maxScore, (float) score);
+			
+			addPostings(processed.get(i), numSentences + i);
+		}
+		
+		byte[] path = source.getAbsolutePath().getBytes(UTF8);
+		paths.write(path);
+		
+		documents.writeLong(pathOffset);
+		documents.writeInt(path.length);
+		documents.writeInt(numSentences);
+		documents.writeInt(count);
+		documents.writeFloat(maxScore);
+		documents.writeLong(bytes.length);
+		documents.writeLong(lastModified);
+		
+		pathOffset += path.length;
+		numSentences += count;
+		numDocuments++;
+		
+		if (numRunPostings >= maxRunPostings)
+			writeRun();
+	}
+	
+	/**
+	 * Adds a file, or every .txt file under a directory.
+	 * 
+	 * @param 	file	File or directory.
+	 * @throws 	IOException
+	 */
+	public void addFiles(File file) throws IOException {
+		if (file.isDirectory()) {
+			File[] children = file.listFiles();
+			if (children == null)
+				return;
+			
+			// Sorted, so that the same tree always gives the same document ids.
+			Arrays.sort(children);
+			for (File child : children) {
+				if (child.isDirectory() || child.getName().endsWith(".txt"))
+					addFiles(child);
+			}
+		}
+		else {
+			addDocument(file);
+		}
+	}
+	
+	/**
+	 * Writes the last run, merges all runs into the lexicon
+	 * and postings, and writes the index header.
+	 * 
+	 * @throws 	IOException
+	 */
+	public void close() throws IOException {
+		documents.close();
+		paths.close();
+		sentences.close();
+		
+		if (!runPostings.isEmpty())
+			writeRun();
+		
+		int numTerms = mergeRuns();
+		
+		DataOutputStream meta = open(CollectionIndex.META_FILE);
+		try {
+			meta.writeInt(CollectionIndex.MAGIC);
+			meta.writeByte(CollectionIndex.VERSION);
+			meta.writeInt(numDocuments);
+			meta.writeInt(numSentences);
+			meta.writeInt(numTerms);
+			meta.writeInt(mead.getNumFeatures());
+			for (int f=0; f<mead.getNumFeatures(); f++) {
+				meta.writeDouble(mead.getFeatureWeight(f));
+			}
+		} finally {
+			meta.close();
+		}
+		
+		for (File run : runs) {
+			run.delete();
+		}
+	}
+	
+	/**
+	 * Buffers the postings of a sentence. The postings of a term
+	 * are pairs of sentence id and count after a length element.
+	 * 
+	 * @param 	sentence	Tokenized sentence.
+	 * @param 	id			Collection-wide sentence id.
+	 */
+	private void addPostings(List<String> sentence, int id) {
+		for (String term : sentence) {
+			int[] posting = runPostings.get(term);
+			if (posting == null) {
+				posting = new int[5];
+				runPostings.put(term, posting);
+			}
+			
+			int size = posting[0];
+			if (size > 0 && posting[size - 1] == id) {
+				posting[size]++;
+				continue;
+			}
+			
+			if (size + 3 > posting.length) {
+				posting = Arrays.copyOf(posting, posting.length * 2);
+				runPostings.put(term, posting);
+			}
+			posting[size + 1] = id;
+			posting[size + 2] = 1;
+			posting[0] = size + 2;
+			numRunPostings++;
+		}
+	}
+	
+	/**
+	 * Writes the buffered postings to a run file, in term order,
+	 * and empties the buffer.
+	 * 
+	 * @throws 	IOException
+	 */
+	private void writeRun() throws IOException {
+		File run = new File(indexDir, "run" + runs.size() + ".tmp");
+		runs.add(run);
+		
+		List<String> terms = new ArrayList<String>(runPostings.keySet());
+		Collections.sort(terms);
+		
+		DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(run)));
+		try {
+			for (String term : terms) {
+				int[] posting = runPostings.get(term);
+				out.writeUTF(term);
+				writeVarint(out, posting[0] / 2);
+				for (int p=1; p<posting[0]; p+=2) {
+					out.writeInt(posting[p]);
+					writeVarint(out, posting[p + 1]);
+				}
+			}
+		} finally {
+			out.close();
+		}
+		
+		runPostings.clear();
+		numRunPostings = 0;
+	}
+	
+	/**
+	 * Merges the runs into the lexicon, term and postings files.
+	 * Runs cover increasing ranges of sentences, so the postings
+	 * of a term are the concatenation of its postings in run order,
+	 * stored as gaps between sentence ids.
+	 * 
+	 * @return	Number of terms.
+	 * @throws 	IOException
+	 */
+	private int mergeRuns() throws IOException {
+		DataOutputStream lexicon = open(CollectionIndex.LEXICON_FILE);
+		DataOutputStream terms = open(CollectionIndex.TERMS_FILE);
+		DataOutputStream postings = open(CollectionIndex.POSTINGS_FILE);
+		
+		PriorityQueue<RunReader> queue = new PriorityQueue<RunReader>(Math.max(1, runs.size()),
+				new Comparator<RunReader>() {
+					public int compare(RunReader a, RunReader b) {
+						int c = a.term.compareTo(b.term);
+						return (c != 0) ? c : a.run - b.run;
+					}
+				});
+		
+		int numTerms = 0;
+		long termOffset = 0;
+		long postingsOffset = 0;
+		
+		try {
+			for (int i=0; i<runs.size(); i++) {
+				RunReader reader = new RunReader(runs.get(i), i);
+				if (reader.next())
+					queue.add(reader);
+			}
+			
+			while (!queue.isEmpty()) {
+				String term = queue.peek().term;
+				byte[] termBytes = term.getBytes(UTF8);
+				
+				lexicon.writeLong(termOffset);
+				lexicon.writeLong(postingsOffset);
+				lexicon.writeInt(termBytes.length);
+				
+				// Equal terms leave the queue in run order.
+				int frequency = 0;
+				int previous = 0;
+				List<RunReader> readers = new ArrayList<RunReader>();
+				while (!queue.isEmpty() && queue.peek().term.equals(term)) {
+					RunReader reader = queue.poll();
+					for (int p=0; p<reader.size; p++) {
+						int id = reader.in.readInt();
+						postingsOffset += writeVarint(postings, id - previous);
+						postingsOffset += writeVarint(postings, readVarint(reader.in));
+						previous = id;
+					}
+					frequency += reader.size;
+					readers.add(reader);
+				}
+				lexicon.writeInt(frequency);
+				
+				terms.write(termBytes);
+				termOffset += termBytes.length;
+				numTerms++;
+				
+				for (RunReader reader : readers) {
+					if (reader.next())
+						queue.add(reader);
+				}
+			}
+		} finally {
+			for (RunReader reader : queue) {
+				reader.in.close();
+			}
+			lexicon.close();
+			terms.close();
+			postings.close();
+		}
+		
+		return numTerms;
+	}
+	
+	/**
+	 * Maps each char offset of a text to its byte offset in UTF-8.
+	 * 
+	 * @param 	text	Text string.
+	 * @return	Byte offset of each char offset, up to the text length.
+	 */
+	static int[] makeByteOffsets(String text) {
+		int[] offsets = new int[text.length() + 1];
+		
+		for (int i=0; i<text.length(); i++) {
+			char c = text.charAt(i);
+			int bytes;
+			if (c < 0x80)
+				bytes = 1;
+			else if (c < 0x800)
+				bytes = 2;
+			else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+					&& Character.isLowSurrogate(text.charAt(i + 1)))
+				bytes = 4;
+			else if (Character.isLowSurrogate(c) && i > 0
+					&& Character.isHighSurrogate(text.charAt(i - 1)))
+				bytes = 0;
+			else
+				bytes = 3;
+			offsets[i + 1] = offsets[i] + bytes;
+		}
+		
+		return offsets;
+	}
+	
+	/**
+	 * Opens an index file for writing.
+	 * 
+	 * @param 	name	File name in the index directory.
+	 * @return	Buffered output stream.
+	 * @throws 	IOException
+	 */
+	private DataOutputStream open(String name) throws IOException {
+		OutputStream out = new FileOutputStream(new File(indexDir, name));
+		return new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+	}
+	
+	/**
+	 * Writes an unsigned integer in 7-bit groups,
+	 * least significant first, with a continuation bit.
+	 * 
+	 * @param 	out		Stream to write to.
+	 * @param 	value	Non-negative integer.
+	 * @return	Number of bytes written.
+	 * @throws 	IOException
+	 */
+	static int writeVarint(DataOutputStream out, int value) throws IOException {
+		int bytes = 1;
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+			bytes++;
+		}
+		out.writeByte(value);
+		
+		return bytes;
+	}
+	
+	/**
+	 * Reads an unsigned integer written by writeVarint.
+	 * 
+	 * @param 	in	Stream to read from.
+	 * @return	Integer value.
+	 * @throws 	IOException		If the encoding is malformed.
+	 */
+	static int readVarint(DataInputStream in) throws IOException {
+		int value = 0;
+		
+		for (int shift=0; shift<35; shift+=7) {
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+		
+		throw new IOException("Malformed varint");
+	}
+	
+	/**
+	 * Entry point for the indexer.
+	 * Usage: CollectionIndexer indexDir file-or-directory...
+	 * 
+	 * @param 	args	Command line arguments.
+	 * @throws 	IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: CollectionIndexer indexDir file-or-directory...");
+			System.exit(1);
+		}
+		
+		CollectionIndexer indexer = new CollectionIndexer(new File(args[0]),
+				new SentenceSegmenter(), new SentencePreprocessor());
+		
+		for (int i=1; i<args.length; i++) {
+			indexer.addFiles(new File(args[i]));
+		}
+		indexer.close();
+		
+		System.out.println("Indexed " + indexer.numDocuments + " documents, "
+				+ indexer.numSentences + " sentences");
+	}
+	
+	/**
+	 * Sequential reader of a run file, positioned
+	 * at the postings of its current term.
+	 */
+	static class RunReader {
+		
+		DataInputStream in;
+		int run;
+		String term;
+		int size;
+		
+		/**
+		 * Constructor.
+		 * 
+		 * @param 	file	Run file.
+		 * @param 	run		Run number, giving the order of runs.
+		 * @throws 	IOException
+		 */
+		RunReader(File file, int run) throws IOException {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+			this.run = run;
+		}
+		
+		/**
+		 * Moves to the next term. The postings of the current
+		 * term must have been read.
+		 * 
+		 * @return	False at the end of the run, which is then closed.
+		 * @throws 	IOException
+		 */
+		boolean next() throws IOException {
+			try {
+				term = in.readUTF();
+			} catch (EOFException e) {
+				in.close();
+				return false;
+			}
+			size = readVarint(in);
+			
+			return true;
+		}
+	}
+}
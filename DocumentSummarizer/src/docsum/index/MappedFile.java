@@ -0,0 +1,109 @@
+package docsum.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read-only memory mapping of a file of any size.
+ * <p>
+ * A single MappedByteBuffer cannot exceed 2 GB, so the file is
+ * mapped in segments of 1 GB addressed by a long position. Ints,
+ * floats and longs must be read at positions aligned to their size,
+ * so that they never straddle two segments.
+ */
+class MappedFile {
+	
+	static final int SEGMENT_BITS = 30;
+	static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+	static final int SEGMENT_MASK = (int) (SEGMENT_SIZE - 1);
+	
+	MappedByteBuffer[] segments;
+	long length;
+	
+	/**
+	 * Maps a file. The mapping stays valid after the file is closed.
+	 * 
+	 * @param 	file	File to map.
+	 * @throws 	IOException
+	 */
+	MappedFile(File file) throws IOException {
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = randomAccessFile.getChannel();
+			length = channel.size();
+			
+			segments = new MappedByteBuffer[(int) ((length + SEGMENT_SIZE - 1) >>> SEGMENT_BITS)];
+			for (int i=0; i<segments.length; i++) {
+				long position = (long) i << SEGMENT_BITS;
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position,
+						Math.min(SEGMENT_SIZE, length - position));
+			}
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+	
+	/**
+	 * Gets the length of the file.
+	 * 
+	 * @return	Length in bytes.
+	 */
+	long length() {
+		return length;
+	}
+	
+	/**
+	 * Reads a byte.
+	 * 
+	 * @param 	position	File position.
+	 * @return	Byte value.
+	 */
+	byte getByte(long position) {
+		return segments[(int) (position >>> SEGMENT_BITS)].get((int) position & SEGMENT_MASK);
+	}
+	
+	/**
+	 * Reads a big-endian int.
+	 * 
+	 * @param 	position	File position, a multiple of 4.
+	 * @return	Int value.
+	 */
+	int getInt(long position) {
+		return segments[(int) (position >>> SEGMENT_BITS)].getInt((int) position & SEGMENT_MASK);
+	}
+	
+	/**
+	 * Reads a big-endian float.
+	 * 
+	 * @param 	position	File position, a multiple of 4.
+	 * @return	Float value.
+	 */
+	float getFloat(long position) {
+		return segments[(int) (position >>> SEGMENT_BITS)].getFloat((int) position & SEGMENT_MASK);
+	}
+	
+	/**
+	 * Reads a big-endian long.
+	 * 
+	 * @param 	position	File position, a multiple of 8.
+	 * @return	Long value.
+	 */
+	long getLong(long position) {
+		return segments[(int) (position >>> SEGMENT_BITS)].getLong((int) position & SEGMENT_MASK);
+	}
+	
+	/**
+	 * Reads a run of bytes, which may cross segments.
+	 * 
+	 * @param 	position	File position.
+	 * @param 	bytes		Array to fill.
+	 */
+	void getBytes(long position, byte[] bytes) {
+		for (int i=0; i<bytes.length; i++) {
+			bytes[i] = getByte(position + i);
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package docsum.index;
+
+import java.util.List;
+
+/**
+ * Document found by a CollectionIndex search,
+ * with its summary for the query.
+ */
+public class SearchHit {
+	
+	int document;
+	double score;
+	String path;
+	List<Integer> selection;
+	String summary;
+	
+	int[] matches;
+	double[] relevance;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param 	document	Document id.
+	 * @param 	score		Summed relevance of the matching sentences.
+	 */
+	SearchHit(int document, double score) {
+		this.document = document;
+		this.score = score;
+	}
+	
+	/**
+	 * Gets the document id.
+	 * 
+	 * @return	Document id.
+	 */
+	public int getDocument() {
+		return document;
+	}
+	
+	/**
+	 * Gets the score of the document for the query.
+	 * 
+	 * @return	Summed tf * idf of the matching sentences.
+	 */
+	public double getScore() {
+		return score;
+	}
+	
+	/**
+	 * Gets the path of the source file.
+	 * 
+	 * @return	Absolute path.
+	 */
+	public String getPath() {
+		return path;
+	}
+	
+	/**
+	 * Gets the sentences in the summary.
+	 * 
+	 * @return	Ascending sentence indices in the document.
+	 */
+	public List<Integer> getSelection() {
+		return selection;
+	}
+	
+	/**
+	 * Gets the summary.
+	 * 
+	 * @return	Summary string.
+	 */
+	public String getSummary() {
+		return summary;
+	}
+}
@@ -0,0 +1,377 @@
+package docsum.summarizer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import docsum.algorithm.PostingsIndex;
+
+/**
+ * Segmented and preprocessed form of a document that can be
+ * stored in a compact binary file and loaded again without
+ * running the tokenizer.
+ * <p>
+ * The file holds a term table ordered by descending frequency,
+ * the preprocessed sentences as varint-encoded term ids, and the
+ * start and end offset of each original sentence in the source text.
+ * Frequent terms get small ids, so most ids take one byte. The length
+ * and hash code of the source are kept, so that offsets are never
+ * applied to a text the document was not analyzed from.
+ * An inverted index from terms to sentences is built in memory
+ * when a document is analyzed or loaded, for query-focused summaries.
+ */
+public class AnalyzedDocument {
+	
+	static final int MAGIC = 0x44534144;
+	static final int VERSION = 2;
+	
+	List<String> terms;
+	int[][] sentences;
+	int[] sentenceStarts;
+	int[] sentenceEnds;
+	int sourceLength;
+	int sourceHash;
+	PostingsIndex postingsIndex;
+	
+	/**
+	 * Constructor used by analyze and read.
+	 * 
+	 * @param 	terms			Term table.
+	 * @param 	sentences		Term ids of each preprocessed sentence.
+	 * @param 	sentenceStarts	Start offset of each sentence in the source.
+	 * @param 	sentenceEnds	End offset of each sentence in the source.
+	 * @param 	sourceLength	Length of the source.
+	 * @param 	sourceHash		Hash code of the source.
+	 */
+	AnalyzedDocument(List<String> terms, int[][] sentences,
+			int[] sentenceStarts, int[] sentenceEnds, int sourceLength, int sourceHash) {
+		this.terms = terms;
+		this.sentences = sentences;
+		this.sentenceStarts = sentenceStarts;
+		this.sentenceEnds = sentenceEnds;
+		this.sourceLength = sourceLength;
+		this.sourceHash = sourceHash;
+	}
+	
+	/**
+	 * Segments and preprocesses a text and dictionary-encodes the result.
+	 * 
+	 * @param 	text			Text string.
+	 * @param 	segmenter		SentenceSegmenter instance.
+	 * @param 	preprocessor	SentencePreprocessor instance.
+	 * @return	Analyzed document.
+	 */
+	public static AnalyzedDocument analyze(String text, SentenceSegmenter segmenter,
+			SentencePreprocessor preprocessor) {
+		
+		List<Integer> offsets = new ArrayList<Integer>();
+		List<List<String>> processed = preprocessor.process(segmenter.segment(text, offsets));
+		
+		// Count term occurrences.
+		final Map<String, Integer> counts = new HashMap<String, Integer>();
+		for (List<String> sentence : processed) {
+			for (String word : sentence) {
+				Integer count = counts.get(word);
+				counts.put(word, (count == null) ? 1 : count + 1);
+			}
+		}
+		
+		// Order terms by descending frequency, then alphabetically.
+		List<String> terms = new ArrayList<String>(counts.keySet());
+		Collections.sort(terms, new Comparator<String>() {
+			public int compare(String a, String b) {
+				int byCount = counts.get(b).compareTo(counts.get(a));
+				return (byCount != 0) ? byCount : a.compareTo(b);
+			}
+		});
+		
+		Map<String, Integer> ids = new HashMap<String, Integer>();
+		for (int i=0; i<terms.size(); i++) {
+			ids.put(terms.get(i), i);
+		}
+		
+		int[][] sentences = new int[processed.size()][];
+		for (int i=0; i<sentences.length; i++) {
+			List<String> sentence = processed.get(i);
+			sentences[i] = new int[sentence.size()];
+			for (int j=0; j<sentence.size(); j++) {
+				sentences[i][j] = ids.get(sentence.get(j));
+			}
+		}
+		
+		// Each sentence runs up to the start of the next one.
+		int numOffsets = offsets.size();
+		int[] starts = new int[numOffsets];
+		int[] ends = new int[numOffsets];
+		for (int i=0; i<numOffsets; i++) {
+			starts[i] = offsets.get(i);
+			ends[i] = (i < numOffsets - 1) ? offsets.get(i+1) : text.length();
+		}
+		
+		return new AnalyzedDocument(terms, sentences, starts, ends,
+				text.length(), text.hashCode());
+	}
+	
+	/**
+	 * Gets the preprocessed sentences as lists of term strings,
+	 * ready to pass to a summarization or keyword algorithm.
+	 * Equal terms share a single String instance.
+	 * 
+	 * @return	List of lists of strings representing sentences.
+	 */
+	public List<List<String>> getSentences() {
+		List<List<String>> decoded = new ArrayList<List<String>>(sentences.length);
+		
+		for (int[] sentence : sentences) {
+			List<String> words = new ArrayList<String>(sentence.length);
+			for (int id : sentence) {
+				words.add(terms.get(id));
+			}
+			decoded.add(words);
+		}
+		
+		return decoded;
+	}
+	
+	/**
+	 * Gets the inverted index from terms to the sentences containing
+	 * them, building it on first use, since only queries need it.
+	 * 
+	 * @return	PostingsIndex of the document.
+	 */
+	public synchronized PostingsIndex getPostingsIndex() {
+		if (postingsIndex == null)
+			postingsIndex = new PostingsIndex(terms, sentences);
+		
+		return postingsIndex;
+	}
+	
+	/**
+	 * Checks whether a text is the one the document was analyzed
+	 * from, by its length and hash code.
+	 * 
+	 * @param 	text	Text string.
+	 * @return	True if the text matches the source.
+	 */
+	public boolean isSourceOf(String text) {
+		return text.length() == sourceLength && text.hashCode() == sourceHash;
+	}
+	
+	/**
+	 * Gets the original sentences by slicing the source text.
+	 * 
+	 * @param 	source	Source text the document was analyzed from.
+	 * @return	List of sentence strings.
+	 * @throws 	IllegalArgumentException	If the text is not the source.
+	 */
+	public List<String> getOriginalSentences(String source) {
+		if (!isSourceOf(source))
+			throw new IllegalArgumentException("Text is not the source of the analyzed document");
+		
+		List<String> original = new ArrayList<String>(sentenceStarts.length);
+		
+		for (int i=0; i<sentenceStarts.length; i++) {
+			original.add(source.substring(sentenceStarts[i], sentenceEnds[i]));
+		}
+		
+		return original;
+	}
+	
+	/**
+	 * Gets the character offset at which a sentence starts in the source.
+	 * 
+	 * @param 	index	Sentence index.
+	 * @return	Start offset.
+	 */
+	public int getSentenceStart(int index) {
+		return sentenceStarts[index];
+	}
+	
+	/**
+	 * Gets the character offset at which a sentence ends in the source.
+	 * 
+	 * @param 	index	Sentence index.
+	 * @return	End offset, exclusive.
+	 */
+	public int getSentenceEnd(int index) {
+		return sentenceEnds[index];
+	}
+	
+	/**
+	 * Gets the number of sentences in the document.
+	 * 
+	 * @return	Number of sentences.
+	 */
+	public int getSentenceCount() {
+		return sentences.length;
+	}
+	
+	/**
+	 * Writes the document in binary form.
+	 * 
+	 * @param 	outputStream	Stream to write to.
+	 * @throws 	IOException
+	 */
+	public void write(OutputStream outputStream) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream));
+		
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+		out.writeInt(sourceLength);
+		out.writeInt(sourceHash);
+		
+		writeVarint(out, terms.size());
+		for (String term : terms) {
+			out.writeUTF(term);
+		}
+		
+		writeVarint(out, sentences.length);
+		for (int[] sentence : sentences) {
+			writeVarint(out, sentence.length);
+			for (int id : sentence) {
+				writeVarint(out, id);
+			}
+		}
+		
+		// Offsets are increasing, so store the gap
+		// from the previous sentence and the length.
+		writeVarint(out, sentenceStarts.length);
+		int previous = 0;
+		for (int i=0; i<sentenceStarts.length; i++) {
+			writeVarint(out, sentenceStarts[i] - previous);
+			writeVarint(out, sentenceEnds[i] - sentenceStarts[i]);
+			previous = sentenceStarts[i];
+		}
+		
+		out.flush();
+	}
+	
+	/**
+	 * Reads a document written by write.
+	 * 
+	 * @param 	inputStream		Stream to read from.
+	 * @return	Analyzed document.
+	 * @throws 	IOException		If the stream is not an analyzed document of this version.
+	 */
+	public static AnalyzedDocument read(InputStream inputStream) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream));
+		
+		if (in.readInt() != MAGIC)
+			throw new IOException("Not an analyzed document");
+		int version = in.readUnsignedByte();
+		// The first version kept no source length or hash, so its
+		// offsets cannot be checked against a text; analyze again.
+		if (version != VERSION)
+			throw new IOException("Unsupported analyzed document version " + version);
+		
+		int sourceLength = in.readInt();
+		int sourceHash = in.readInt();
+		
+		int numTerms = readVarint(in);
+		List<String> terms = new ArrayList<String>(numTerms);
+		for (int i=0; i<numTerms; i++) {
+			terms.add(in.readUTF());
+		}
+		
+		int[][] sentences = new int[readVarint(in)][];
+		for (int i=0; i<sentences.length; i++) {
+			sentences[i] = new int[readVarint(in)];
+			for (int j=0; j<sentences[i].length; j++) {
+				sentences[i][j] = readVarint(in);
+			}
+		}
+		
+		int numOffsets = readVarint(in);
+		int[] starts = new int[numOffsets];
+		int[] ends = new int[numOffsets];
+		int previous = 0;
+		for (int i=0; i<numOffsets; i++) {
+			starts[i] = previous + readVarint(in);
+			ends[i] = starts[i] + readVarint(in);
+			previous = starts[i];
+		}
+		
+		return new AnalyzedDocument(terms, sentences, starts, ends,
+				sourceLength, sourceHash);
+	}
+	
+	/**
+	 * Writes the document to a file.
+	 * 
+	 * @param 	file	File to write.
+	 * @throws 	IOException
+	 */
+	public void save(File file) throws IOException {
+		OutputStream outputStream = new FileOutputStream(file);
+		try {
+			write(outputStream);
+		} finally {
+			outputStream.close();
+		}
+	}
+	
+	/**
+	 * Reads a document from a file.
+	 * 
+	 * @param 	file	File to read.
+	 * @return	Analyzed document.
+	 * @throws 	IOException
+	 */
+	public static AnalyzedDocument load(File file) throws IOException {
+		InputStream inputStream = new FileInputStream(file);
+		try {
+			return read(inputStream);
+		} finally {
+			inputStream.close();
+		}
+	}
+	
+	/**
+	 * Writes an unsigned integer in 7-bit groups,
+	 * least significant first, with a continuation bit.
+	 * 
+	 * @param 	out		Stream to write to.
+	 * @param 	value	Non-negative integer.
+	 * @throws 	IOException
+	 */
+	static void writeVarint(DataOutputStream out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+	
+	/**
+	 * Reads an unsigned integer written by writeVarint.
+	 * 
+	 * @param 	in	Stream to read from.
+	 * @return	Integer value.
+	 * @throws 	IOException		If the encoding is malformed.
+	 */
+	static int readVarint(DataInputStream in) throws IOException {
+		int value = 0;
+		
+		for (int shift=0; shift<35; shift+=7) {
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+		
+		throw new IOException("Malformed varint");
+	}
+}
@@ -1,8 +1,19 @@
 package docsum.summarizer;
 
+import java.util.ArrayList;
 import java.util.List;
 
+import docsum.algorithm.BipartiteHITSAlgorithm;
+import docsum.algorithm.CorpusStatistics;
+import docsum.algorithm.Deadline;
+import docsum.algorithm.DeadlineResult;
+import docsum.algorithm.HierarchicalMeadAlgorithm;
+import docsum.algorithm.JointRanking;
+import docsum.algorithm.KeywordAlgorithm;
 import docsum.algorithm.MeadAlgorithm;
+import docsum.algorithm.QueryFocusedAlgorithm;
+import docsum.algorithm.SimHashDeduplicator;
+import docsum.algorithm.SummarizationAlgorithm;
 
 
 /**
@@ -15,10 +26,22 @@ public class DocumentSummarizer {
 
 	SentenceSegmenter segmenter;
 	SentencePreprocessor preprocessor;
-	MeadAlgorithm mead;
+	SummarizationAlgorithm mead;
+	CorpusStatistics corpusStatistics;
+	QueryFocusedAlgorithm queryFocused;
+	AnalyzedDocument queryDocument;
+	ExecutionPlanner planner;
+	HierarchicalMeadAlgorithm sectioned;
+	double lambda;
 	
 	/**
-	 * Constructor for DocumentSummarizar class.
+	 * Constructor for DocumentSummarizar class. The way MEAD
+	 * is run is planned per document by an ExecutionPlanner.
+	 * Documents of 200000 sentences or more, or whose model would
+	 * take more than half the heap, are summarized in sections by
+	 * HierarchicalMeadAlgorithm, which can select other sentences
+	 * than MEAD over the whole document. Use the planner's hint to
+	 * force one strategy for every document.
 	 * 
 	 * @param 	segmenter		SentenceSegmenter instance.
 	 * @param 	preprocessor	SentencePreprocessor instance.
@@ -28,6 +51,88 @@ public class DocumentSummarizer {
 		this.segmenter = segmenter;
 		this.preprocessor = preprocessor;
 		mead = new MeadAlgorithm();
+		planner = new ExecutionPlanner();
+		lambda = 1.0;
+	}
+	
+	/**
+	 * Constructor with a specific summarization algorithm,
+	 * such as HierarchicalMeadAlgorithm for book-length input.
+	 * 
+	 * @param 	segmenter		SentenceSegmenter instance.
+	 * @param 	preprocessor	SentencePreprocessor instance.
+	 * @param 	algorithm		SummarizationAlgorithm instance.
+	 */
+	public DocumentSummarizer(SentenceSegmenter segmenter,
+			SentencePreprocessor preprocessor, SummarizationAlgorithm algorithm) {
+		this.segmenter = segmenter;
+		this.preprocessor = preprocessor;
+		mead = algorithm;
+		lambda = 1.0;
+	}
+	
+	/**
+	 * Counts every summarized document into corpus statistics and,
+	 * for the MEAD algorithms, uses them as the IDF source. Summarizing
+	 * a document again, at another length, does not count it twice.
+	 * 
+	 * @param 	corpusStatistics	CorpusStatistics instance, or null to stop counting.
+	 */
+	public void setCorpusStatistics(CorpusStatistics corpusStatistics) {
+		this.corpusStatistics = corpusStatistics;
+		resetQueryFocused();
+		
+		if (mead instanceof MeadAlgorithm)
+			((MeadAlgorithm) mead).setCorpusStatistics(corpusStatistics);
+		else if (mead instanceof HierarchicalMeadAlgorithm)
+			((HierarchicalMeadAlgorithm) mead).setCorpusStatistics(corpusStatistics);
+		
+		if (sectioned != null)
+			sectioned.setCorpusStatistics(corpusStatistics);
+	}
+	
+	/**
+	 * Sets the trade-off between relevance and novelty of the
+	 * MEAD algorithms. Lower values leave out sentences that
+	 * repeat what is already in the summary.
+	 * 
+	 * @param 	lambda	1.0 ranks by score alone; lower values penalize redundancy.
+	 */
+	public void setLambda(double lambda) {
+		this.lambda = lambda;
+		resetQueryFocused();
+		
+		if (mead instanceof MeadAlgorithm)
+			((MeadAlgorithm) mead).setLambda(lambda);
+		else if (mead instanceof HierarchicalMeadAlgorithm)
+			((HierarchicalMeadAlgorithm) mead).setLambda(lambda);
+		
+		if (sectioned != null)
+			sectioned.setLambda(lambda);
+	}
+	
+	/**
+	 * Collapses near-duplicate sentences before MEAD scores them, so
+	 * repeated sentences count once and appear in a summary at most
+	 * once. Documents long enough to be summarized in sections are
+	 * not deduplicated.
+	 * 
+	 * @param 	deduplicator	SimHashDeduplicator instance, or null to disable.
+	 */
+	public void setDeduplicator(SimHashDeduplicator deduplicator) {
+		if (mead instanceof MeadAlgorithm)
+			((MeadAlgorithm) mead).setDeduplicator(deduplicator);
+	}
+	
+	/**
+	 * Gets the planner choosing how MEAD is run on each document,
+	 * through which strategies can be forced and decisions logged.
+	 * 
+	 * @return	ExecutionPlanner instance, or null if the summarizer
+	 * 			was constructed with a specific algorithm.
+	 */
+	public ExecutionPlanner getExecutionPlanner() {
+		return planner;
 	}
 	
 	/**
@@ -44,7 +149,7 @@ public class DocumentSummarizer {
 		if (text.length() > 0) {
 			List<List<String>> sentences = segmenter.segment(text);
 			List<List<String>> preprocessed = preprocessor.process(sentences);
-			List<Integer> selection = mead.getSelection(preprocessed, percentage);
+			List<Integer> selection = selectSentences(preprocessed, percentage);
 			List<String> original = segmenter.getOriginalSentences(text);
 			String summary = buildSummaryString(original, selection);
 
@@ -53,7 +158,306 @@ public class DocumentSummarizer {
 		
 		return "";
 	}
+	
+	/**
+	 * Generates a summary within a time budget. The text is segmented
+	 * once, and the summary is cut from it at the sentence offsets. If
+	 * the budget runs out during segmentation, the leading sentences
+	 * are taken without preprocessing. With the MEAD algorithm, sentence
+	 * selection degrades step by step when the time left after
+	 * preprocessing is too short for the full algorithm. In either case
+	 * the result is flagged as approximate. Other algorithms run to
+	 * completion.
+	 * 
+	 * @param 	text			Text string to summarize.
+	 * @param 	percentage		Percentage of sentences to include in summary.
+	 * @param 	budgetMillis	Time budget in milliseconds.
+	 * @return	Summary and whether it is approximate.
+	 */
+	public SummaryResult summarize(String text, int percentage, long budgetMillis) {
+		
+		Deadline deadline = new Deadline(budgetMillis);
+		
+		if (text.length() == 0) {
+			return new SummaryResult("", new ArrayList<Integer>(), false,
+					deadline.getElapsedMillis());
+		}
+		
+		List<Integer> offsets = new ArrayList<Integer>();
+		List<List<String>> sentences = segmenter.segment(text, offsets);
+		
+		List<Integer> selection;
+		boolean approximate = false;
+		if (deadline.isExpired()) {
+			int summaryLength = Math.max(1, (int) (sentences.size() * percentage / 100.0));
+			selection = new ArrayList<Integer>();
+			for (int i=0; i<summaryLength && i<sentences.size(); i++) {
+				selection.add(i);
+			}
+			approximate = true;
+		} else if (mead instanceof MeadAlgorithm) {
+			List<List<String>> preprocessed = preprocessor.process(sentences);
+			if (corpusStatistics != null)
+				corpusStatistics.addDocument(preprocessed);
+			
+			DeadlineResult<List<Integer>> result = ((MeadAlgorithm) mead).getSelection(
+					preprocessed, percentage, deadline);
+			selection = result.getValue();
+			approximate = result.isApproximate();
+		} else {
+			selection = selectSentences(preprocessor.process(sentences), percentage);
+		}
+		
+		String summary = buildSummaryString(text, offsets, selection);
+		
+		return new SummaryResult(summary, selection, approximate,
+				deadline.getElapsedMillis());
+	}
+	
+	/**
+	 * Generates a summary of the input text and extracts keywords from
+	 * the preprocessed summary sentences, segmenting and preprocessing
+	 * the text only once. If the keyword algorithm is the summarization
+	 * algorithm and ranks sentences and words together, one ranking
+	 * gives both, and the keywords are those of the whole document.
+	 * 
+	 * @param 	text				Text string to summarize.
+	 * @param 	percentage			Percentage of sentences to include in summary.
+	 * @param 	keywordAlgorithm	KeywordAlgorithm instance.
+	 * @return	Summary and keywords.
+	 */
+	public SummaryResult summarizeWithKeywords(String text, int percentage,
+			KeywordAlgorithm keywordAlgorithm) {
+		
+		long start = System.nanoTime();
+		
+		if (text.length() == 0) {
+			return new SummaryResult("", new ArrayList<Integer>(),
+					new ArrayList<String>(), 0);
+		}
+		
+		List<List<String>> sentences = segmenter.segment(text);
+		List<List<String>> preprocessed = preprocessor.process(sentences);
+		
+		List<Integer> selection;
+		List<String> keywords;
+		if (keywordAlgorithm == mead && mead instanceof BipartiteHITSAlgorithm) {
+			JointRanking ranking = ((BipartiteHITSAlgorithm) mead).rank(preprocessed, percentage);
+			selection = ranking.getSelection();
+			keywords = ranking.getKeywords();
+		} else {
+			selection = selectSentences(preprocessed, percentage);
+			
+			List<List<String>> selected = new ArrayList<List<String>>();
+			for (Integer index : selection) {
+				selected.add(preprocessed.get(index));
+			}
+			keywords = keywordAlgorithm.getKeywords(selected);
+		}
+		
+		List<String> original = segmenter.getOriginalSentences(text);
+		String summary = buildSummaryString(original, selection);
+		
+		return new SummaryResult(summary, selection, keywords,
+				(System.nanoTime() - start) / 1000000L);
+	}
+	
+	/**
+	 * Segments and preprocesses text into an AnalyzedDocument.
+	 * 
+	 * @param 	text	Text string.
+	 * @return	Analyzed document.
+	 */
+	public AnalyzedDocument analyze(String text) {
+		return AnalyzedDocument.analyze(text, segmenter, preprocessor);
+	}
+	
+	/**
+	 * Selects the summary sentences of a previously analyzed document,
+	 * for callers that show the summary in place rather than as text.
+	 * 
+	 * @param 	document	AnalyzedDocument of the source text.
+	 * @param 	percentage	Percentage of sentences to include in summary.
+	 * @return	List of indices of sentences included in summary.
+	 */
+	public List<Integer> select(AnalyzedDocument document, int percentage) {
+		return selectSentences(document.getSentences(), percentage);
+	}
+	
+	/**
+	 * Generates a summary from a previously analyzed document,
+	 * skipping sentence segmentation and preprocessing.
+	 * 
+	 * @param 	document	AnalyzedDocument of the source text.
+	 * @param 	text		Source text the document was analyzed from.
+	 * @param 	percentage	Percentage of sentences to include in summary.
+	 * @return	Summary string.
+	 * @throws 	IllegalArgumentException	If the text is not the source of the document.
+	 */
+	public String summarize(AnalyzedDocument document, String text, int percentage) {
+		
+		checkSource(document, text);
+		
+		if (document.getSentenceCount() > 0) {
+			List<Integer> selection = selectSentences(document.getSentences(), percentage);
+			List<String> original = document.getOriginalSentences(text);
+			String summary = buildSummaryString(original, selection);
+			
+			return summary;
+		}
+		
+		return "";
+	}
 
+	/**
+	 * Selects the sentences of a previously analyzed document that are
+	 * most relevant to a query. The MEAD scores of the document are
+	 * computed on its first query, with the MEAD algorithm of this
+	 * summarizer and its settings, and kept for the queries after it,
+	 * which then only visit sentences sharing a term with the query.
+	 * 
+	 * @param 	document	AnalyzedDocument of the source text.
+	 * @param 	query		Query text.
+	 * @param 	percentage	Percentage of sentences to include in summary.
+	 * @return	List of indices of sentences included in summary.
+	 */
+	public List<Integer> select(AnalyzedDocument document, String query, int percentage) {
+		
+		if (queryFocused == null) {
+			if (mead instanceof MeadAlgorithm) {
+				queryFocused = new QueryFocusedAlgorithm((MeadAlgorithm) mead);
+			} else {
+				MeadAlgorithm algorithm = new MeadAlgorithm(lambda);
+				algorithm.setCorpusStatistics(corpusStatistics);
+				queryFocused = new QueryFocusedAlgorithm(algorithm);
+			}
+		}
+		
+		if (document != queryDocument) {
+			queryFocused.setDocument(document.getSentences(), document.getPostingsIndex());
+			queryDocument = document;
+		}
+		
+		List<String> queryTerms = new ArrayList<String>();
+		for (List<String> sentence : preprocessor.process(segmenter.segment(query))) {
+			queryTerms.addAll(sentence);
+		}
+		
+		return queryFocused.getSelection(queryTerms, percentage);
+	}
+	
+	/**
+	 * Generates a summary of a previously analyzed document with
+	 * respect to a query, from the sentences that share its terms.
+	 * 
+	 * @param 	document	AnalyzedDocument of the source text.
+	 * @param 	text		Source text the document was analyzed from.
+	 * @param 	query		Query text.
+	 * @param 	percentage	Percentage of sentences to include in summary.
+	 * @return	Summary string, empty if no sentence matches the query.
+	 * @throws 	IllegalArgumentException	If the text is not the source of the document.
+	 */
+	public String summarize(AnalyzedDocument document, String text, String query,
+			int percentage) {
+		
+		checkSource(document, text);
+		
+		if (document.getSentenceCount() > 0 && query.length() > 0) {
+			List<Integer> selection = select(document, query, percentage);
+			List<String> original = document.getOriginalSentences(text);
+			
+			return buildSummaryString(original, selection);
+		}
+		
+		return "";
+	}
+	
+	/**
+	 * Discards the query algorithm and the MEAD scores of the
+	 * last queried document, after the MEAD settings change.
+	 */
+	private void resetQueryFocused() {
+		queryFocused = null;
+		queryDocument = null;
+	}
+	
+	/**
+	 * Checks that a text is the one a document was analyzed from,
+	 * before any work is done on the document.
+	 * 
+	 * @param 	document	AnalyzedDocument instance.
+	 * @param 	text		Text string.
+	 * @throws 	IllegalArgumentException	If the text is not the source.
+	 */
+	private void checkSource(AnalyzedDocument document, String text) {
+		if (!document.isSourceOf(text))
+			throw new IllegalArgumentException("Text is not the source of the analyzed document");
+	}
+	
+	/**
+	 * Counts the document into the corpus statistics, if set,
+	 * and runs the summarization algorithm.
+	 * 
+	 * @param 	sentences	List of tokenized sentences.
+	 * @param 	percentage	Percentage of sentences to include in summary.
+	 * @return	List of indices of sentences included in summary.
+	 */
+	List<Integer> selectSentences(List<List<String>> sentences, int percentage) {
+		if (corpusStatistics != null)
+			corpusStatistics.addDocument(sentences);
+		
+		if (planner == null)
+			return mead.getSelection(sentences, percentage);
+		
+		// The strategy is passed to this call only, rather than
+		// set on the MEAD instance, which other callers share.
+		int strategy = planner.plan(sentences);
+		
+		if (strategy == ExecutionPlanner.SECTIONED)
+			return getSectioned().getSelection(sentences, percentage);
+		
+		return ((MeadAlgorithm) mead).getSelection(sentences, percentage,
+				strategy == ExecutionPlanner.SPARSE, strategy == ExecutionPlanner.PARALLEL);
+	}
+	
+	/**
+	 * Gets the algorithm for documents the planner sections,
+	 * creating it on first use.
+	 * 
+	 * @return	HierarchicalMeadAlgorithm instance.
+	 */
+	private HierarchicalMeadAlgorithm getSectioned() {
+		if (sectioned == null) {
+			sectioned = new HierarchicalMeadAlgorithm();
+			sectioned.setCorpusStatistics(corpusStatistics);
+			sectioned.setLambda(lambda);
+		}
+		
+		return sectioned;
+	}
+	
+	/**
+	 * Puts the summary together by cutting the selected
+	 * sentences out of the text at their offsets.
+	 * 
+	 * @param 	text		Source text.
+	 * @param 	offsets		Character offset at which each sentence begins.
+	 * @param 	selection	Sorted list of sentence indices in summary.
+	 * @return	Summary string.
+	 */
+	String buildSummaryString(String text, List<Integer> offsets,
+			List<Integer> selection) {
+		
+		StringBuilder stringBuilder = new StringBuilder();
+		
+		for (Integer index : selection) {
+			int end = (index + 1 < offsets.size()) ? offsets.get(index + 1) : text.length();
+			stringBuilder.append(text, offsets.get(index), end);
+		}
+		
+		return stringBuilder.toString();
+	}
+	
 	/**
 	 * Puts the summary together using the original 
 	 * sentences and the indices of the sentences selected by
@@ -63,7 +467,7 @@ public class DocumentSummarizer {
 	 * @param 	selection	List of sentence indices in summary.
 	 * @return	Summary string.
 	 */
-	private String buildSummaryString(List<String> sentences,
+	String buildSummaryString(List<String> sentences,
 			List<Integer> selection) {
 		
 		StringBuilder stringBuilder = new StringBuilder(selection.size());
@@ -0,0 +1,233 @@
+package docsum.summarizer;
+
+import java.io.PrintStream;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Chooses how DocumentSummarizer runs MEAD on a document, from its
+ * number of sentences, tokens and distinct terms and the number of
+ * available processors:
+ * <ul>
+ * <li>SPARSE, the sequential pipeline over interned term ids and
+ * sparse vectors in a reused scratch arena, for everything up to
+ * the parallel threshold or on machines with few processors;</li>
+ * <li>PARALLEL, the pipeline chunked over the fork/join pool, which
+ * does more work in total than SPARSE and so needs several
+ * processors to come out ahead;</li>
+ * <li>SECTIONED, hierarchical MEAD over bounded sections, for
+ * documents whose whole-document model would not fit comfortably
+ * in the heap. The sentences themselves are already in memory;
+ * only the model built from them is bounded.</li>
+ * </ul>
+ * SPARSE and PARALLEL produce the same selection. SECTIONED ranks
+ * within sections first, so its selection can differ.
+ * <p>
+ * Distinct terms are only counted when the number of tokens alone
+ * does not rule out a model over the memory budget, so planning is
+ * a pass over the sentence lengths for most documents.
+ * <p>
+ * A hint forces a strategy for every document, and the thresholds
+ * can be changed. Each decision is kept with the measurements it
+ * was made on and is printed to the log stream, if one is set.
+ */
+public class ExecutionPlanner {
+	
+	public static final int AUTO = -1;
+	public static final int SPARSE = 0;
+	public static final int PARALLEL = 1;
+	public static final int SECTIONED = 2;
+	
+	static final String[] STRATEGY_NAMES = {"sparse", "parallel", "sectioned"};
+	
+	static final int DEFAULT_PARALLEL_SENTENCES = 2000;
+	static final int DEFAULT_PARALLEL_PROCESSORS = 4;
+	static final int DEFAULT_SECTIONED_SENTENCES = 200000;
+	
+	// Rough heap cost of the document model, per token for sentence
+	// vectors and per distinct term for the term maps.
+	static final long BYTES_PER_TOKEN = 48;
+	static final long BYTES_PER_TERM = 256;
+	
+	int hint;
+	int parallelSentences;
+	int parallelProcessors;
+	int sectionedSentences;
+	int numProcessors;
+	long memoryBudget;
+	PrintStream log;
+	
+	int lastStrategy;
+	String lastDecision;
+	
+	/**
+	 * Constructor with the default thresholds, the processors
+	 * available to the JVM and half the maximum heap as the
+	 * memory budget of a document model.
+	 */
+	public ExecutionPlanner() {
+		hint = AUTO;
+		parallelSentences = DEFAULT_PARALLEL_SENTENCES;
+		parallelProcessors = DEFAULT_PARALLEL_PROCESSORS;
+		sectionedSentences = DEFAULT_SECTIONED_SENTENCES;
+		numProcessors = Runtime.getRuntime().availableProcessors();
+		memoryBudget = Runtime.getRuntime().maxMemory() / 2;
+		lastStrategy = AUTO;
+	}
+	
+	/**
+	 * Forces a strategy for every document.
+	 * 
+	 * @param 	hint	SPARSE, PARALLEL, SECTIONED, or AUTO to plan.
+	 */
+	public void setHint(int hint) {
+		if (hint < AUTO || hint > SECTIONED)
+			throw new IllegalArgumentException("Unknown strategy: " + hint);
+		
+		this.hint = hint;
+	}
+	
+	/**
+	 * Sets when documents are scored in parallel.
+	 * 
+	 * @param 	sentences	Minimum number of sentences.
+	 * @param 	processors	Minimum number of available processors.
+	 */
+	public void setParallelLimits(int sentences, int processors) {
+		parallelSentences = sentences;
+		parallelProcessors = processors;
+	}
+	
+	/**
+	 * Sets when documents are summarized in sections.
+	 * 
+	 * @param 	sentences		Minimum number of sentences.
+	 * @param 	memoryBudget	Estimated model size in bytes above which
+	 * 							documents of any length are sectioned.
+	 */
+	public void setSectionedLimits(int sentences, long memoryBudget) {
+		sectionedSentences = sentences;
+		this.memoryBudget = memoryBudget;
+	}
+	
+	/**
+	 * Sets the number of processors planned for, such as the
+	 * parallelism of a pool smaller than the machine.
+	 * 
+	 * @param 	numProcessors	Number of processors.
+	 */
+	public void setNumProcessors(int numProcessors) {
+		this.numProcessors = numProcessors;
+	}
+	
+	/**
+	 * Sets the stream each decision is printed to.
+	 * 
+	 * @param 	log		PrintStream instance, or null for no logging.
+	 */
+	public void setLog(PrintStream log) {
+		this.log = log;
+	}
+	
+	/**
+	 * Chooses the strategy for a document.
+	 * 
+	 * @param 	sentences	List of tokenized sentences.
+	 * @return	SPARSE, PARALLEL or SECTIONED.
+	 */
+	public int plan(List<List<String>> sentences) {
+		
+		int numSentences = sentences.size();
+		long numTokens = 0;
+		for (int i=0; i<numSentences; i++) {
+			numTokens += sentences.get(i).size();
+		}
+		
+		// Each token adds at most one term, which bounds the model.
+		// The terms are only counted if the bound is over budget.
+		long modelBytes = numTokens * (BYTES_PER_TOKEN + BYTES_PER_TERM);
+		int numTerms = -1;
+		if (hint == AUTO && numSentences < sectionedSentences && modelBytes > memoryBudget) {
+			numTerms = countTerms(sentences);
+			modelBytes = numTokens * BYTES_PER_TOKEN + numTerms * BYTES_PER_TERM;
+		}
+		
+		int strategy;
+		String reason;
+		if (hint != AUTO) {
+			strategy = hint;
+			reason = "hint";
+		} else if (numSentences >= sectionedSentences) {
+			strategy = SECTIONED;
+			reason = "sentences >= " + sectionedSentences;
+		} else if (modelBytes > memoryBudget) {
+			strategy = SECTIONED;
+			reason = "model > " + memoryBudget + " bytes";
+		} else if (numSentences >= parallelSentences && numProcessors >= parallelProcessors) {
+			strategy = PARALLEL;
+			reason = "sentences >= " + parallelSentences + ", processors >= " + parallelProcessors;
+		} else {
+			strategy = SPARSE;
+			reason = (numSentences >= parallelSentences) ? "processors < " + parallelProcessors
+					: "sentences < " + parallelSentences;
+		}
+		
+		lastStrategy = strategy;
+		lastDecision = "strategy=" + getStrategyName(strategy)
+				+ " sentences=" + numSentences
+				+ " tokens=" + numTokens
+				+ ((numTerms >= 0) ? " terms=" + numTerms + " model=" : " model<=") + modelBytes
+				+ " processors=" + numProcessors
+				+ " (" + reason + ")";
+		
+		if (log != null)
+			log.println("ExecutionPlanner: " + lastDecision);
+		
+		return strategy;
+	}
+	
+	/**
+	 * Counts the distinct terms of a document.
+	 * 
+	 * @param 	sentences	List of tokenized sentences.
+	 * @return	Number of distinct terms.
+	 */
+	private static int countTerms(List<List<String>> sentences) {
+		Set<String> vocabulary = new HashSet<String>();
+		
+		for (List<String> sentence : sentences) {
+			vocabulary.addAll(sentence);
+		}
+		
+		return vocabulary.size();
+	}
+	
+	/**
+	 * Gets the strategy chosen for the last document.
+	 * 
+	 * @return	Strategy, or AUTO if nothing has been planned.
+	 */
+	public int getLastStrategy() {
+		return lastStrategy;
+	}
+	
+	/**
+	 * Gets the last decision and its measurements on one line, for logging.
+	 * 
+	 * @return	Decision string, or null if nothing has been planned.
+	 */
+	public String getLastDecision() {
+		return lastDecision;
+	}
+	
+	/**
+	 * Gets the name of a strategy.
+	 * 
+	 * @param 	strategy	Strategy constant.
+	 * @return	Lower-case name, or "auto".
+	 */
+	public static String getStrategyName(int strategy) {
+		return (strategy == AUTO) ? "auto" : STRATEGY_NAMES[strategy];
+	}
+}
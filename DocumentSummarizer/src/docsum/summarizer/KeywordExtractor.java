@@ -1,5 +1,6 @@
 package docsum.summarizer;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import docsum.algorithm.HITSAlgorithm;
@@ -28,6 +29,20 @@ public class KeywordExtractor {
 		this.preprocessor = preprocessor;
 		hits = new HITSAlgorithm();
 	}
+	
+	/**
+	 * Constructor with a specific keyword algorithm.
+	 * 
+	 * @param segmenter		SentenceSegmenter instance.
+	 * @param preprocessor	SentencePreprocessor instance.
+	 * @param algorithm		KeywordAlgorithm instance.
+	 */
+	public KeywordExtractor(SentenceSegmenter segmenter,
+			SentencePreprocessor preprocessor, KeywordAlgorithm algorithm) {
+		this.segmenter = segmenter;
+		this.preprocessor = preprocessor;
+		hits = algorithm;
+	}
 
 	/**
 	 * Extracts a list of keywords from the source text.
@@ -43,6 +58,61 @@ public class KeywordExtractor {
 		
 		return makeKeywordString(keywords, 20);
 	}
+	
+	/**
+	 * Extracts a list of keywords from a previously analyzed
+	 * document, skipping sentence segmentation and preprocessing.
+	 * 
+	 * @param 	document	AnalyzedDocument of the source text.
+	 * @return	Comma-separated list of top keywords.
+	 */
+	public String extract(AnalyzedDocument document) {
+		
+		List<String> keywords = hits.getKeywords(document.getSentences());
+		
+		return makeKeywordString(keywords, 20);
+	}
+
+	/**
+	 * Extracts a list of keywords from some of the sentences
+	 * of a previously analyzed document, such as its summary.
+	 * 
+	 * @param 	document	AnalyzedDocument of the source text.
+	 * @param 	selection	List of indices of sentences to use.
+	 * @return	Comma-separated list of top keywords.
+	 */
+	public String extract(AnalyzedDocument document, List<Integer> selection) {
+		
+		List<List<String>> sentences = document.getSentences();
+		List<List<String>> selected = new ArrayList<List<String>>();
+		for (Integer index : selection) {
+			selected.add(sentences.get(index));
+		}
+		
+		List<String> keywords = hits.getKeywords(selected);
+		
+		return makeKeywordString(keywords, 20);
+	}
+
+	/**
+	 * Gets the keyword algorithm, for callers that
+	 * extract keywords along with a summary.
+	 * 
+	 * @return	KeywordAlgorithm instance.
+	 */
+	public KeywordAlgorithm getAlgorithm() {
+		return hits;
+	}
+	
+	/**
+	 * Joins the top keywords into the string returned by extract.
+	 * 
+	 * @param 	keywords	List of keywords, best first.
+	 * @return	Comma-separated list of top keywords.
+	 */
+	public String makeKeywordString(List<String> keywords) {
+		return makeKeywordString(keywords, 20);
+	}
 
 	/**
 	 * Joins top k extracted keywords together
@@ -0,0 +1,72 @@
+package docsum.summarizer;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+
+/**
+ * One step of the SummarizationPipeline. Receives jobs from the
+ * previous stage, applies its step and publishes them to the next.
+ * <p>
+ * The stage requests one job at a time from upstream, and only
+ * after the processed job has been accepted downstream. Publishing
+ * blocks while the downstream buffer is full, so a slow stage holds
+ * back the stages before it instead of letting queues grow.
+ */
+public class PipelineStage extends SubmissionPublisher<SummaryJob>
+		implements Flow.Processor<SummaryJob, SummaryJob> {
+	
+	/**
+	 * Work done by a stage on each job.
+	 */
+	public interface Step {
+		
+		/**
+		 * Processes a job, storing the result on it.
+		 * 
+		 * @param 	job		SummaryJob instance.
+		 */
+		public void apply(SummaryJob job);
+	}
+	
+	Step step;
+	Flow.Subscription subscription;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param 	step		Work done on each job.
+	 * @param 	executor	Executor delivering jobs to the next stage.
+	 * @param 	bufferSize	Maximum number of jobs buffered for the next stage.
+	 */
+	public PipelineStage(Step step, Executor executor, int bufferSize) {
+		super(executor, bufferSize);
+		this.step = step;
+	}
+	
+	public void onSubscribe(Flow.Subscription subscription) {
+		this.subscription = subscription;
+		subscription.request(1);
+	}
+	
+	public void onNext(SummaryJob job) {
+		if (job.error == null) {
+			try {
+				step.apply(job);
+			} catch (RuntimeException e) {
+				job.error = e;
+			}
+		}
+		
+		submit(job);
+		subscription.request(1);
+	}
+	
+	public void onError(Throwable throwable) {
+		closeExceptionally(throwable);
+	}
+	
+	public void onComplete() {
+		close();
+	}
+}
@@ -6,8 +6,6 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Preprocesses tokenized sentences with the
@@ -17,6 +15,9 @@ import java.util.regex.Pattern;
  */
 public class SentencePreprocessor {
 	
+	// One bit per Unicode code point, set for letters and digits.
+	static final long[] WORD_CHARACTERS = makeWordCharacters();
+	
 	List<String> stopwords;
 	
 	/**
@@ -76,18 +77,13 @@ public class SentencePreprocessor {
 		// the document is a list of sentences.
 		List<List<String>> processed = new ArrayList<List<String>>();
 			
-		// Make a regex pattern to match strings with letters or numbers.
-		Pattern notPuncPattern = Pattern.compile("[A-Za-z0-9]+");
-			
 		for (List<String> sentence: document) {
 			List<String> newTokens = new ArrayList<String>();
 				
 			// If a string has letters or numbers, it is not just
 			// punctuation, so add it to the list.
 			for (String word : sentence) {
-				Matcher matcher = notPuncPattern.matcher(word);
-					
-				if (matcher.find()) {
+				if (isWord(word)) {
 					newTokens.add(word);
 				}
 			}
@@ -98,6 +94,48 @@ public class SentencePreprocessor {
 		return processed;
 	}
 	
+	/**
+	 * Checks whether a token contains a letter or digit
+	 * in any script, looking each code point up in a table.
+	 * 
+	 * @param 	word	Token string.
+	 * @return	True if the token is not just punctuation.
+	 */
+	static boolean isWord(String word) {
+		int length = word.length();
+		
+		for (int i=0; i<length; i++) {
+			int codePoint = word.charAt(i);
+			
+			// Combine surrogate pairs into supplementary code points.
+			if (Character.isHighSurrogate((char) codePoint) && i + 1 < length
+					&& Character.isLowSurrogate(word.charAt(i + 1))) {
+				codePoint = Character.toCodePoint((char) codePoint, word.charAt(++i));
+			}
+			
+			if ((WORD_CHARACTERS[codePoint >>> 6] & (1L << codePoint)) != 0)
+				return true;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Builds the table of letter and digit code points.
+	 * 
+	 * @return	Bit set indexed by code point.
+	 */
+	private static long[] makeWordCharacters() {
+		long[] table = new long[(Character.MAX_CODE_POINT >>> 6) + 1];
+		
+		for (int codePoint=0; codePoint<=Character.MAX_CODE_POINT; codePoint++) {
+			if (Character.isLetterOrDigit(codePoint))
+				table[codePoint >>> 6] |= 1L << codePoint;
+		}
+		
+		return table;
+	}
+	
 	/**
 	 * Makes all words in all sentences lower-case.
 	 * 
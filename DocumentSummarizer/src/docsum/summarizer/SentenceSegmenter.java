@@ -53,6 +53,40 @@ public class SentenceSegmenter {
 		return sentences;
 	}
 	
+	/**
+	 * Splits text into list of tokenized sentences, recording
+	 * the character offset at which each sentence begins, as
+	 * getSentenceOffsets does, in the same pass.
+	 * 
+	 * @param 	text		Text string.
+	 * @param 	offsets		List to which sentence start offsets are added.
+	 * @return	List of lists of strings representing sentences.
+	 */
+	public List<List<String>> segment(String text, List<Integer> offsets) {
+		
+		List<List<String>> sentences = new ArrayList<List<String>>();
+		Reader reader = new StringReader(text);
+		DocumentPreprocessor preprocessor = new DocumentPreprocessor(reader);
+		String tokenizerOptions = "invertible=true";
+		TokenizerFactory<? extends HasWord> tf = PTBTokenizer.factory(
+				new CoreLabelTokenFactory(), 
+				tokenizerOptions);
+		preprocessor.setTokenizerFactory(tf);
+		
+		for (List<HasWord> sentence : preprocessor) {
+			List<String> tokens = new ArrayList<String>();
+			
+			for (HasWord token : sentence) {
+				tokens.add(token.word());
+			}
+			
+			sentences.add(tokens);
+			offsets.add(((CoreLabel) sentence.get(0)).beginPosition());
+		}
+		
+		return sentences;
+	}
+	
 	/**
 	 * Split texts string into list of untokenized sentences.
 	 * 
@@ -92,4 +126,33 @@ public class SentenceSegmenter {
 		
 		return sentenceList;
 	}
+	
+	/**
+	 * Finds the character offset in the text at which each sentence
+	 * begins. Sentence i spans from its offset to the offset of
+	 * sentence i+1, or to the end of the text for the last sentence,
+	 * matching the strings returned by getOriginalSentences.
+	 * 
+	 * @param 	text	Text string.
+	 * @return	List of sentence start offsets.
+	 */
+	public List<Integer> getSentenceOffsets(String text) {
+		
+		List<Integer> offsets = new ArrayList<Integer>();
+		
+		Reader reader = new StringReader(text);
+		DocumentPreprocessor preprocessor = new DocumentPreprocessor(reader);
+		String tokenizerOptions = "invertible=true";
+		TokenizerFactory<? extends HasWord> tf = PTBTokenizer.factory(
+				new CoreLabelTokenFactory(), 
+				tokenizerOptions);
+		preprocessor.setTokenizerFactory(tf);
+		
+		for (List<HasWord> sentence : preprocessor) {
+			CoreLabel first = (CoreLabel) sentence.get(0);
+			offsets.add(first.beginPosition());
+		}
+		
+		return offsets;
+	}
 }
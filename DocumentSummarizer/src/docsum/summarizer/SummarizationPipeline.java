@@ -0,0 +1,130 @@
+package docsum.summarizer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Summarizes a stream of documents as a chain of pipelined stages:
+ * segmentation, preprocessing, scoring and rendering. Each stage
+ * works on a different document at the same time, and the bounded
+ * buffers between stages apply backpressure to the publisher when
+ * documents arrive faster than they can be summarized.
+ * <p>
+ * Subscribe the pipeline to a publisher of SummaryJob instances,
+ * such as a SubmissionPublisher, and subscribe a consumer to the
+ * pipeline to receive the jobs with their summaries filled in, in
+ * the order they were published.
+ * <p>
+ * The scoring stage selects sentences as the DocumentSummarizer
+ * does, and the rendering stage cuts them out of the text at the
+ * offsets recorded when the text was segmented.
+ */
+public class SummarizationPipeline implements Flow.Processor<SummaryJob, SummaryJob> {
+	
+	DocumentSummarizer summarizer;
+	List<PipelineStage> stages;
+	
+	/**
+	 * Constructor using the common fork/join pool
+	 * and buffers of 16 jobs between stages.
+	 * 
+	 * @param 	summarizer	DocumentSummarizer instance.
+	 */
+	public SummarizationPipeline(DocumentSummarizer summarizer) {
+		this(summarizer, ForkJoinPool.commonPool(), 16);
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param 	summarizer	DocumentSummarizer instance.
+	 * @param 	executor	Executor running the stages.
+	 * @param 	bufferSize	Maximum number of jobs buffered between stages.
+	 */
+	public SummarizationPipeline(DocumentSummarizer summarizer, Executor executor,
+			int bufferSize) {
+		this.summarizer = summarizer;
+		
+		stages = new ArrayList<PipelineStage>();
+		stages.add(new PipelineStage(new SegmentStep(), executor, bufferSize));
+		stages.add(new PipelineStage(new PreprocessStep(), executor, bufferSize));
+		stages.add(new PipelineStage(new ScoreStep(), executor, bufferSize));
+		stages.add(new PipelineStage(new RenderStep(), executor, bufferSize));
+		
+		for (int i=0; i<stages.size()-1; i++) {
+			stages.get(i).subscribe(stages.get(i+1));
+		}
+	}
+	
+	public void subscribe(Flow.Subscriber<? super SummaryJob> subscriber) {
+		stages.get(stages.size()-1).subscribe(subscriber);
+	}
+	
+	public void onSubscribe(Flow.Subscription subscription) {
+		stages.get(0).onSubscribe(subscription);
+	}
+	
+	public void onNext(SummaryJob job) {
+		stages.get(0).onNext(job);
+	}
+	
+	public void onError(Throwable throwable) {
+		stages.get(0).onError(throwable);
+	}
+	
+	public void onComplete() {
+		stages.get(0).onComplete();
+	}
+	
+	/**
+	 * Splits the text into tokenized sentences,
+	 * recording the offset of each sentence.
+	 */
+	class SegmentStep implements PipelineStage.Step {
+		public void apply(SummaryJob job) {
+			job.offsets = new ArrayList<Integer>();
+			job.sentences = (job.text.length() > 0)
+					? summarizer.segmenter.segment(job.text, job.offsets)
+					: new ArrayList<List<String>>();
+		}
+	}
+	
+	/**
+	 * Preprocesses the tokenized sentences.
+	 */
+	class PreprocessStep implements PipelineStage.Step {
+		public void apply(SummaryJob job) {
+			job.preprocessed = summarizer.preprocessor.process(job.sentences);
+		}
+	}
+	
+	/**
+	 * Selects the summary sentences.
+	 */
+	class ScoreStep implements PipelineStage.Step {
+		public void apply(SummaryJob job) {
+			job.selection = (job.preprocessed.size() > 0)
+					? summarizer.selectSentences(job.preprocessed, job.percentage)
+					: new ArrayList<Integer>();
+		}
+	}
+	
+	/**
+	 * Builds the summary string from the sentence offsets.
+	 */
+	class RenderStep implements PipelineStage.Step {
+		public void apply(SummaryJob job) {
+			job.summary = (job.selection.size() > 0)
+					? summarizer.buildSummaryString(job.text, job.offsets, job.selection)
+					: "";
+			
+			// Release intermediate results once the summary is built.
+			job.sentences = null;
+			job.offsets = null;
+			job.preprocessed = null;
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package docsum.summarizer;
+
+import java.util.List;
+
+/**
+ * A document passing through the SummarizationPipeline, with
+ * the intermediate results of each stage and the final summary.
+ */
+public class SummaryJob {
+	
+	String text;
+	int percentage;
+	
+	List<List<String>> sentences;
+	List<Integer> offsets;
+	List<List<String>> preprocessed;
+	List<Integer> selection;
+	String summary;
+	RuntimeException error;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param 	text		Text string to summarize.
+	 * @param 	percentage	Percentage of sentences to include in summary.
+	 */
+	public SummaryJob(String text, int percentage) {
+		this.text = text;
+		this.percentage = percentage;
+	}
+	
+	/**
+	 * Gets the source text.
+	 * 
+	 * @return	Text string.
+	 */
+	public String getText() {
+		return text;
+	}
+	
+	/**
+	 * Gets the requested summary length.
+	 * 
+	 * @return	Percentage of sentences to include in summary.
+	 */
+	public int getPercentage() {
+		return percentage;
+	}
+	
+	/**
+	 * Gets the summary, once the job has left the pipeline.
+	 * 
+	 * @return	Summary string, or null if a stage failed.
+	 */
+	public String getSummary() {
+		return summary;
+	}
+	
+	/**
+	 * Gets the exception thrown by a stage, if any.
+	 * Later stages skip jobs that have failed.
+	 * 
+	 * @return	Exception, or null if all stages succeeded.
+	 */
+	public RuntimeException getError() {
+		return error;
+	}
+}
@@ -0,0 +1,93 @@
+package docsum.summarizer;
+
+import java.util.List;
+
+/**
+ * Summary with the sentences it was built from, flagged as
+ * approximate if the engine had to degrade it to meet a time
+ * budget, and with the keywords of the document if requested.
+ */
+public class SummaryResult {
+	
+	String summary;
+	List<Integer> selection;
+	boolean approximate;
+	long elapsedMillis;
+	List<String> keywords;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param 	summary			Summary string.
+	 * @param 	selection		List of indices of sentences in summary.
+	 * @param 	approximate		Whether the summary was degraded to meet the budget.
+	 * @param 	elapsedMillis	Time taken in milliseconds.
+	 */
+	SummaryResult(String summary, List<Integer> selection,
+			boolean approximate, long elapsedMillis) {
+		this.summary = summary;
+		this.selection = selection;
+		this.approximate = approximate;
+		this.elapsedMillis = elapsedMillis;
+	}
+	
+	/**
+	 * Constructor for a summary with keywords.
+	 * 
+	 * @param 	summary			Summary string.
+	 * @param 	selection		List of indices of sentences in summary.
+	 * @param 	keywords		List of keywords, best first.
+	 * @param 	elapsedMillis	Time taken in milliseconds.
+	 */
+	SummaryResult(String summary, List<Integer> selection,
+			List<String> keywords, long elapsedMillis) {
+		this(summary, selection, false, elapsedMillis);
+		this.keywords = keywords;
+	}
+	
+	/**
+	 * Gets the summary.
+	 * 
+	 * @return	Summary string.
+	 */
+	public String getSummary() {
+		return summary;
+	}
+	
+	/**
+	 * Gets the selected sentences.
+	 * 
+	 * @return	List of indices of sentences in summary.
+	 */
+	public List<Integer> getSelection() {
+		return selection;
+	}
+	
+	/**
+	 * Checks whether the summary is approximate, because steps
+	 * of the algorithm were skipped or simplified to meet the budget.
+	 * 
+	 * @return	True if the summary is approximate.
+	 */
+	public boolean isApproximate() {
+		return approximate;
+	}
+	
+	/**
+	 * Gets the time taken to produce the summary.
+	 * 
+	 * @return	Elapsed time in milliseconds.
+	 */
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+	
+	/**
+	 * Gets the keywords.
+	 * 
+	 * @return	List of keywords, best first, or null if none were requested.
+	 */
+	public List<String> getKeywords() {
+		return keywords;
+	}
+}
@@ -0,0 +1,349 @@
+package docsum.summarizer;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import docsum.algorithm.HierarchicalMeadAlgorithm;
+
+/**
+ * Schedules summarization requests by estimated cost, so that a
+ * few very large documents do not hold up many small ones.
+ * <p>
+ * The cost of a request is estimated from its length in characters
+ * and a count of sentence-ending punctuation, without tokenizing it.
+ * Requests below a threshold go to the small lane, which has most of
+ * the worker threads. Larger requests go to the large lane, which has
+ * its own few threads and a short bounded queue. The large lane splits
+ * each document into sections that are summarized in parallel on a
+ * separate pool, sized independently of both lanes, so large jobs
+ * never occupy small-lane threads.
+ * <p>
+ * Submissions beyond a lane's queue capacity are rejected with a
+ * RejectedExecutionException. Each lane reports its queue depth,
+ * counts and mean queueing time.
+ */
+public class SummaryScheduler {
+	
+	static final int SENTENCE_COST = 100;
+	public static final long DEFAULT_LARGE_THRESHOLD = 100000;
+	static final int DEFAULT_SMALL_QUEUE = 10000;
+	static final int DEFAULT_LARGE_QUEUE = 16;
+	static final int SECTION_SIZE = 1000;
+	
+	SentenceSegmenter segmenter;
+	SentencePreprocessor preprocessor;
+	long largeThreshold;
+	Lane smallLane;
+	Lane largeLane;
+	ForkJoinPool sectionPool;
+	
+	/**
+	 * Constructor with default lanes. The small lane gets all but
+	 * one processor and the large lane gets the remaining one. The
+	 * sections of a large document are summarized on a quarter of
+	 * the processors.
+	 * 
+	 * @param 	segmenter		SentenceSegmenter instance.
+	 * @param 	preprocessor	SentencePreprocessor instance.
+	 */
+	public SummaryScheduler(SentenceSegmenter segmenter, SentencePreprocessor preprocessor) {
+		this(segmenter, preprocessor, DEFAULT_LARGE_THRESHOLD,
+				Math.max(1, Runtime.getRuntime().availableProcessors() - 1), DEFAULT_SMALL_QUEUE,
+				1, DEFAULT_LARGE_QUEUE,
+				Math.max(1, Runtime.getRuntime().availableProcessors() / 4));
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param 	segmenter		SentenceSegmenter instance.
+	 * @param 	preprocessor	SentencePreprocessor instance.
+	 * @param 	largeThreshold	Estimated cost at which a request is large.
+	 * @param 	smallThreads	Number of small-lane worker threads.
+	 * @param 	smallQueue		Capacity of the small-lane queue.
+	 * @param 	largeThreads	Number of large-lane worker threads.
+	 * @param 	largeQueue		Capacity of the large-lane queue.
+	 * @param 	sectionThreads	Number of threads summarizing sections of large documents.
+	 */
+	public SummaryScheduler(SentenceSegmenter segmenter, SentencePreprocessor preprocessor,
+			long largeThreshold, int smallThreads, int smallQueue,
+			int largeThreads, int largeQueue, int sectionThreads) {
+		this.segmenter = segmenter;
+		this.preprocessor = preprocessor;
+		this.largeThreshold = largeThreshold;
+		
+		sectionPool = new ForkJoinPool(sectionThreads);
+		smallLane = new Lane("small", smallThreads, smallQueue, false);
+		largeLane = new Lane("large", largeThreads, largeQueue, true);
+	}
+	
+	/**
+	 * Submits a summarization request to the lane for its size.
+	 * 
+	 * @param 	text		Text string to summarize.
+	 * @param 	percentage	Percentage of sentences to include in summary.
+	 * @return	Future summary string.
+	 * @throws 	RejectedExecutionException	If the lane's queue is full.
+	 */
+	public Future<String> submit(String text, int percentage) {
+		return getLane(text).submit(text, percentage);
+	}
+	
+	/**
+	 * Gets the lane a request would be routed to.
+	 * 
+	 * @param 	text	Text string to summarize.
+	 * @return	Small or large lane.
+	 */
+	public Lane getLane(String text) {
+		return (estimateCost(text) >= largeThreshold) ? largeLane : smallLane;
+	}
+	
+	/**
+	 * Estimates the cost of summarizing a text as its length plus
+	 * a fixed cost per sentence, counting a sentence wherever '.',
+	 * '!' or '?' is followed by whitespace or the end of the text.
+	 * 
+	 * @param 	text	Text string.
+	 * @return	Estimated cost in characters.
+	 */
+	public static long estimateCost(String text) {
+		int length = text.length();
+		long sentences = 0;
+		
+		for (int i=0; i<length; i++) {
+			char c = text.charAt(i);
+			if ((c == '.' || c == '!' || c == '?')
+					&& (i + 1 == length || Character.isWhitespace(text.charAt(i + 1))))
+				sentences++;
+		}
+		
+		return length + SENTENCE_COST * sentences;
+	}
+	
+	/**
+	 * Gets the lane for small requests.
+	 * 
+	 * @return	Small lane.
+	 */
+	public Lane getSmallLane() {
+		return smallLane;
+	}
+	
+	/**
+	 * Gets the lane for large requests.
+	 * 
+	 * @return	Large lane.
+	 */
+	public Lane getLargeLane() {
+		return largeLane;
+	}
+	
+	/**
+	 * Gets the metrics of both lanes on one line, for logging.
+	 * 
+	 * @return	Metrics string.
+	 */
+	public String getMetrics() {
+		return smallLane.getMetrics() + "; " + largeLane.getMetrics();
+	}
+	
+	/**
+	 * Stops accepting requests and lets queued requests finish.
+	 */
+	public void shutdown() {
+		smallLane.executor.shutdown();
+		largeLane.executor.shutdown();
+		sectionPool.shutdown();
+	}
+	
+	/**
+	 * Worker threads and queue for one class of requests,
+	 * with a summarizer per thread and queue metrics.
+	 */
+	public class Lane {
+		
+		String name;
+		ThreadPoolExecutor executor;
+		ThreadLocal<DocumentSummarizer> summarizers;
+		AtomicLong submitted;
+		AtomicLong completed;
+		AtomicLong rejected;
+		AtomicLong waitNanos;
+		AtomicInteger maxQueueDepth;
+		
+		/**
+		 * Constructor.
+		 * 
+		 * @param 	name		Lane name, used for thread names and metrics.
+		 * @param 	threads		Number of worker threads.
+		 * @param 	capacity	Capacity of the queue.
+		 * @param 	sections	Whether to summarize documents in sections.
+		 */
+		Lane(final String name, int threads, int capacity, final boolean sections) {
+			this.name = name;
+			submitted = new AtomicLong();
+			completed = new AtomicLong();
+			rejected = new AtomicLong();
+			waitNanos = new AtomicLong();
+			maxQueueDepth = new AtomicInteger();
+			
+			BlockingQueue<Runnable> queue = new ArrayBlockingQueue<Runnable>(capacity);
+			executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+					queue, new ThreadFactory() {
+						AtomicInteger count = new AtomicInteger();
+						
+						public Thread newThread(Runnable runnable) {
+							Thread thread = new Thread(runnable,
+									"summary-" + name + "-" + count.incrementAndGet());
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+			
+			// Each worker thread gets its own summarizer,
+			// since the algorithms rebuild their models in place.
+			summarizers = new ThreadLocal<DocumentSummarizer>() {
+				protected DocumentSummarizer initialValue() {
+					if (sections) {
+						return new DocumentSummarizer(segmenter, preprocessor,
+								new HierarchicalMeadAlgorithm(SECTION_SIZE, sectionPool));
+					}
+					return new DocumentSummarizer(segmenter, preprocessor);
+				}
+			};
+		}
+		
+		/**
+		 * Queues a summarization request.
+		 * 
+		 * @param 	text		Text string to summarize.
+		 * @param 	percentage	Percentage of sentences to include in summary.
+		 * @return	Future summary string.
+		 * @throws 	RejectedExecutionException	If the queue is full.
+		 */
+		Future<String> submit(final String text, final int percentage) {
+			final long enqueued = System.nanoTime();
+			
+			Future<String> future;
+			try {
+				future = executor.submit(new Callable<String>() {
+					public String call() {
+						waitNanos.addAndGet(System.nanoTime() - enqueued);
+						try {
+							return summarizers.get().summarize(text, percentage);
+						} finally {
+							completed.incrementAndGet();
+						}
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				rejected.incrementAndGet();
+				throw e;
+			}
+			
+			submitted.incrementAndGet();
+			int depth = getQueueDepth();
+			int max = maxQueueDepth.get();
+			while (depth > max && !maxQueueDepth.compareAndSet(max, depth)) {
+				max = maxQueueDepth.get();
+			}
+			
+			return future;
+		}
+		
+		/**
+		 * Gets the lane name.
+		 * 
+		 * @return	Lane name.
+		 */
+		public String getName() {
+			return name;
+		}
+		
+		/**
+		 * Gets the number of requests waiting for a worker.
+		 * 
+		 * @return	Queue depth.
+		 */
+		public int getQueueDepth() {
+			return executor.getQueue().size();
+		}
+		
+		/**
+		 * Gets the largest queue depth seen after a submission.
+		 * 
+		 * @return	Maximum queue depth.
+		 */
+		public int getMaxQueueDepth() {
+			return maxQueueDepth.get();
+		}
+		
+		/**
+		 * Gets the number of requests being summarized.
+		 * 
+		 * @return	Number of busy workers.
+		 */
+		public int getActiveCount() {
+			return executor.getActiveCount();
+		}
+		
+		/**
+		 * Gets the number of accepted requests.
+		 * 
+		 * @return	Number of requests submitted.
+		 */
+		public long getSubmitted() {
+			return submitted.get();
+		}
+		
+		/**
+		 * Gets the number of finished requests, including failed ones.
+		 * 
+		 * @return	Number of requests completed.
+		 */
+		public long getCompleted() {
+			return completed.get();
+		}
+		
+		/**
+		 * Gets the number of requests turned away by a full queue.
+		 * 
+		 * @return	Number of requests rejected.
+		 */
+		public long getRejected() {
+			return rejected.get();
+		}
+		
+		/**
+		 * Gets the mean time requests waited in the queue.
+		 * 
+		 * @return	Mean queueing time in milliseconds.
+		 */
+		public double getMeanWaitMillis() {
+			long started = completed.get() + executor.getActiveCount();
+			return (started == 0) ? 0.0 : waitNanos.get() / 1e6 / started;
+		}
+		
+		/**
+		 * Gets the lane metrics on one line, for logging.
+		 * 
+		 * @return	Metrics string.
+		 */
+		public String getMetrics() {
+			return String.format("%s: depth=%d max=%d active=%d submitted=%d "
+					+ "completed=%d rejected=%d wait=%.1fms",
+					name, getQueueDepth(), getMaxQueueDepth(), getActiveCount(),
+					getSubmitted(), getCompleted(), getRejected(), getMeanWaitMillis());
+		}
+	}
+}
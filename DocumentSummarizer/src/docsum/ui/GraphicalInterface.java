@@ -16,6 +16,7 @@ import javax.swing.JScrollPane;
 import javax.swing.JSlider;
 import javax.swing.JTextArea;
 import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 import javax.swing.event.DocumentEvent;
@@ -24,10 +25,12 @@ import javax.swing.filechooser.FileNameExtensionFilter;
 import javax.swing.text.DefaultEditorKit;
 import javax.swing.text.Document;
 
+import docsum.summarizer.AnalyzedDocument;
 import docsum.summarizer.DocumentSummarizer;
 import docsum.summarizer.KeywordExtractor;
 import docsum.summarizer.SentencePreprocessor;
 import docsum.summarizer.SentenceSegmenter;
+import docsum.summarizer.SummaryResult;
 
 import java.awt.BorderLayout;
 import java.awt.Component;
@@ -37,9 +40,13 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Graphical user interface for summarizer program.
@@ -49,11 +56,19 @@ import java.io.IOException;
 public class GraphicalInterface extends JFrame {
 
 	private static final long serialVersionUID = 6253527329314698074L;
+	
+	// Files larger than this are shown in the LargeTextViewer.
+	static final long LARGE_FILE_SIZE = 1024 * 1024;
+	
 	DocumentSummarizer summarizer;
 	KeywordExtractor extractor;
 	
 	JPanel panel;
+	JMenuItem openMenuItem;
+	JButton summarizeButton;
+	JScrollPane sourcePane;
 	JTextArea sourceTextArea;
+	LargeTextViewer sourceViewer;
 	JTextArea keywordTextArea;
 	JTextArea summaryTextArea;
 	JLabel percentLabel;
@@ -89,7 +104,7 @@ public class GraphicalInterface extends JFrame {
 		// Set up the file menu
 		JMenu fileMenu = new JMenu("File");
 		
-		JMenuItem openMenuItem = new JMenuItem("Open");
+		openMenuItem = new JMenuItem("Open");
 		openMenuItem.setToolTipText("Open a text document.");
 		openMenuItem.addActionListener(new OpenActionListener());
 		
@@ -139,7 +154,7 @@ public class GraphicalInterface extends JFrame {
 		menuBar.add(helpMenu);
 		
 		// Make a JScrollPane for the source text and put a JTextArea in it.
-		JScrollPane sourcePane = new JScrollPane();
+		sourcePane = new JScrollPane();
 		sourcePane.setAlignmentX(Component.LEFT_ALIGNMENT);
 		sourcePane.setVerticalScrollBarPolicy(
                 JScrollPane.VERTICAL_SCROLLBAR_ALWAYS);
@@ -149,6 +164,10 @@ public class GraphicalInterface extends JFrame {
 		sourceTextArea.setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
         sourcePane.getViewport().add(sourceTextArea);
         
+        // Large files are shown in a virtualized viewer instead.
+        sourceViewer = new LargeTextViewer();
+        sourceViewer.setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
+        
         // Make a JScrollPane for the keyword text and put a JTextArea in it.
         JScrollPane keywordPane = new JScrollPane();
      	keywordPane.setAlignmentX(Component.LEFT_ALIGNMENT);
@@ -261,7 +280,7 @@ public class GraphicalInterface extends JFrame {
         percentLabel.setText("50%");
         
         // Create the summarize button
-     	JButton summarizeButton = new JButton("Summarize");
+     	summarizeButton = new JButton("Summarize");
      	summarizeButton.setBounds(50, 60, 80, 30);
      	summarizeButton.setToolTipText("Summarize the document.");
      	summarizeButton.addActionListener(new SummarizeActionListener());
@@ -307,7 +326,10 @@ public class GraphicalInterface extends JFrame {
 		String line = null;
 		
 		try {
-			FileReader fileReader = new FileReader(file);
+			// Decode as the LargeTextViewer does, so a file reads
+			// the same whichever side of the size limit it is on.
+			InputStreamReader fileReader = new InputStreamReader(
+					new FileInputStream(file), LargeTextViewer.UTF8);
 			BufferedReader bufferedReader = new BufferedReader(fileReader);
 			fileBuffer = new StringBuffer();
 			
@@ -326,6 +348,109 @@ public class GraphicalInterface extends JFrame {
 		return fileString;
 	}
 	
+	/**
+	 * Maps a large file into the LargeTextViewer on a background
+	 * thread and shows the viewer in place of the source text area.
+	 * 
+	 * @param 	file	File object.
+	 */
+	public void openLargeFile(final File file) {
+		summaryTextArea.setText("");
+		keywordTextArea.setText("");
+		setBusy(true);
+		
+		new SwingWorker<Void, Void>() {
+			protected Void doInBackground() throws IOException {
+				sourceViewer.open(file);
+				return null;
+			}
+			
+			protected void done() {
+				try {
+					get();
+					sourceTextArea.setText("");
+					sourcePane.setViewportView(sourceViewer);
+					sourceViewer.revalidate();
+					sourceViewer.repaint();
+					
+					sourceCharsLabel.setText("Bytes: " + sourceViewer.length());
+					sourceWordsLabel.setText("Words: ");
+					sourceLinesLabel.setText("Lines: " + sourceViewer.getLineCount());
+				} catch (Exception ex) {
+					JOptionPane.showMessageDialog(panel, "Could not open " + file.getName(),
+							"Open File", JOptionPane.ERROR_MESSAGE);
+				}
+				setBusy(false);
+			}
+		}.execute();
+	}
+	
+	/**
+	 * Summarizes the file in the LargeTextViewer on a background
+	 * thread and highlights the summary sentences in the viewer,
+	 * rather than copying them into the summary text area.
+	 * 
+	 * @param 	percentage	Percentage of sentences to include in summary.
+	 */
+	public void summarizeLargeFile(final int percentage) {
+		summaryTextArea.setText("Summarizing...");
+		setBusy(true);
+		
+		final File file = sourceViewer.getFile();
+		
+		new SwingWorker<String, Void>() {
+			int numSelected;
+			
+			protected String doInBackground() {
+				String text = sourceViewer.getText();
+				AnalyzedDocument document = summarizer.analyze(text);
+				List<Integer> selection = summarizer.select(document, percentage);
+				
+				List<Integer> starts = new ArrayList<Integer>();
+				List<Integer> ends = new ArrayList<Integer>();
+				for (Integer index : selection) {
+					starts.add(document.getSentenceStart(index));
+					ends.add(document.getSentenceEnd(index));
+				}
+				sourceViewer.setHighlights(file, text, starts, ends);
+				numSelected = selection.size();
+				
+				return extractor.extract(document, selection);
+			}
+			
+			protected void done() {
+				setBusy(false);
+				
+				// Drop the results if the viewer now shows another file.
+				if (sourceViewer.getFile() != file) {
+					summaryTextArea.setText("");
+					return;
+				}
+				
+				try {
+					keywordTextArea.setText(get());
+					summaryTextArea.setText(numSelected
+							+ " summary sentences are highlighted in the source.");
+				} catch (Exception ex) {
+					summaryTextArea.setText("");
+					ex.printStackTrace();
+				}
+				sourceViewer.repaint();
+			}
+		}.execute();
+	}
+	
+	/**
+	 * Disables opening and summarizing while a background worker
+	 * uses the viewer or the summarizer, and enables them again.
+	 * 
+	 * @param 	busy	Whether a worker is running.
+	 */
+	void setBusy(boolean busy) {
+		openMenuItem.setEnabled(!busy);
+		summarizeButton.setEnabled(!busy);
+	}
+	
 	/**
 	 * Change listener: updates percentage figure
 	 * in text field in response to slider changes.
@@ -354,11 +479,17 @@ public class GraphicalInterface extends JFrame {
 	public class SummarizeActionListener implements ActionListener {
 		public void actionPerformed(ActionEvent e) {
 			int percentage = percentSlider.getValue();
-			String summary = summarizer.summarize(sourceTextArea.getText(), percentage);
-			String keywords = extractor.extract(summary);
 			
-			summaryTextArea.setText(summary);
-			keywordTextArea.setText(keywords);
+			if (sourceViewer.isOpen()) {
+				summarizeLargeFile(percentage);
+				return;
+			}
+			
+			SummaryResult result = summarizer.summarizeWithKeywords(
+					sourceTextArea.getText(), percentage, extractor.getAlgorithm());
+			
+			summaryTextArea.setText(result.getSummary());
+			keywordTextArea.setText(extractor.makeKeywordString(result.getKeywords()));
 		}
 	}
 	
@@ -380,9 +511,16 @@ public class GraphicalInterface extends JFrame {
 			if (returnValue == JFileChooser.APPROVE_OPTION) {
 				// Read the file
 				File file = fileOpen.getSelectedFile();
+				if (file.length() > LARGE_FILE_SIZE) {
+					openLargeFile(file);
+					return;
+				}
+				
 				String text = readFile(file);
 				
 				// Put the file contents into the text area
+				sourceViewer.close();
+				sourcePane.setViewportView(sourceTextArea);
 				sourceTextArea.setText(text);
 			}
 		}
@@ -401,9 +539,15 @@ public class GraphicalInterface extends JFrame {
 			if (returnValue == JFileChooser.APPROVE_OPTION) {
 				File file = fileSave.getSelectedFile();
 				try {
-					FileWriter fileWriter = new FileWriter(file);
-					System.out.println(summaryTextArea.getText());
-					fileWriter.write(summaryTextArea.getText());
+					// Summaries of large files are only highlighted
+					// in the viewer, so take the text from there.
+					String summary = sourceViewer.isOpen()
+							? sourceViewer.getHighlightedText()
+							: summaryTextArea.getText();
+					
+					OutputStreamWriter fileWriter = new OutputStreamWriter(
+							new FileOutputStream(file), LargeTextViewer.UTF8);
+					fileWriter.write(summary);
 					fileWriter.close();
 				} catch (IOException ex) {
 					ex.printStackTrace();
@@ -0,0 +1,381 @@
+package docsum.ui;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.swing.JComponent;
+import javax.swing.Scrollable;
+import javax.swing.SwingConstants;
+
+/**
+ * Read-only view of a large text file. The file is memory-mapped
+ * and only the lines inside the visible area are decoded and drawn,
+ * so opening and scrolling cost the same whatever the file size.
+ * Summary sentences can be highlighted in place.
+ */
+public class LargeTextViewer extends JComponent implements Scrollable {
+
+	private static final long serialVersionUID = -3318564917720514296L;
+	static final Charset UTF8 = Charset.forName("UTF-8");
+	static final Color HIGHLIGHT_COLOR = new Color(255, 240, 150);
+	static final int MARGIN = 8;
+	
+	volatile MappedByteBuffer buffer;
+	File file;
+	int[] lineStarts;
+	int numLines;
+	int maxLineLength;
+	
+	int[] highlightStarts;
+	int[] highlightEnds;
+	
+	/**
+	 * Constructor.
+	 */
+	public LargeTextViewer() {
+		setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+		setBackground(Color.WHITE);
+		setOpaque(true);
+		clearHighlights();
+	}
+	
+	/**
+	 * Maps a file and indexes the start of every line.
+	 * Safe to call off the event dispatch thread; call
+	 * revalidate and repaint on it afterwards.
+	 * 
+	 * @param 	file	Text file, at most 2 GB.
+	 * @throws 	IOException
+	 */
+	public void open(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		MappedByteBuffer mapped;
+		try {
+			mapped = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+		} finally {
+			raf.close();
+		}
+		
+		int[] starts = new int[1024];
+		int count = 1;
+		int longest = 0;
+		int limit = mapped.limit();
+		
+		for (int i=0; i<limit; i++) {
+			if (mapped.get(i) == '\n') {
+				longest = Math.max(longest, i - starts[count-1]);
+				if (count == starts.length)
+					starts = Arrays.copyOf(starts, count * 2);
+				starts[count++] = i + 1;
+			}
+		}
+		longest = Math.max(longest, limit - starts[count-1]);
+		
+		synchronized (this) {
+			buffer = mapped;
+			this.file = file;
+			lineStarts = starts;
+			numLines = count;
+			maxLineLength = longest;
+			clearHighlights();
+		}
+	}
+	
+	/**
+	 * Releases the mapped file.
+	 */
+	public synchronized void close() {
+		buffer = null;
+		file = null;
+		lineStarts = null;
+		numLines = 0;
+		maxLineLength = 0;
+		clearHighlights();
+	}
+	
+	/**
+	 * Checks whether a file is open.
+	 * 
+	 * @return	True if a file is mapped.
+	 */
+	public synchronized boolean isOpen() {
+		return buffer != null;
+	}
+	
+	/**
+	 * Gets the file that is mapped.
+	 * 
+	 * @return	File passed to open, or null if no file is open.
+	 */
+	public synchronized File getFile() {
+		return file;
+	}
+	
+	/**
+	 * Decodes the whole file. Intended for passing the
+	 * text to the summarizer off the event dispatch thread.
+	 * 
+	 * @return	File contents.
+	 */
+	public String getText() {
+		return decode(0, length());
+	}
+	
+	/**
+	 * Gets the length of the file in bytes.
+	 * 
+	 * @return	Number of bytes.
+	 */
+	public synchronized int length() {
+		return (buffer == null) ? 0 : buffer.limit();
+	}
+	
+	/**
+	 * Gets the number of lines in the file.
+	 * 
+	 * @return	Number of lines.
+	 */
+	public synchronized int getLineCount() {
+		return numLines;
+	}
+	
+	/**
+	 * Highlights ranges of the text returned by getText. Character
+	 * offsets are converted to byte offsets in the mapped file.
+	 * Nothing is highlighted if another file has been opened since
+	 * the text was read, or the viewer has been closed.
+	 * 
+	 * @param 	file	File that was mapped when the text was read.
+	 * @param 	text	Text returned by getText.
+	 * @param 	starts	Character offset of each range start, ascending.
+	 * @param 	ends	Character offset of each range end, exclusive.
+	 * @return	True if the highlights were applied.
+	 */
+	public boolean setHighlights(File file, String text, List<Integer> starts,
+			List<Integer> ends) {
+		int numRanges = starts.size();
+		int[] byteStarts = new int[numRanges];
+		int[] byteEnds = new int[numRanges];
+		
+		// Walk the text once, counting UTF-8 bytes up to each offset.
+		int charPos = 0;
+		int bytePos = 0;
+		for (int r=0; r<numRanges; r++) {
+			bytePos += utf8Length(text, charPos, starts.get(r));
+			charPos = starts.get(r);
+			byteStarts[r] = bytePos;
+			
+			bytePos += utf8Length(text, charPos, ends.get(r));
+			charPos = ends.get(r);
+			byteEnds[r] = bytePos;
+		}
+		
+		synchronized (this) {
+			if (file == null || file != this.file)
+				return false;
+			
+			highlightStarts = byteStarts;
+			highlightEnds = byteEnds;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Removes all highlights.
+	 */
+	public synchronized void clearHighlights() {
+		highlightStarts = new int[0];
+		highlightEnds = new int[0];
+	}
+	
+	/**
+	 * Gets the highlighted text, in file order.
+	 * 
+	 * @return	Concatenated highlighted ranges.
+	 */
+	public String getHighlightedText() {
+		StringBuilder builder = new StringBuilder();
+		int[] starts;
+		int[] ends;
+		synchronized (this) {
+			starts = highlightStarts;
+			ends = highlightEnds;
+		}
+		
+		for (int r=0; r<starts.length; r++) {
+			builder.append(decode(starts[r], ends[r]));
+		}
+		
+		return builder.toString();
+	}
+	
+	/**
+	 * Gets the height of one line of text.
+	 * 
+	 * @return	Line height in pixels.
+	 */
+	private int getLineHeight() {
+		return getFontMetrics(getFont()).getHeight();
+	}
+	
+	public Dimension getPreferredSize() {
+		FontMetrics metrics = getFontMetrics(getFont());
+		int width = maxLineLength * metrics.charWidth('m') + 2 * MARGIN;
+		int height = numLines * metrics.getHeight() + 2 * MARGIN;
+		
+		// Cap the width so a single huge line does not
+		// produce a component wider than Swing can handle.
+		return new Dimension(Math.min(width, 100000), height);
+	}
+	
+	protected synchronized void paintComponent(Graphics g) {
+		Rectangle clip = g.getClipBounds();
+		g.setColor(getBackground());
+		g.fillRect(clip.x, clip.y, clip.width, clip.height);
+		
+		if (buffer == null)
+			return;
+		
+		g.setFont(getFont());
+		FontMetrics metrics = g.getFontMetrics();
+		int lineHeight = metrics.getHeight();
+		
+		// Only the lines intersecting the clip are decoded.
+		int first = Math.max(0, (clip.y - MARGIN) / lineHeight);
+		int last = Math.min(numLines - 1, (clip.y + clip.height - MARGIN) / lineHeight);
+		
+		for (int line=first; line<=last; line++) {
+			int start = lineStarts[line];
+			int end = (line + 1 < numLines) ? lineStarts[line+1] : buffer.limit();
+			while (end > start && (buffer.get(end-1) == '\n' || buffer.get(end-1) == '\r'))
+				end--;
+			
+			int y = MARGIN + line * lineHeight;
+			paintHighlights(g, metrics, start, end, y, lineHeight);
+			
+			g.setColor(getForeground());
+			g.drawString(decode(start, end), MARGIN, y + metrics.getAscent());
+		}
+	}
+	
+	/**
+	 * Fills the background of the highlighted parts of a line.
+	 * 
+	 * @param 	g			Graphics context.
+	 * @param 	metrics		Font metrics.
+	 * @param 	start		Byte offset of line start.
+	 * @param 	end			Byte offset of line end.
+	 * @param 	y			Top of the line in pixels.
+	 * @param 	lineHeight	Height of the line in pixels.
+	 */
+	private void paintHighlights(Graphics g, FontMetrics metrics, int start, int end,
+			int y, int lineHeight) {
+		
+		// Find the first range that ends after the line starts.
+		int r = Arrays.binarySearch(highlightEnds, start + 1);
+		if (r < 0)
+			r = -r - 1;
+		
+		g.setColor(HIGHLIGHT_COLOR);
+		for (; r<highlightStarts.length && highlightStarts[r] < end; r++) {
+			int from = Math.max(start, highlightStarts[r]);
+			int to = Math.min(end, highlightEnds[r]);
+			int x1 = MARGIN + metrics.stringWidth(decode(start, from));
+			int x2 = (to == end && highlightEnds[r] > end)
+					? getWidth()
+					: MARGIN + metrics.stringWidth(decode(start, to));
+			g.fillRect(x1, y, x2 - x1, lineHeight);
+		}
+	}
+	
+	/**
+	 * Decodes a range of the mapped file as UTF-8.
+	 * 
+	 * @param 	start	Byte offset of range start.
+	 * @param 	end		Byte offset of range end, exclusive.
+	 * @return	Decoded text.
+	 */
+	private String decode(int start, int end) {
+		MappedByteBuffer mapped = buffer;
+		if (mapped == null || end <= start)
+			return "";
+		
+		// Read through a duplicate so that concurrent
+		// readers do not share a buffer position.
+		ByteBuffer view = mapped.duplicate();
+		view.position(start);
+		byte[] bytes = new byte[end - start];
+		view.get(bytes);
+		
+		return new String(bytes, UTF8);
+	}
+	
+	/**
+	 * Counts the UTF-8 bytes of a range of characters.
+	 * 
+	 * @param 	text	Text string.
+	 * @param 	from	Start character offset.
+	 * @param 	to		End character offset, exclusive.
+	 * @return	Number of bytes.
+	 */
+	private static int utf8Length(String text, int from, int to) {
+		int length = 0;
+		
+		for (int i=from; i<to; i++) {
+			char c = text.charAt(i);
+			if (c < 0x80) {
+				length += 1;
+			}
+			else if (c < 0x800) {
+				length += 2;
+			}
+			else if (Character.isHighSurrogate(c) && i + 1 < to) {
+				length += 4;
+				i++;
+			}
+			else {
+				length += 3;
+			}
+		}
+		
+		return length;
+	}
+	
+	public Dimension getPreferredScrollableViewportSize() {
+		return getPreferredSize();
+	}
+	
+	public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation,
+			int direction) {
+		return (orientation == SwingConstants.VERTICAL) ? getLineHeight() : 16;
+	}
+	
+	public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation,
+			int direction) {
+		return (orientation == SwingConstants.VERTICAL)
+				? visibleRect.height - getLineHeight()
+				: visibleRect.width;
+	}
+	
+	public boolean getScrollableTracksViewportWidth() {
+		return false;
+	}
+	
+	public boolean getScrollableTracksViewportHeight() {
+		return false;
+	}
+}